@@ -0,0 +1,117 @@
+package org.example.analysis;
+
+import org.example.service.TemplateCacheService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * AdmissionController — допуск документів до аналізу за оціненою вартістю.
+ * <p>
+ * Вартість документа — кількість порівнянь: непорожні рядки × фрагменти поточного знімка шаблонів.
+ * Час аналізу оцінюється як вартість × середній час одного порівняння; цей коефіцієнт уточнюється
+ * після кожного аналізу (експоненційне згладжування виміряного часу, {@code analysis.admission.ewma-alpha}),
+ * тож у ньому враховано і embedding-и рядків, і відбір та відсікання шаблонів.
+ * <p>
+ * Сума оцінок документів, що аналізуються, не перевищує {@code analysis.admission.budget-ms}; місце
+ * резервується атомарно (CAS), тому кілька потоків не можуть разом перевищити бюджет. Документ, дорожчий
+ * за весь бюджет, допускається, коли інших документів в аналізі немає. {@code budget-ms=0} — без обмеження.
+ */
+@Component
+public class AdmissionController {
+
+    private final TemplateCacheService templateCacheService;
+    private final long budgetNanos;
+    private final double alpha;
+
+    /**
+     * Зарезервований час документів, що аналізуються
+     */
+    private final AtomicLong reservedNanos = new AtomicLong();
+
+    /**
+     * Середній час одного порівняння «рядок × фрагмент», нс
+     */
+    private volatile double nanosPerComparison;
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder deferred = new LongAdder();
+    private final LongAdder calibrations = new LongAdder();
+
+    public AdmissionController(TemplateCacheService templateCacheService,
+                               @Value("${analysis.admission.budget-ms:60000}") long budgetMs,
+                               @Value("${analysis.admission.initial-ns-per-comparison:200}") double initialNanosPerComparison,
+                               @Value("${analysis.admission.ewma-alpha:0.2}") double alpha) {
+        this.templateCacheService = templateCacheService;
+        this.budgetNanos = budgetMs > 0 ? TimeUnit.MILLISECONDS.toNanos(budgetMs) : Long.MAX_VALUE;
+        this.nanosPerComparison = Math.max(1e-3, initialNanosPerComparison);
+        this.alpha = Math.min(1.0, Math.max(0.01, alpha));
+    }
+
+    /**
+     * @return кількість порівнянь документа з поточним знімком (не менше одного)
+     */
+    public long estimateComparisons(long lines) {
+        return Math.max(1, lines * Math.max(1, templateCacheService.getFragmentCount()));
+    }
+
+    /**
+     * Резервує бюджет під документ.
+     *
+     * @param comparisons оцінена кількість порівнянь
+     * @return зарезервований час у нс (передається в {@link #release}) або -1, якщо бюджету не вистачає
+     */
+    public long tryReserve(long comparisons) {
+        long estimate = Math.max(1, (long) Math.min(Long.MAX_VALUE / 2.0, comparisons * nanosPerComparison));
+        while (true) {
+            long current = reservedNanos.get();
+            if (current > 0 && current + estimate > budgetNanos) {
+                deferred.increment();
+                return -1;
+            }
+            if (reservedNanos.compareAndSet(current, current + estimate)) {
+                admitted.increment();
+                return estimate;
+            }
+        }
+    }
+
+    /**
+     * Повертає бюджет документа і уточнює час одного порівняння за виміряним часом аналізу.
+     *
+     * @param reserved     зарезервований час з {@link #tryReserve}
+     * @param comparisons  оцінена кількість порівнянь
+     * @param elapsedNanos виміряний час аналізу (0 — документ не аналізувався, оцінка не змінюється)
+     */
+    public void release(long reserved, long comparisons, long elapsedNanos) {
+        reservedNanos.addAndGet(-reserved);
+        if (elapsedNanos > 0 && comparisons > 0) {
+            calibrate(elapsedNanos / (double) comparisons);
+        }
+    }
+
+    private synchronized void calibrate(double observed) {
+        nanosPerComparison = Math.max(1e-3, alpha * observed + (1 - alpha) * nanosPerComparison);
+        calibrations.increment();
+    }
+
+    /**
+     * Статистика: бюджет, зарезервований час, коефіцієнт оцінки, допущені та відкладені документи.
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("budgetMs", budgetNanos == Long.MAX_VALUE ? 0 : TimeUnit.NANOSECONDS.toMillis(budgetNanos));
+        metrics.put("reservedMs", TimeUnit.NANOSECONDS.toMillis(reservedNanos.get()));
+        metrics.put("fragments", templateCacheService.getFragmentCount());
+        metrics.put("nanosPerComparison", nanosPerComparison);
+        metrics.put("admitted", admitted.sum());
+        metrics.put("deferred", deferred.sum());
+        metrics.put("calibrations", calibrations.sum());
+        return metrics;
+    }
+}
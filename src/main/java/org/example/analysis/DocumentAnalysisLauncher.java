@@ -1,10 +1,13 @@
 package org.example.analysis;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.example.untils.Response;
 import org.example.untils.Message;
 import org.example.kafka.KafkaProducerService;
 import org.example.redis.RedisService;
 import org.example.service.MatcherServiceAsync;
+import org.example.service.match.DocumentLineReader;
 import org.example.untils.DocRequest;
 import org.example.untils.DocRequestUtils;
 import org.example.untils.JsonSerializable;
@@ -12,15 +15,35 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 
 
 /**
  * Сервіс для обробки документів, отриманих від клієнтів, та передачі їх на аналіз.
+ * <p>
+ * Документи запускаються через {@link JobScheduler}: місця пулу {@code async-doc-} справедливо діляться
+ * між клієнтами, інтерактивні запити обслуговуються раніше за пакетні ({@code insider}).
+ * Якщо черга планувальника в пам'яті заповнена, документ ставиться в Redis чергу {@code requestQueue},
+ * яку потік {@code redis-queue} читає блокуючим BLMOVE, щойно в планувальнику звільняється місце.
+ * BLMOVE атомарний, тож кілька екземплярів сервісу можуть розбирати одну чергу без дублювання документів.
+ * <p>
+ * Redis списки містять лише короткі ідентифікатори документів, а JSON документа зберігається один раз
+ * під ключем {@code requestQueue:doc:<id>}. Документ, що чекає в пам'яті планувальника, продубльований
+ * у Redis списку цього екземпляра {@code requestQueue:pending:<analysis.queue.instance-id>}: з Redis черги
+ * його ідентифікатор переноситься туди тим самим BLMOVE, а документ з Kafka чи {@code /async} записується
+ * туди до того, як {@link #addTaskAsync} поверне керування (і Kafka зафіксує зсув). Ідентифікатор і JSON
+ * видаляються, коли документ запускається в пулі. Після перезапуску екземпляр повертає незапущені документи
+ * на початок {@code requestQueue}, тож ідентифікатор екземпляра має бути стабільним між перезапусками.
  */
 @Service
 public class DocumentAnalysisLauncher {
@@ -32,25 +55,126 @@ public class DocumentAnalysisLauncher {
     private final ThreadPoolTaskExecutor taskExecutor;
     private final RedisService redisService;
 
+    private static final String REQUEST_QUEUE = "requestQueue";
+
+    /**
+     * Префікс ключів з JSON документів, ідентифікатори яких стоять у Redis списках
+     */
+    private static final String REQUEST_BODY_PREFIX = REQUEST_QUEUE + ":doc:";
+
+    /**
+     * Redis список документів, прийнятих цим екземпляром, але ще не запущених
+     */
+    private final String pendingQueue;
+
+    /**
+     * Справедливий розподіл місць пулу між клієнтами і класами пріоритету
+     */
+    private final JobScheduler jobScheduler;
+
+    private final boolean queueEnabled;
+
+    /**
+     * Найдовше очікування BLMOVE; має бути меншим за {@code spring.data.redis.timeout}
+     */
+    private final Duration queuePollTimeout;
+
+    /**
+     * Пауза після помилки Redis, щоб не засипати журнал
+     */
+    private final long queueErrorBackoffMs;
+
+    private Thread queueThread;
+    private volatile boolean queueRunning;
+
+    /**
+     * Обмеження кількості одночасних потокових аналізів (кожен займає потік запиту на весь час завантаження)
+     */
+    private final Semaphore streamPermits;
+
+    /**
+     * Документи, довші за цю кількість символів, аналізуються потоково (без копії у вигляді списку рядків)
+     */
+    private final int streamThresholdChars;
+
+    /**
+     * Найбільша довжина рядка для потокового аналізу (довші рядки обрізаються)
+     */
+    private final int maxLineChars;
+
     public DocumentAnalysisLauncher(@Qualifier("taskExecutor") ThreadPoolTaskExecutor taskExecutor,
                                     RedisService redisService,
-                                    MatcherServiceAsync matcherServiceAsync) {
+                                    MatcherServiceAsync matcherServiceAsync,
+                                    JobScheduler jobScheduler,
+                                    @Value("${matcher.stream.max-concurrent:2}") int maxConcurrentStreams,
+                                    @Value("${matcher.stream.threshold-chars:262144}") int streamThresholdChars,
+                                    @Value("${matcher.stream.max-line-chars:10000}") int maxLineChars,
+                                    @Value("${analysis.queue.enabled:true}") boolean queueEnabled,
+                                    @Value("${analysis.queue.poll-timeout-ms:1000}") long queuePollTimeoutMs,
+                                    @Value("${analysis.queue.error-backoff-ms:1000}") long queueErrorBackoffMs,
+                                    @Value("${analysis.queue.instance-id:${HOSTNAME:local}}") String instanceId) {
         this.taskExecutor = taskExecutor;
         this.redisService = redisService;
         this.matcherServiceAsync = matcherServiceAsync;
+        this.streamPermits = new Semaphore(Math.max(1, maxConcurrentStreams));
+        this.streamThresholdChars = streamThresholdChars;
+        this.maxLineChars = maxLineChars;
+        this.jobScheduler = jobScheduler;
+        this.queueEnabled = queueEnabled;
+        this.queuePollTimeout = Duration.ofMillis(Math.max(1, queuePollTimeoutMs));
+        this.queueErrorBackoffMs = queueErrorBackoffMs;
+        this.pendingQueue = REQUEST_QUEUE + ":pending:" + instanceId;
     }
 
-    public Response addTaskAsync(DocRequest request) {
+    /**
+     * Потоковий аналіз документа, що завантажується частинами (text/plain або NDJSON).
+     * Виконується в потоці виклику, поки читається потік; документ не буферизується повністю
+     * і тому не може бути поставлений у Redis чергу — якщо всі місця зайняті, запит відхиляється.
+     *
+     * @param clientId ідентифікатор клієнта
+     * @param doc      назва документа
+     * @param reader   джерело рядків документа
+     * @return false, якщо досягнуто ліміту одночасних потокових аналізів
+     * @throws IOException          якщо потік не вдалося прочитати або він некоректний
+     * @throws ExecutionException   якщо виникла помилка в моделі
+     * @throws InterruptedException якщо потік перервано
+     */
+    public boolean matchStream(String clientId, String doc, DocumentLineReader reader)
+            throws IOException, ExecutionException, InterruptedException {
+        if (!streamPermits.tryAcquire()) {
+            logger.warn("Потокові аналізи зайняті, документ {} відхилено", doc);
+            return false;
+        }
         try {
-            if (taskExecutor.getActiveCount() >= taskExecutor.getMaxPoolSize()) {
-                logger.warn("Потоки зайняті. Додаємо в Redis: {}", request.getDoc());
-                String jsonBody = DocRequestUtils.createJsonBody(request);
-                redisService.addToLine("requestQueue", jsonBody);
-                sendInfo(request.getClientId(), "Сервіс обробляє інші документи. Ваш " + request.getDoc() + " у черзі. Зачекайте.");
+            logger.info("📥 Потоковий аналіз документа: {}", doc);
+            matcherServiceAsync.matchDocumentStream(clientId, doc, reader);
+            return true;
+        } finally {
+            streamPermits.release();
+        }
+    }
 
-            } else {
+    /**
+     * Приймає документ в обробку: запускає його, ставить у чергу клієнта в пам'яті або в Redis чергу.
+     * Документ записується в Redis до повернення, тож після зупинки екземпляра він не губиться.
+     *
+     * @return null, якщо документ прийнято, або відповідь з помилкою (зокрема, якщо Redis недоступний)
+     */
+    public Response addTaskAsync(DocRequest request) {
+        try {
+            String id = journal(request);
+            JobScheduler.Job job = jobScheduler.offer(request, false, id);
+            if (job == null) {
+                logger.warn("Черга планувальника заповнена. Додаємо в Redis: {}", request.getDoc());
+                enqueue(request, id, "Сервіс обробляє інші документи. Ваш " + request.getDoc() + " у черзі. Зачекайте.");
+                return null;
+            }
+            dispatch();
+            if (job.isStarted()) {
                 logger.info("▶️ Починаємо обробку документа: {}", request.getDoc());
-                submitTask(request);
+            } else {
+                logger.info("🕒 Потоки зайняті. Документ {} чекає в черзі клієнта {}", request.getDoc(), request.getClientId());
+                sendInfo(request.getClientId(), "Сервіс обробляє інші документи. Ваш " + request.getDoc() + " у черзі. Зачекайте.");
             }
         } catch (Exception e) {
             logger.error("Помилка всередині matchAsync: {}", e.getMessage(), e);
@@ -60,44 +184,105 @@ public class DocumentAnalysisLauncher {
     }
 
     /**
-     * Надсилання задачі в пул потоків (із захистом).
+     * Запускає документи, для яких планувальник має вільні місця.
      */
-    private void submitTask(DocRequest request) {
-        int activeThreads = taskExecutor.getActiveCount();
-        int maxThreads = taskExecutor.getMaxPoolSize(); // або corePoolSize, якщо використовуєш лише core
-        System.out.println(activeThreads+" "+maxThreads);
-        if (activeThreads >= maxThreads) {
-            // Усі потоки зайняті — документ у Redis
-            logger.info("🕒 Всі потоки зайняті ({} з {}). Ставимо в Redis: {}", activeThreads, maxThreads, request.getDoc());
-            String jsonBody = DocRequestUtils.createJsonBody(request);
-            redisService.addToLine("requestQueue", jsonBody);
-            sendInfo(request.getClientId(), "Сервіс обробляє інші документи. Ваш " + request.getDoc() + " у черзі. Зачекайте.");
-            return;
+    private void dispatch() {
+        JobScheduler.Job job;
+        while ((job = jobScheduler.poll()) != null) {
+            submitTask(job);
         }
+    }
 
-        // Є вільні потоки — виконуємо одразу
+    /**
+     * Надсилання задачі в пул потоків (із захистом).
+     * Місце в планувальнику звільняється після аналізу, і на нього одразу запускається наступний документ.
+     */
+    private void submitTask(JobScheduler.Job job) {
+        DocRequest request = job.getRequest();
         try {
             taskExecutor.execute(() -> {
-                logger.info("🔧 Обробка документа: {}", request.getDoc());
-                matcherServiceAsync.matchDocument(
-                        request.getClientId(),
-                        request.getDoc(),
-                        Arrays.asList(request.getBody().split("\n"))
-                );
+                started(job);
+                long start = System.nanoTime();
+                boolean completed = false;
+                try {
+                    logger.info("🔧 Обробка документа: {}", request.getDoc());
+                    if (request.getBody().length() > streamThresholdChars) {
+                        // Великий документ читається з рядка блоками, без масиву рядків і повної матриці embedding-ів
+                        try {
+                            matcherServiceAsync.matchDocumentStream(request.getClientId(), request.getDoc(),
+                                    new DocumentLineReader(new StringReader(request.getBody()),
+                                            DocumentLineReader.Format.TEXT, maxLineChars));
+                            completed = true;
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            logger.warn("Потоковий аналіз документа {} перервано", request.getDoc());
+                        } catch (Exception e) {
+                            logger.error("\uD83D\uDEA8 Помилка потокового аналізу документа '{}': {}", request.getDoc(), e.getMessage(), e);
+                        }
+                        return;
+                    }
+                    completed = matcherServiceAsync.matchDocument(
+                            request.getClientId(),
+                            request.getDoc(),
+                            Arrays.asList(request.getBody().split("\n"))
+                    );
+                } finally {
+                    // Виміряний час уточнює оцінку вартості наступних документів; аналіз, що обірвався
+                    // помилкою, не повідомляє часу (0), щоб не занизити оцінку
+                    jobScheduler.finished(job, completed ? System.nanoTime() - start : 0);
+                    dispatch();
+                }
             });
         } catch (RejectedExecutionException ex) {
-            // На випадок, якщо навіть при активних потоках щось пішло не так
+            // На випадок, якщо пул відмовив (наприклад, під час зупинки)
+            jobScheduler.finished(job, 0);
             logger.warn("⚠️ Виняток при виконанні taskExecutor. Ставимо в Redis: {}", request.getDoc());
-            String jsonBody = DocRequestUtils.createJsonBody(request);
-            redisService.addToLine("requestQueue", jsonBody);
-            sendInfo(request.getClientId(), "Обробник зайнятий. Ваш документ " + request.getDoc() + " в черзі. Чекайте.");
+            String id = job.getJournalId() != null ? job.getJournalId() : journal(request);
+            enqueue(request, id, "Обробник зайнятий. Ваш документ " + request.getDoc() + " в черзі. Чекайте.");
         }
     }
 
+    /**
+     * Зберігає JSON документа під новим ідентифікатором і додає ідентифікатор у список незапущених документів
+     * екземпляра. JSON записується першим, тож ідентифікатор у списку завжди має документ.
+     *
+     * @return ідентифікатор документа
+     */
+    private String journal(DocRequest request) {
+        String id = UUID.randomUUID().toString();
+        redisService.saveData(REQUEST_BODY_PREFIX + id, DocRequestUtils.createJsonBody(request));
+        redisService.addToLine(pendingQueue, id);
+        return id;
+    }
+
+    /**
+     * Документ запущено: його ідентифікатор і JSON більше не потрібні для відновлення після перезапуску.
+     * Якщо Redis недоступний, запис лишається, і після перезапуску документ буде проаналізовано повторно.
+     */
+    private void started(JobScheduler.Job job) {
+        if (job.getJournalId() == null) return;
+        try {
+            redisService.removeFromLine(pendingQueue, job.getJournalId());
+            redisService.deleteData(REQUEST_BODY_PREFIX + job.getJournalId());
+        } catch (Exception e) {
+            logger.warn("Не вдалося прибрати документ {} з {}: {}", job.getRequest().getDoc(), pendingQueue, e.getMessage());
+        }
+    }
+
+    /**
+     * Ставить документ у Redis чергу, прибирає його зі списку незапущених документів екземпляра
+     * і повідомляє клієнта. Документ спершу додається в чергу, тож збій між командами дає дублікат, а не втрату.
+     */
+    private void enqueue(DocRequest request, String id, String info) {
+        redisService.addToLine(REQUEST_QUEUE, id);
+        redisService.removeFromLine(pendingQueue, id);
+        sendInfo(request.getClientId(), info);
+    }
+
 
     private void sendInfo(String user, String message) {
         if (!"insider".equals(user)) {
-            kafkaProducerService.sendMessage("after-analysis", new Message(
+            kafkaProducerService.sendMessage("after-analysis", user, new Message(
                     user,
                     "/queue/status",
                     message
@@ -105,23 +290,104 @@ public class DocumentAnalysisLauncher {
         }
     }
 
+    @PostConstruct
+    public void startQueueConsumer() {
+        recoverPending();
+        if (!queueEnabled) return;
+        queueRunning = true;
+        queueThread = new Thread(this::consumeQueue, "redis-queue");
+        queueThread.setDaemon(true);
+        queueThread.start();
+        logger.info("📦 Читання Redis черги {}", REQUEST_QUEUE);
+    }
+
     /**
-     * Перевірка Redis черги — викликається кожні 3 секунди.
-     * Працює тільки якщо є вільні потоки.
+     * Повертає на початок Redis черги документи, які попередній запуск цього екземпляра прийняв,
+     * але не встиг запустити (порядок документів зберігається).
      */
-    @Scheduled(fixedDelay = 3000)
-    public void pullFromRedisQueue() {
-        if (taskExecutor.getActiveCount() < taskExecutor.getMaxPoolSize()) {
-            String nextMessage = redisService.getOnLine("requestQueue");
-            if (nextMessage != null) {
+    private void recoverPending() {
+        try {
+            int recovered = 0;
+            while (redisService.moveToLineFront(pendingQueue, REQUEST_QUEUE) != null) {
+                recovered++;
+            }
+            if (recovered > 0) {
+                logger.warn("♻️ Повернуто в Redis чергу {} незапущених документів попереднього запуску", recovered);
+            }
+        } catch (Exception e) {
+            logger.error("Не вдалося повернути незапущені документи з {}: {}", pendingQueue, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void stopQueueConsumer() {
+        queueRunning = false;
+        if (queueThread != null) queueThread.interrupt();
+    }
+
+    /**
+     * Читання Redis черги: документ переноситься блокуючим BLMOVE у список незапущених документів екземпляра,
+     * лише коли в черзі планувальника є місце, і потрапляє в чергу свого клієнта. Поки є документи і місце, вони забираються один за одним без пауз;
+     * порожня черга чекає на Redis не довше {@code analysis.queue.poll-timeout-ms}.
+     */
+    private void consumeQueue() {
+        while (queueRunning) {
+            try {
+                if (!jobScheduler.awaitRoom(queuePollTimeout.toMillis())) continue;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            String id;
+            String json;
+            boolean inline;
+            try {
+                id = redisService.moveFromLine(REQUEST_QUEUE, pendingQueue, queuePollTimeout);
+                if (id == null) continue;
+                // Запис старого формату містить JSON документа прямо в черзі
+                inline = id.startsWith("{");
+                json = inline ? id : redisService.getData(REQUEST_BODY_PREFIX + id);
+            } catch (Exception e) {
+                if (!queueRunning) return;
+                logger.error("Не вдалося прочитати Redis чергу: {}", e.getMessage());
+                pause(queueErrorBackoffMs);
+                continue;
+            }
+            DocRequest docRequest;
+            try {
+                if (json == null) throw new IllegalStateException("немає JSON документа " + id);
+                docRequest = JsonSerializable.fromJson(json, DocRequest.class);
+            } catch (Exception e) {
+                logger.error("Не вдалося обробити повідомлення з Redis: {}", e.getMessage(), e);
+                // Некоректний запис не повертається в чергу при кожному перезапуску
                 try {
-                    DocRequest docRequest = JsonSerializable.fromJson(nextMessage, DocRequest.class);
-                    logger.info("📦 Витягнуто з Redis черги: {}", docRequest.getDoc());
-                    submitTask(docRequest);
-                } catch (Exception e) {
-                    logger.error("Не вдалося обробити повідомлення з Redis: {}", e.getMessage(), e);
+                    redisService.removeFromLine(pendingQueue, id);
+                    if (!inline) redisService.deleteData(REQUEST_BODY_PREFIX + id);
+                } catch (Exception removeError) {
+                    logger.warn("Не вдалося прибрати запис з {}: {}", pendingQueue, removeError.getMessage());
+                }
+                continue;
+            }
+            try {
+                logger.info("📦 Витягнуто з Redis черги: {}", docRequest.getDoc());
+                if (inline) {
+                    id = journal(docRequest);
+                    redisService.removeFromLine(pendingQueue, json);
                 }
+                jobScheduler.offer(docRequest, true, id);
+                dispatch();
+            } catch (Exception e) {
+                logger.error("Не вдалося запустити документ з Redis черги: {}", e.getMessage(), e);
             }
         }
     }
+
+    private void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queueRunning = false;
+        }
+    }
 }
@@ -0,0 +1,340 @@
+package org.example.analysis;
+
+import org.example.untils.DocRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JobScheduler — справедливий розподіл місць аналізу між клієнтами.
+ * <p>
+ * Документи чекають у пам'яті в окремій черзі кожного {@code clientId}. Черги обслуговуються за
+ * deficit round robin: на кожному колі клієнт отримує {@code analysis.scheduler.quantum} одиниць
+ * вартості і запускає документи, поки їхня оцінена вартість (кількість рядків) вкладається в накопичене.
+ * Тож клієнт з сотнями довгих документів не блокує інших: кожен отримує приблизно однакову частку
+ * обчислень, а не однакову кількість документів.
+ * <p>
+ * Класи пріоритету:
+ * - {@link Priority#INTERACTIVE} — запити клієнтів, обслуговуються першими
+ * - {@link Priority#BULK} — пакетна обробка {@code insider}; займає не більше
+ *   {@code analysis.scheduler.bulk-max-running} місць, щоб для інтерактивних запитів лишалося вільне місце
+ * <p>
+ * Документ запускається, лише якщо {@link AdmissionController} резервує під нього бюджет обчислень;
+ * інакше він чекає на завершення інших документів (DRR-порядок при цьому не змінюється).
+ * Кількість документів і символів, що чекають у пам'яті, обмежена ({@code analysis.scheduler.max-pending},
+ * {@code analysis.scheduler.max-pending-chars}); надлишок лишається в Redis черзі. Документи, що чекають
+ * у пам'яті, продубльовані в Redis (див. {@link DocumentAnalysisLauncher}), тож зупинка екземпляра їх не губить.
+ */
+@Component
+public class JobScheduler {
+
+    private static final String INSIDER = "insider";
+
+    /**
+     * Клас пріоритету документа
+     */
+    public enum Priority {
+        INTERACTIVE,
+        BULK
+    }
+
+    /**
+     * Документ, що чекає на місце або виконується
+     */
+    public static final class Job {
+        private final DocRequest request;
+        private final Priority priority;
+        private final long cost;
+        private final long chars;
+        private final String journalId;
+        private long comparisons;
+        private long reserved;
+        private final long enqueuedNanos = System.nanoTime();
+        private volatile boolean started;
+
+        private Job(DocRequest request, Priority priority, long cost, String journalId) {
+            this.request = request;
+            this.priority = priority;
+            this.cost = cost;
+            this.chars = request.getBody() == null ? 0 : request.getBody().length();
+            this.journalId = journalId;
+        }
+
+        public DocRequest getRequest() {
+            return request;
+        }
+
+        public Priority getPriority() {
+            return priority;
+        }
+
+        /**
+         * @return оцінена вартість аналізу (кількість непорожніх рядків документа)
+         */
+        public long getCost() {
+            return cost;
+        }
+
+        /**
+         * @return оцінена кількість порівнянь з фрагментами знімка на момент запуску
+         */
+        public long getComparisons() {
+            return comparisons;
+        }
+
+        /**
+         * @return ідентифікатор документа в Redis списку документів, що чекають (null — документ не записано)
+         */
+        public String getJournalId() {
+            return journalId;
+        }
+
+        /**
+         * @return true, якщо документ уже отримав місце
+         */
+        public boolean isStarted() {
+            return started;
+        }
+    }
+
+    /**
+     * Черга одного клієнта і його дефіцит у поточному колі
+     */
+    private static final class ClientQueue {
+        private final String clientId;
+        private final ArrayDeque<Job> jobs = new ArrayDeque<>();
+        private long deficit;
+        private boolean inTurn;
+
+        private ClientQueue(String clientId) {
+            this.clientId = clientId;
+        }
+    }
+
+    /**
+     * Черги і статистика одного класу пріоритету
+     */
+    private static final class PriorityClass {
+        private final Map<String, ClientQueue> clients = new HashMap<>();
+        private final ArrayDeque<ClientQueue> active = new ArrayDeque<>();
+        private int queued;
+        private long queuedCost;
+        private int running;
+        private long dispatched;
+        private long totalWaitNanos;
+        private long maxWaitNanos;
+    }
+
+    private final AdmissionController admissionController;
+    private final int slots;
+    private final long quantum;
+    private final int maxPending;
+    private final long maxPendingChars;
+    private final int bulkMaxRunning;
+
+    private final EnumMap<Priority, PriorityClass> classes = new EnumMap<>(Priority.class);
+    private int running;
+    private int pending;
+    private long pendingChars;
+
+    /**
+     * Наступному документу не вистачило бюджету обчислень (встановлюється в {@link #next})
+     */
+    private boolean overBudget;
+
+    public JobScheduler(AdmissionController admissionController,
+                        @Value("${analysis.executor.pool-size:4}") int slots,
+                        @Value("${analysis.scheduler.quantum:500}") long quantum,
+                        @Value("${analysis.scheduler.max-pending:256}") int maxPending,
+                        @Value("${analysis.scheduler.max-pending-chars:67108864}") long maxPendingChars,
+                        @Value("${analysis.scheduler.bulk-max-running:0}") int bulkMaxRunning) {
+        this.admissionController = admissionController;
+        this.slots = Math.max(1, slots);
+        this.quantum = Math.max(1, quantum);
+        this.maxPending = Math.max(1, maxPending);
+        this.maxPendingChars = maxPendingChars;
+        // 0 — усі місця, крім одного (якщо місце одне, пакетна обробка може його зайняти)
+        this.bulkMaxRunning = bulkMaxRunning > 0 ? Math.min(bulkMaxRunning, this.slots) : Math.max(1, this.slots - 1);
+        for (Priority priority : Priority.values()) {
+            classes.put(priority, new PriorityClass());
+        }
+    }
+
+    /**
+     * Ставить документ у чергу клієнта разом з ідентифікатором його запису в Redis (видаляється, коли документ запускається).
+     *
+     * @param request   запит
+     * @param force     true — прийняти навіть понад ліміт (документ уже забрано з Redis черги)
+     * @param journalId ідентифікатор документа в Redis списку документів, що чекають (null — документ не записано)
+     * @return задача або null, якщо місця в пам'яті немає і документ слід лишити в Redis черзі
+     */
+    public synchronized Job offer(DocRequest request, boolean force, String journalId) {
+        long chars = request.getBody() == null ? 0 : request.getBody().length();
+        if (!force && (pending >= maxPending || (pending > 0 && pendingChars + chars > maxPendingChars))) {
+            return null;
+        }
+        Priority priority = INSIDER.equals(request.getClientId()) ? Priority.BULK : Priority.INTERACTIVE;
+        Job job = new Job(request, priority, countLines(request.getBody()), journalId);
+
+        PriorityClass priorityClass = classes.get(priority);
+        String clientId = request.getClientId() == null ? "" : request.getClientId();
+        ClientQueue client = priorityClass.clients.computeIfAbsent(clientId, ClientQueue::new);
+        if (client.jobs.isEmpty()) {
+            priorityClass.active.addLast(client);
+        }
+        client.jobs.addLast(job);
+        priorityClass.queued++;
+        priorityClass.queuedCost += job.cost;
+        pending++;
+        pendingChars += job.chars;
+        return job;
+    }
+
+    /**
+     * Займає вільне місце для наступного документа.
+     *
+     * @return документ для запуску або null, якщо місць немає або нічого не чекає
+     */
+    public synchronized Job poll() {
+        if (running >= slots) return null;
+        overBudget = false;
+        Job job = next(classes.get(Priority.INTERACTIVE));
+        // Якщо інтерактивному документу не вистачило бюджету, пакетні його не випереджають
+        if (job == null && !overBudget && classes.get(Priority.BULK).running < bulkMaxRunning) {
+            job = next(classes.get(Priority.BULK));
+        }
+        if (job == null) return null;
+
+        PriorityClass priorityClass = classes.get(job.priority);
+        long wait = System.nanoTime() - job.enqueuedNanos;
+        priorityClass.queued--;
+        priorityClass.queuedCost -= job.cost;
+        priorityClass.running++;
+        priorityClass.dispatched++;
+        priorityClass.totalWaitNanos += wait;
+        priorityClass.maxWaitNanos = Math.max(priorityClass.maxWaitNanos, wait);
+        running++;
+        pending--;
+        pendingChars -= job.chars;
+        job.started = true;
+        notifyAll();
+        return job;
+    }
+
+    /**
+     * Звільняє місце і бюджет документа після аналізу.
+     *
+     * @param elapsedNanos виміряний час аналізу (0 — документ не аналізувався)
+     */
+    public synchronized void finished(Job job, long elapsedNanos) {
+        classes.get(job.priority).running--;
+        running--;
+        admissionController.release(job.reserved, job.comparisons, elapsedNanos);
+    }
+
+    /**
+     * Чекає, поки в пам'яті звільниться місце для документа з Redis черги.
+     *
+     * @return true, якщо місце є
+     */
+    public synchronized boolean awaitRoom(long timeoutMs) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (pending >= maxPending || pendingChars >= maxPendingChars) {
+            long left = deadline - System.nanoTime();
+            if (left <= 0) return false;
+            TimeUnit.NANOSECONDS.timedWait(this, left);
+        }
+        return true;
+    }
+
+    /**
+     * Deficit round robin у межах класу: наступний документ клієнта, чий дефіцит покриває його вартість.
+     */
+    private Job next(PriorityClass priorityClass) {
+        ArrayDeque<ClientQueue> active = priorityClass.active;
+        while (!active.isEmpty()) {
+            ClientQueue client = active.peekFirst();
+            if (!client.inTurn) {
+                client.deficit += quantum;
+                client.inTurn = true;
+            }
+            Job job = client.jobs.peekFirst();
+            if (job.cost <= client.deficit) {
+                long comparisons = admissionController.estimateComparisons(job.cost);
+                long reserved = admissionController.tryReserve(comparisons);
+                if (reserved < 0) {
+                    overBudget = true;
+                    return null;
+                }
+                job.comparisons = comparisons;
+                job.reserved = reserved;
+                client.jobs.pollFirst();
+                client.deficit -= job.cost;
+                if (client.jobs.isEmpty()) {
+                    // Порожня черга не накопичує дефіцит
+                    active.pollFirst();
+                    priorityClass.clients.remove(client.clientId);
+                }
+                return job;
+            }
+            client.inTurn = false;
+            active.addLast(active.pollFirst());
+        }
+        return null;
+    }
+
+    /**
+     * Кількість непорожніх рядків (тих, що лишаються після {@code DocumentLines.cleanLine}), не менше одного.
+     * Фрагменти знімка однакові для всіх документів, тому для черговості достатньо рядків.
+     */
+    private static long countLines(String body) {
+        if (body == null) return 1;
+        long lines = 0;
+        boolean blank = true;
+        for (int i = 0; i < body.length(); i++) {
+            char c = body.charAt(i);
+            if (c == '\n') {
+                if (!blank) lines++;
+                blank = true;
+            } else if (!Character.isWhitespace(c)) {
+                blank = false;
+            }
+        }
+        if (!blank) lines++;
+        return Math.max(1, lines);
+    }
+
+    /**
+     * Статистика за класами: довжина черги, вартість у черзі, запущені документи, час очікування.
+     */
+    public synchronized Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("slots", slots);
+        metrics.put("running", running);
+        metrics.put("pending", pending);
+        metrics.put("pendingChars", pendingChars);
+        metrics.put("quantum", quantum);
+        long now = System.nanoTime();
+        for (Map.Entry<Priority, PriorityClass> entry : classes.entrySet()) {
+            PriorityClass priorityClass = entry.getValue();
+            long oldest = 0;
+            for (ClientQueue client : priorityClass.active) {
+                oldest = Math.max(oldest, now - client.jobs.peekFirst().enqueuedNanos);
+            }
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("queueDepth", priorityClass.queued);
+            stats.put("queuedCost", priorityClass.queuedCost);
+            stats.put("waitingClients", priorityClass.active.size());
+            stats.put("running", priorityClass.running);
+            stats.put("dispatched", priorityClass.dispatched);
+            stats.put("avgWaitMs", priorityClass.dispatched == 0 ? 0
+                    : TimeUnit.NANOSECONDS.toMillis(priorityClass.totalWaitNanos / priorityClass.dispatched));
+            stats.put("maxWaitMs", TimeUnit.NANOSECONDS.toMillis(priorityClass.maxWaitNanos));
+            stats.put("oldestWaitMs", TimeUnit.NANOSECONDS.toMillis(oldest));
+            metrics.put(entry.getKey().name().toLowerCase(Locale.ROOT), stats);
+        }
+        return metrics;
+    }
+}
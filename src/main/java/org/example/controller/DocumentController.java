@@ -1,26 +1,142 @@
 package org.example.controller;
 
 import org.example.untils.Response;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.servlet.http.HttpServletRequest;
 import org.example.analysis.DocumentAnalysisLauncher;
+import org.example.service.MatcherServiceSync;
+import org.example.service.ProgressTracker;
+import org.example.service.match.DocumentLineReader;
 import org.example.untils.DocRequest;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/match")
 public class DocumentController {
     private static final Logger logger = LoggerFactory.getLogger(DocumentController.class);
     @Autowired
     private DocumentAnalysisLauncher documentAnalysisLauncher;
+    @Autowired
+    private MatcherServiceSync matcherServiceSync;
+    @Autowired
+    private ProgressTracker progressTracker;
+    @Value("${matcher.stream.max-line-chars:10000}")
+    private int maxLineChars;
+
+    /**
+     * Прогрес усіх документів, що зараз аналізуються: клієнт, документ, етап, оброблені шаблони,
+     * відсоток, прочитані рядки (для потокового аналізу) і час від початку.
+     */
+    @GetMapping("/jobs")
+    public List<Map<String, Object>> getActiveJobs() {
+        return progressTracker.getActiveJobs();
+    }
+
+    /**
+     * Потокове завантаження великого документа: {@code text/plain} (рядок за рядком) або NDJSON
+     * ({@code application/x-ndjson}, один JSON-рядок або об'єкт {@code {"text": ...}} на рядок),
+     * у тому числі з {@code Transfer-Encoding: chunked}.
+     * <p>
+     * Рядки читаються і аналізуються блоками під час завантаження, тому пам'ять задачі обмежена
+     * незалежно від розміру документа. Результат, як і для {@code /async}, надсилається через Kafka.
+     *
+     * @param clientId ідентифікатор клієнта
+     * @param doc      назва документа
+     * @param request  HTTP-запит з тілом документа
+     * @return 200 після аналізу, 400 для некоректного тіла (NDJSON, тип вмісту), 503, якщо всі місця
+     * для потокового аналізу зайняті, або 500 для помилок читання потоку і моделі
+     */
+    @PostMapping(value = "/stream", consumes = {MediaType.TEXT_PLAIN_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<?> matchStream(@RequestParam(name = "clientId") String clientId,
+                                         @RequestParam(name = "doc") String doc,
+                                         HttpServletRequest request) {
+        try {
+            DocumentLineReader.Format format = MediaType.APPLICATION_NDJSON.isCompatibleWith(
+                    MediaType.parseMediaType(request.getContentType()))
+                    ? DocumentLineReader.Format.NDJSON : DocumentLineReader.Format.TEXT;
+            Reader body = new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8);
+            DocumentLineReader reader = new DocumentLineReader(body, format, maxLineChars);
+            if (!documentAnalysisLauncher.matchStream(clientId, doc, reader)) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, "5")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body("Streaming analysis slots are busy, retry later.");
+            }
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body("Document has been analysed, the result will be sent via the result queue.");
+        } catch (JsonProcessingException | InvalidMediaTypeException e) {
+            logger.warn("⚠️ Некоректний документ у matchStream {}: {}", doc, e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body("Malformed document: " + e.getMessage());
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            logger.error("❌ Помилка всередині matchStream: {}", e.getMessage(), e);
+            return ResponseEntity.status(500)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body("Error occurred: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Синхронний аналіз короткого документа на спільному кеші шаблонів.
+     * <p>
+     * Клієнт може передати {@code deadlineMs}: якщо часу не вистачило, повертається найкращий
+     * знайдений шаблон з ознакою {@code partial: true} замість помилки тайм-ауту.
+     * Довгі документи ({@code matcher.sync.max-lines}) слід надсилати на {@code /async}.
+     *
+     * @param docRequest Обʼєкт з текстом документа
+     * @return JSON-результат або JSON-помилка
+     */
+    @PostMapping(value = "/sync", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> matchSync(@RequestBody DocRequest docRequest) {
+        try {
+            List<String> lines = Arrays.asList(docRequest.getBody().split("\n"));
+            if (lines.size() > matcherServiceSync.getMaxLines()) {
+                return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body("Document has " + lines.size() + " lines, the limit for /sync is "
+                                + matcherServiceSync.getMaxLines() + "; use /async.");
+            }
+            ObjectNode result = matcherServiceSync.matchDocument(docRequest.getDoc(), lines, docRequest.getDeadlineMs());
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(result.toString());
+        } catch (Exception e) {
+            logger.error("❌ Помилка всередині matchSync: {}", e.getMessage(), e);
+            return ResponseEntity.status(500)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body("Error occurred: " + e.getMessage());
+        }
+    }
+
     /**
      * Аналізує вміст документа, розбитий на рядки.
      *
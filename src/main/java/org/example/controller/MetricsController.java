@@ -0,0 +1,162 @@
+package org.example.controller;
+
+import org.example.analysis.AdmissionController;
+import org.example.analysis.JobScheduler;
+import org.example.kafka.KafkaProducerService;
+import org.example.loader.LineEmbeddingCache;
+import org.example.loader.PredictorPool;
+import org.example.service.FragmentEmbeddingStore;
+import org.example.service.MatchResultPublisher;
+import org.example.service.MatcherServiceSync;
+import org.example.service.ProgressTracker;
+import org.example.service.TemplatePruning;
+import org.example.service.TemplateScanner;
+import org.example.service.TemplateShortlist;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * MetricsController — внутрішні метрики сервісу для моніторингу навантаження.
+ */
+@RestController
+@RequestMapping("/api/metrics")
+public class MetricsController {
+
+    private final PredictorPool predictorPool;
+    private final FragmentEmbeddingStore fragmentStore;
+    private final LineEmbeddingCache lineEmbeddingCache;
+    private final TemplateShortlist templateShortlist;
+    private final TemplatePruning templatePruning;
+    private final TemplateScanner templateScanner;
+    private final MatcherServiceSync matcherServiceSync;
+    private final MatchResultPublisher matchResultPublisher;
+    private final KafkaProducerService kafkaProducerService;
+    private final ProgressTracker progressTracker;
+    private final JobScheduler jobScheduler;
+    private final AdmissionController admissionController;
+
+    public MetricsController(PredictorPool predictorPool,
+                             FragmentEmbeddingStore fragmentStore,
+                             LineEmbeddingCache lineEmbeddingCache,
+                             TemplateShortlist templateShortlist,
+                             TemplatePruning templatePruning,
+                             TemplateScanner templateScanner,
+                             MatcherServiceSync matcherServiceSync,
+                             MatchResultPublisher matchResultPublisher,
+                             KafkaProducerService kafkaProducerService,
+                             ProgressTracker progressTracker,
+                             JobScheduler jobScheduler,
+                             AdmissionController admissionController) {
+        this.predictorPool = predictorPool;
+        this.fragmentStore = fragmentStore;
+        this.lineEmbeddingCache = lineEmbeddingCache;
+        this.templateShortlist = templateShortlist;
+        this.templatePruning = templatePruning;
+        this.templateScanner = templateScanner;
+        this.matcherServiceSync = matcherServiceSync;
+        this.matchResultPublisher = matchResultPublisher;
+        this.kafkaProducerService = kafkaProducerService;
+        this.progressTracker = progressTracker;
+        this.jobScheduler = jobScheduler;
+        this.admissionController = admissionController;
+    }
+
+    /**
+     * Статистика пулу предикторів: розмір, вільні предиктори, час очікування.
+     */
+    @GetMapping("/predictor-pool")
+    public Map<String, Object> getPredictorPoolMetrics() {
+        return predictorPool.getMetrics();
+    }
+
+    /**
+     * Статистика сховища embedding-ів фрагментів: влучання та промахи.
+     */
+    @GetMapping("/fragment-store")
+    public Map<String, Object> getFragmentStoreMetrics() {
+        return fragmentStore.getMetrics();
+    }
+
+    /**
+     * Статистика кешу embedding-ів рядків: частка влучань, витіснення, зайнята пам'ять.
+     */
+    @GetMapping("/line-cache")
+    public Map<String, Object> getLineCacheMetrics() {
+        return lineEmbeddingCache.getMetrics();
+    }
+
+    /**
+     * Статистика лексичного відбору шаблонів: короткі списки та повні перебори.
+     */
+    @GetMapping("/shortlist")
+    public Map<String, Object> getShortlistMetrics() {
+        return templateShortlist.getMetrics();
+    }
+
+    /**
+     * Статистика відсікання шаблонів: пропущені порівняння «шаблон × рядок».
+     */
+    @GetMapping("/pruning")
+    public Map<String, Object> getPruningMetrics() {
+        return templatePruning.getMetrics();
+    }
+
+    /**
+     * Статистика паралельного перебору шаблонів: документи, плитки, зайняті потоки пулу.
+     */
+    @GetMapping("/parallel-scan")
+    public Map<String, Object> getParallelScanMetrics() {
+        return templateScanner.getMetrics();
+    }
+
+    /**
+     * Статистика синхронного аналізу: запити та часткові результати (вичерпаний deadline).
+     */
+    @GetMapping("/sync")
+    public Map<String, Object> getSyncMetrics() {
+        return matcherServiceSync.getMetrics();
+    }
+
+    /**
+     * Статистика покрокової публікації результатів: події та помилки.
+     */
+    @GetMapping("/publish")
+    public Map<String, Object> getPublishMetrics() {
+        return matchResultPublisher.getMetrics();
+    }
+
+    /**
+     * Статистика outbox Kafka: черга, повідомлення в дорозі, надіслані, помилки, відкинуті.
+     */
+    @GetMapping("/kafka-outbox")
+    public Map<String, Object> getKafkaOutboxMetrics() {
+        return kafkaProducerService.getMetrics();
+    }
+
+    /**
+     * Статистика прогресу: активні задачі, оновлення і надіслані повідомлення {@code /queue/status}.
+     */
+    @GetMapping("/progress")
+    public Map<String, Object> getProgressMetrics() {
+        return progressTracker.getMetrics();
+    }
+
+    /**
+     * Статистика планувальника за класами пріоритету: довжина черги, запущені документи, час очікування.
+     */
+    @GetMapping("/scheduler")
+    public Map<String, Object> getSchedulerMetrics() {
+        return jobScheduler.getMetrics();
+    }
+
+    /**
+     * Статистика допуску: бюджет обчислень, зарезервований час, оцінка часу одного порівняння.
+     */
+    @GetMapping("/admission")
+    public Map<String, Object> getAdmissionMetrics() {
+        return admissionController.getMetrics();
+    }
+}
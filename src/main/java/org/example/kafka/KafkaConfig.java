@@ -0,0 +1,60 @@
+package org.example.kafka;
+
+import org.apache.kafka.clients.admin.NewTopic;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
+
+/**
+ * Налаштування Kafka для розподілу аналізу між кількома екземплярами сервісу.
+ * <p>
+ * Топіки {@code analysis} і {@code after-analysis} мають {@code kafka.analysis.partitions} розділів,
+ * ключ запису — ідентифікатор клієнта. Екземпляри в групі {@code hapalochlaena} ділять розділи
+ * {@code analysis} між собою, а запити одного клієнта обробляються по порядку одним споживачем.
+ * Кількість споживачів на екземпляр — {@code kafka.analysis.concurrency} (більше за кількість
+ * розділів не має сенсу: зайві споживачі простоюють).
+ */
+@Configuration
+public class KafkaConfig {
+
+    /**
+     * Фабрика пакетних слухачів: записи надходять списком (до {@code spring.kafka.consumer.max-poll-records}),
+     * зсув фіксується вручну, після того як документ прийнято в обробку.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, String> batchKafkaListenerContainerFactory(
+            ConsumerFactory<String, String> consumerFactory,
+            @Value("${kafka.analysis.concurrency:3}") int concurrency) {
+        ConcurrentKafkaListenerContainerFactory<String, String> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory);
+        factory.setBatchListener(true);
+        factory.setConcurrency(Math.max(1, concurrency));
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        return factory;
+    }
+
+    @Bean
+    public NewTopic analysisTopic(@Value("${kafka.analysis.partitions:6}") int partitions,
+                                  @Value("${kafka.topic.replicas:1}") int replicas) {
+        return TopicBuilder.name("analysis").partitions(partitions).replicas(replicas).build();
+    }
+
+    @Bean
+    public NewTopic afterAnalysisTopic(@Value("${kafka.analysis.partitions:6}") int partitions,
+                                       @Value("${kafka.topic.replicas:1}") int replicas) {
+        return TopicBuilder.name("after-analysis").partitions(partitions).replicas(replicas).build();
+    }
+
+    /**
+     * Записи {@code analysis}, які не вдалося прийняти в обробку (див. {@link KafkaConsumerService#listenBatch})
+     */
+    @Bean
+    public NewTopic analysisDeadLetterTopic(@Value("${kafka.analysis.partitions:6}") int partitions,
+                                            @Value("${kafka.topic.replicas:1}") int replicas) {
+        return TopicBuilder.name(KafkaConsumerService.DEAD_LETTER_TOPIC).partitions(partitions).replicas(replicas).build();
+    }
+}
@@ -5,12 +5,21 @@ import org.example.untils.Message;
 import org.example.analysis.DocumentAnalysisLauncher;
 import org.example.untils.DocRequest;
 import org.example.untils.JsonSerializable;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * Сервіс KafkaConsumerService відповідає за прослуховування Kafka-топіку "analysis"
  * та обробку повідомлень, які надходять від інших мікросервісів або клієнтів.
@@ -20,6 +29,14 @@ import org.springframework.stereotype.Service;
  * - Перетворити його у об'єкт DocRequest.
  * - Запустити аналіз документа через DocumentAnalysisLauncher.
  * - Надіслати результат назад у топік "after-analysis" через KafkaProducerService.
+ * <p>
+ * За замовчуванням ({@code kafka.analysis.batch=true}) працює пакетний слухач {@link #listenBatch}:
+ * зсув фіксується лише після того, як документ прийнято в обробку, тож запит не губиться при
+ * зупинці екземпляра. Записи в "analysis" слід надсилати з ключем — ідентифікатором клієнта
+ * (див. {@link KafkaConfig}). Поки документ не вдається прийняти через збій інфраструктури (наприклад,
+ * Redis недоступний), запис читається повторно з наростаючою паузою, без обмеження кількості спроб.
+ * Лише некоректний запис (JSON не розбирається або документ без тексту) пересилається в топік
+ * {@value #DEAD_LETTER_TOPIC} і пропускається, а клієнт отримує відповідь з помилкою.
  */
 @Service
 public class KafkaConsumerService {
@@ -29,6 +46,17 @@ public class KafkaConsumerService {
      */
     private static final Logger logger = LoggerFactory.getLogger(KafkaConsumerService.class);
 
+    /**
+     * Топік для записів, які не вдалося обробити
+     */
+    public static final String DEAD_LETTER_TOPIC = "analysis.DLT";
+
+    /**
+     * Повторні спроби запису, що стоїть на початку розділу після nack (визначають паузу перед наступною)
+     */
+    private record Attempts(long offset, int count) {
+    }
+
     /**
      * Сервіс, який виконує асинхронний аналіз документа.
      * Впроваджується через Spring (Autowired).
@@ -43,6 +71,24 @@ public class KafkaConsumerService {
     @Autowired
     private KafkaProducerService kafkaProducerService;
 
+    /**
+     * Пауза перед першим повторним читанням запису, який не вдалося прийняти в обробку;
+     * кожна наступна спроба чекає вдвічі довше
+     */
+    @Value("${kafka.analysis.nack-sleep-ms:1000}")
+    private long nackSleepMs;
+
+    /**
+     * Найдовша пауза між спробами; має бути меншою за {@code max.poll.interval.ms} споживача
+     */
+    @Value("${kafka.analysis.max-nack-sleep-ms:30000}")
+    private long maxNackSleepMs;
+
+    /**
+     * Спроби запису, на якому зупинився кожен розділ (один запис на розділ)
+     */
+    private final Map<TopicPartition, Attempts> attempts = new ConcurrentHashMap<>();
+
     /**
      * Метод слухає Kafka-топік "analysis" у групі "hapalochlaena".
      * При надходженні нового повідомлення:
@@ -53,7 +99,8 @@ public class KafkaConsumerService {
      *
      * @param message JSON-рядок, який представляє собою DocRequest
      */
-    @KafkaListener(topics = "analysis", groupId = "hapalochlaena")
+    @KafkaListener(id = "analysis", topics = "analysis", groupId = "hapalochlaena",
+            autoStartup = "#{!${kafka.analysis.batch:true}}")
     public void listen(String message) {
         try {
             logger.info("Message length for analysis: {}", message.length());
@@ -68,6 +115,7 @@ public class KafkaConsumerService {
             if (response != null) {
                 kafkaProducerService.sendMessage(
                         "after-analysis",
+                        docRequest.getClientId(),
                         new Message(
                                 docRequest.getClientId(),          // Ідентифікатор клієнта
                                 "/queue/result",                   // Канал, куди надсилати відповідь
@@ -81,4 +129,84 @@ public class KafkaConsumerService {
             logger.error("An error occurred inside the analysis method: {}", e.getMessage(), e);
         }
     }
+
+    /**
+     * Пакетний слухач топіку "analysis".
+     * <p>
+     * Записи обробляються по порядку. Некоректний запис записується в журнал, пересилається
+     * в {@value #DEAD_LETTER_TOPIC} і пропускається, а клієнту надсилається відповідь з помилкою.
+     * Якщо документ не вдалося прийняти в обробку, зсуви попередніх записів фіксуються, а решта пакета
+     * читається повторно після паузи, що подвоюється з кожною спробою від {@code kafka.analysis.nack-sleep-ms}
+     * до {@code kafka.analysis.max-nack-sleep-ms}.
+     *
+     * @param records записи пакета (ключ — ідентифікатор клієнта)
+     * @param ack     ручне підтвердження зсуву
+     */
+    @KafkaListener(id = "analysis-batch", topics = "analysis", groupId = "hapalochlaena",
+            containerFactory = "batchKafkaListenerContainerFactory",
+            autoStartup = "${kafka.analysis.batch:true}")
+    public void listenBatch(List<ConsumerRecord<String, String>> records, Acknowledgment ack) {
+        logger.info("Batch for analysis: {} records", records.size());
+        for (int i = 0; i < records.size(); i++) {
+            ConsumerRecord<String, String> record = records.get(i);
+            DocRequest docRequest;
+            try {
+                docRequest = JsonSerializable.fromJson(record.value(), DocRequest.class);
+            } catch (Exception e) {
+                logger.error("Skipping malformed record {}-{}@{}: {}",
+                        record.topic(), record.partition(), record.offset(), e.getMessage());
+                deadLetter(record, record.key(), "Malformed analysis request: " + e.getMessage());
+                continue;
+            }
+            if (docRequest.getClientId() == null) {
+                docRequest.setClientId(record.key());
+            }
+            if (docRequest.getBody() == null) {
+                logger.error("Skipping record {}-{}@{} without document body", record.topic(), record.partition(), record.offset());
+                deadLetter(record, docRequest.getClientId(), "Document " + docRequest.getDoc() + " has no body");
+                continue;
+            }
+
+            // addTaskAsync повертає відповідь лише тоді, коли документ не вдалося записати (збій інфраструктури)
+            Response response = documentAnalysisLauncher.addTaskAsync(docRequest);
+            TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+            if (response == null) {
+                attempts.remove(partition);
+                continue;
+            }
+            Attempts previous = attempts.get(partition);
+            int attempt = previous != null && previous.offset() == record.offset() ? previous.count() + 1 : 1;
+            attempts.put(partition, new Attempts(record.offset(), attempt));
+            long sleepMs = backoff(attempt);
+            logger.warn("Document {} was not accepted ({}), retrying from {}-{}@{} in {} ms (attempt {})",
+                    docRequest.getDoc(), response.getJson(), record.topic(), record.partition(), record.offset(),
+                    sleepMs, attempt);
+            ack.nack(i, Duration.ofMillis(sleepMs));
+            return;
+        }
+        ack.acknowledge();
+    }
+
+    /**
+     * Пауза перед спробою {@code attempt + 1}: {@code nack-sleep-ms * 2^(attempt - 1)}, не більше {@code max-nack-sleep-ms}
+     */
+    private long backoff(int attempt) {
+        long sleepMs = nackSleepMs << Math.min(attempt - 1, 20);
+        return Math.min(sleepMs, Math.max(nackSleepMs, maxNackSleepMs));
+    }
+
+    /**
+     * Пересилає запис у {@value #DEAD_LETTER_TOPIC} з тим самим ключем і повідомляє клієнта про помилку
+     * (надсилання асинхронне, помилки записуються в журнал продюсером).
+     */
+    private void deadLetter(ConsumerRecord<String, String> record, String clientId, String error) {
+        kafkaProducerService.sendMessage(DEAD_LETTER_TOPIC, record.key(), record.value());
+        if (clientId != null) {
+            kafkaProducerService.sendMessage("after-analysis", clientId, new Message(
+                    clientId,
+                    "/queue/result",
+                    new Response(error, 400).getJson()
+            ).getJson());
+        }
+    }
 }
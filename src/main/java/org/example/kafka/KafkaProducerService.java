@@ -1,16 +1,40 @@
 package org.example.kafka;
 
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.producer.ProducerConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 
-import java.util.concurrent.ExecutionException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * KafkaProducerService — сервіс для відправлення повідомлень у Kafka.
  * <p>
- * Цей клас використовується для синхронної передачі повідомлень у задані Kafka-топіки.
+ * Надсилання асинхронне: повідомлення кладеться в обмежену чергу (outbox) на
+ * {@code kafka.after-analysis.outbox-capacity} записів, а окремий потік {@code kafka-outbox} передає
+ * його продюсеру. Потік аналізу не чекає ні на брокер, ні на метадані топіка; результат надсилання
+ * повертається як {@link CompletableFuture}, помилки записуються в журнал у зворотному виклику.
+ * Якщо черга заповнена (брокер довго недоступний), повідомлення відкидається і майбутнє завершується
+ * з помилкою.
+ * <p>
+ * Продюсер має власні налаштування пакетування: {@code kafka.after-analysis.linger-ms},
+ * {@code kafka.after-analysis.batch-size} і {@code kafka.after-analysis.compression} — відсотки прогресу
+ * та результати багатьох документів відправляються спільними стиснутими пакетами.
  * Повідомлення надсилаються як рядки (String).
  */
 @Service
@@ -21,6 +45,13 @@ public class KafkaProducerService {
      */
     private static final Logger logger = LoggerFactory.getLogger(KafkaProducerService.class);
 
+    /**
+     * Повідомлення, яке чекає на передачу продюсеру
+     */
+    private record Pending(String topic, String key, String message,
+                           CompletableFuture<SendResult<String, String>> future) {
+    }
+
     /**
      * KafkaTemplate — основний інструмент для взаємодії з Kafka.
      * У даному випадку використовується шаблон для пар <String, String>,
@@ -29,29 +60,139 @@ public class KafkaProducerService {
     private final KafkaTemplate<String, String> kafkaTemplate;
 
     /**
-     * Конструктор, через який Spring автоматично впроваджує KafkaTemplate.
+     * Черга повідомлень, ще не переданих продюсеру
+     */
+    private final BlockingQueue<Pending> outbox;
+
+    private final Thread sender;
+    private volatile boolean running = true;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * Конструктор, через який Spring автоматично впроваджує фабрику продюсерів.
+     *
+     * @param producerFactory фабрика продюсерів Spring Boot ({@code spring.kafka.producer.*})
+     * @param outboxCapacity  найбільша кількість повідомлень, що чекають на передачу продюсеру
+     * @param lingerMs        скільки продюсер чекає на наповнення пакета
+     * @param batchSize       розмір пакета в байтах
+     * @param compression     стиснення пакетів ({@code none}, {@code lz4}, {@code snappy}, {@code zstd}, {@code gzip})
+     */
+    public KafkaProducerService(ProducerFactory<String, String> producerFactory,
+                                @Value("${kafka.after-analysis.outbox-capacity:10000}") int outboxCapacity,
+                                @Value("${kafka.after-analysis.linger-ms:10}") int lingerMs,
+                                @Value("${kafka.after-analysis.batch-size:65536}") int batchSize,
+                                @Value("${kafka.after-analysis.compression:lz4}") String compression) {
+        Map<String, Object> overrides = new HashMap<>();
+        overrides.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+        overrides.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+        overrides.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compression);
+        // Окремий продюсер з власним пакетуванням; інші фабрики (тестові) використовуються як є
+        this.kafkaTemplate = producerFactory instanceof DefaultKafkaProducerFactory
+                ? new KafkaTemplate<>(producerFactory, overrides)
+                : new KafkaTemplate<>(producerFactory);
+        this.outbox = new ArrayBlockingQueue<>(Math.max(1, outboxCapacity));
+
+        this.sender = new Thread(this::drain, "kafka-outbox");
+        this.sender.setDaemon(true);
+        this.sender.start();
+    }
+
+    /**
+     * Надсилає повідомлення у вказаний Kafka-топік без ключа.
      *
-     * @param kafkaTemplate інструмент для надсилання повідомлень у Kafka
+     * @param topic   назва Kafka-топіка, куди буде надіслано повідомлення
+     * @param message повідомлення у вигляді JSON або тексту
+     * @return результат надсилання (завершується після підтвердження брокером)
      */
-    public KafkaProducerService(KafkaTemplate<String, String> kafkaTemplate) {
-        this.kafkaTemplate = kafkaTemplate;
+    public CompletableFuture<SendResult<String, String>> sendMessage(String topic, String message) {
+        return sendMessage(topic, null, message);
     }
 
     /**
-     * Надсилає повідомлення у вказаний Kafka-топік.
-     * Метод є синхронним — чекає, поки Kafka підтвердить надсилання.
+     * Надсилає повідомлення з ключем. Повідомлення з однаковим ключем (ідентифікатором клієнта)
+     * потрапляють в один розділ топіка, тож для клієнта зберігається порядок повідомлень.
+     * Метод не блокується: повідомлення лише додається в outbox.
      *
      * @param topic   назва Kafka-топіка, куди буде надіслано повідомлення
+     * @param key     ключ запису (clientId); null — розділ обирається без ключа
      * @param message повідомлення у вигляді JSON або тексту
-     * @return true, якщо повідомлення було успішно надіслано; false — у разі помилки
+     * @return результат надсилання; завершується з помилкою, якщо outbox заповнений або брокер відмовив
      */
-    public void sendMessage(String topic, String message) {
-        try {
-            // Синхронне надсилання: чекаємо, поки Kafka завершить обробку
-            kafkaTemplate.send(topic, message).get();
-        } catch (ExecutionException | InterruptedException e) {
+    public CompletableFuture<SendResult<String, String>> sendMessage(String topic, String key, String message) {
+        CompletableFuture<SendResult<String, String>> future = new CompletableFuture<>();
+        if (!running || !outbox.offer(new Pending(topic, key, message, future))) {
+            dropped.increment();
+            logger.warn("Kafka outbox is full ({} messages), dropping message to {} for {}", outbox.size(), topic, key);
+            future.completeExceptionally(new RejectedExecutionException("Kafka outbox is full"));
+        }
+        return future;
+    }
+
+    /**
+     * Передає повідомлення з outbox продюсеру. Продюсер може блокуватися (метадані топіка,
+     * заповнений буфер) — це затримує лише цей потік.
+     */
+    private void drain() {
+        while (running || !outbox.isEmpty()) {
+            Pending pending;
+            try {
+                pending = outbox.poll(200, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (pending == null) continue;
+            inFlight.incrementAndGet();
+            try {
+                kafkaTemplate.send(pending.topic(), pending.key(), pending.message()).whenComplete((result, e) -> {
+                    inFlight.decrementAndGet();
+                    complete(pending, result, e);
+                });
+            } catch (Exception e) {
+                inFlight.decrementAndGet();
+                complete(pending, null, e);
+            }
+        }
+    }
+
+    private void complete(Pending pending, SendResult<String, String> result, Throwable e) {
+        if (e == null) {
+            sent.increment();
+            pending.future().complete(result);
+        } else {
+            failed.increment();
             // Логування винятку у разі проблем з надсиланням
-            logger.error("Kafka send error: {}", e.getMessage(), e);
+            logger.error("Kafka send error to {} for {}: {}", pending.topic(), pending.key(), e.getMessage(), e);
+            pending.future().completeExceptionally(e);
         }
     }
+
+    /**
+     * Статистика outbox: черга, повідомлення в дорозі, надіслані, помилки, відкинуті.
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("queued", outbox.size());
+        metrics.put("remainingCapacity", outbox.remainingCapacity());
+        metrics.put("inFlight", inFlight.get());
+        metrics.put("sent", sent.sum());
+        metrics.put("failed", failed.sum());
+        metrics.put("dropped", dropped.sum());
+        return metrics;
+    }
+
+    /**
+     * Дочекатися передачі решти outbox, відправити накопичені пакети і закрити продюсер.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        sender.join(TimeUnit.SECONDS.toMillis(10));
+        kafkaTemplate.flush();
+        kafkaTemplate.destroy();
+    }
 }
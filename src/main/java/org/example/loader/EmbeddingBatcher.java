@@ -0,0 +1,248 @@
+package org.example.loader;
+
+import ai.djl.inference.Predictor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * EmbeddingBatcher — динамічне мікро-пакетування запитів до моделі embedding-ів.
+ * <p>
+ * Речення від усіх документів, що обробляються одночасно, та від побудови шаблонів
+ * потрапляють у спільну чергу. Робочі потоки забирають їх пакетами і викликають
+ * {@link Predictor#batchPredict} замість поштучного {@link Predictor#predict}.
+ * <p>
+ * Пакет відправляється в модель, коли:
+ * - набрано {@code embedding.batch.max-size} речень, або
+ * - з моменту появи першого речення пакета минуло {@code embedding.batch.max-wait-ms} мс.
+ * <p>
+ * Кожен виклик отримує {@link CompletableFuture} зі своїм результатом. Після {@link #stop()} нові
+ * запити одразу завершуються з помилкою, а синхронне очікування ({@link #embedAllAndWait})
+ * обмежене {@code embedding.batch.wait-timeout-ms}, тож виклики не зависають назавжди.
+ */
+@Component
+public class EmbeddingBatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddingBatcher.class);
+
+    /**
+     * Речення, яке очікує на обчислення embedding-а
+     */
+    private record PendingEmbedding(String text, CompletableFuture<float[]> future) {
+    }
+
+    /**
+     * Пул предикторів, з якого робочі потоки позичають предиктор на час обробки пакета
+     */
+    private final PredictorPool predictorPool;
+
+    /**
+     * Максимальна кількість речень в одному пакеті
+     */
+    private final int maxBatchSize;
+
+    /**
+     * Максимальний час очікування на заповнення пакета (мс)
+     */
+    private final long maxWaitMs;
+
+    /**
+     * Кількість робочих потоків, що паралельно викликають модель
+     */
+    private final int workers;
+
+    /**
+     * Найдовше очікування результату в {@link #embedAllAndWait} (мс)
+     */
+    private final long waitTimeoutMs;
+
+    /**
+     * Спільна черга речень від усіх викликів
+     */
+    private final BlockingQueue<PendingEmbedding> queue = new LinkedBlockingQueue<>();
+
+    private final List<Thread> workerThreads = new ArrayList<>();
+
+    /**
+     * Лічильники для оцінки ефективності пакетування
+     */
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder sentenceCount = new LongAdder();
+
+    private volatile boolean running;
+
+    public EmbeddingBatcher(PredictorPool predictorPool,
+                            @Value("${embedding.batch.max-size:32}") int maxBatchSize,
+                            @Value("${embedding.batch.max-wait-ms:5}") long maxWaitMs,
+                            @Value("${embedding.batch.workers:2}") int workers,
+                            @Value("${embedding.batch.wait-timeout-ms:60000}") long waitTimeoutMs) {
+        this.predictorPool = predictorPool;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxWaitMs = Math.max(0, maxWaitMs);
+        this.workers = Math.max(1, Math.min(workers, predictorPool.getSize()));
+        this.waitTimeoutMs = Math.max(1, waitTimeoutMs);
+    }
+
+    /**
+     * Запускає робочі потоки. На час обробки пакета потік позичає предиктор із {@link PredictorPool}.
+     */
+    @PostConstruct
+    public void start() {
+        running = true;
+        for (int i = 0; i < workers; i++) {
+            Thread thread = new Thread(this::runWorker, "embed-batch-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            workerThreads.add(thread);
+        }
+        logger.info("EmbeddingBatcher запущено: пакет до {} речень, очікування до {} мс, потоків {}",
+                maxBatchSize, maxWaitMs, workers);
+    }
+
+    /**
+     * Зупиняє робочі потоки та завершує з помилкою всі незавершені запити.
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        workerThreads.forEach(Thread::interrupt);
+        PendingEmbedding pending;
+        while ((pending = queue.poll()) != null) {
+            pending.future().completeExceptionally(new CancellationException("EmbeddingBatcher зупинено"));
+        }
+    }
+
+    /**
+     * Ставить речення в чергу на обчислення embedding-а.
+     *
+     * @param text речення
+     * @return майбутній embedding-вектор
+     */
+    public CompletableFuture<float[]> embed(String text) {
+        CompletableFuture<float[]> future = new CompletableFuture<>();
+        if (!running) {
+            future.completeExceptionally(new IllegalStateException("EmbeddingBatcher не запущено"));
+            return future;
+        }
+        PendingEmbedding pending = new PendingEmbedding(text, future);
+        queue.add(pending);
+        // stop() міг спорожнити чергу між перевіркою і додаванням — такий запит ніхто не обробить
+        if (!running && queue.remove(pending)) {
+            future.completeExceptionally(new CancellationException("EmbeddingBatcher зупинено"));
+        }
+        return future;
+    }
+
+    /**
+     * Ставить у чергу список речень і повертає їхні embedding-и в тому ж порядку.
+     *
+     * @param texts речення
+     * @return майбутній список embedding-векторів
+     */
+    public CompletableFuture<List<float[]>> embedAll(List<String> texts) {
+        List<CompletableFuture<float[]>> futures = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            futures.add(embed(text));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .thenApply(ignored -> futures.stream().map(CompletableFuture::join).toList());
+    }
+
+    /**
+     * Синхронний варіант {@link #embedAll(List)} для викликів із робочих потоків.
+     *
+     * @param texts речення
+     * @return список embedding-векторів у тому ж порядку
+     * @throws ExecutionException   якщо модель повернула помилку або не відповіла за
+     *                              {@code embedding.batch.wait-timeout-ms} (причина — {@link TimeoutException})
+     * @throws InterruptedException якщо потік перервано під час очікування
+     */
+    public List<float[]> embedAllAndWait(List<String> texts) throws ExecutionException, InterruptedException {
+        CompletableFuture<List<float[]>> future = embedAll(texts);
+        try {
+            return future.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new ExecutionException(new TimeoutException(
+                    "Embedding-и " + texts.size() + " речень не обчислено за " + waitTimeoutMs + " мс"));
+        }
+    }
+
+    /**
+     * @return кількість пакетів, переданих у модель
+     */
+    public long getBatchCount() {
+        return batchCount.sum();
+    }
+
+    /**
+     * @return середній розмір пакета
+     */
+    public double getAverageBatchSize() {
+        long batches = batchCount.sum();
+        return batches == 0 ? 0.0 : sentenceCount.sum() / (double) batches;
+    }
+
+    private void runWorker() {
+        List<PendingEmbedding> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            Predictor<String, float[]> predictor = null;
+            try {
+                collectBatch(batch);
+                predictor = predictorPool.borrow();
+                processBatch(predictor, batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                batch.forEach(pending -> pending.future().completeExceptionally(e));
+                break;
+            } finally {
+                predictorPool.release(predictor);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Блокується до появи першого речення, потім добирає пакет до розміру
+     * або до вичерпання часу очікування.
+     */
+    private void collectBatch(List<PendingEmbedding> batch) throws InterruptedException {
+        batch.add(queue.take());
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        while (batch.size() < maxBatchSize) {
+            long remaining = deadline - System.nanoTime();
+            PendingEmbedding next = remaining > 0
+                    ? queue.poll(remaining, TimeUnit.NANOSECONDS)
+                    : queue.poll();
+            if (next == null) break;
+            batch.add(next);
+        }
+    }
+
+    /**
+     * Обчислює embedding-и пакета. Однакові речення в межах пакета обчислюються один раз.
+     */
+    private void processBatch(Predictor<String, float[]> predictor, List<PendingEmbedding> batch) {
+        Map<String, Integer> positions = new LinkedHashMap<>();
+        for (PendingEmbedding pending : batch) {
+            positions.putIfAbsent(pending.text(), positions.size());
+        }
+        try {
+            List<float[]> embeddings = predictor.batchPredict(new ArrayList<>(positions.keySet()));
+            for (PendingEmbedding pending : batch) {
+                pending.future().complete(embeddings.get(positions.get(pending.text())));
+            }
+            batchCount.increment();
+            sentenceCount.add(positions.size());
+        } catch (Exception e) {
+            logger.error("Помилка обчислення пакета embedding-ів ({} речень): {}", batch.size(), e.getMessage(), e);
+            batch.forEach(pending -> pending.future().completeExceptionally(e));
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package org.example.loader;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.example.redis.RedisService;
+import org.example.service.FragmentEmbeddingStore;
+import org.example.untils.CachedTemplateCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LineEmbeddingCache — обмежений кеш embedding-ів рядків документів між документами.
+ * <p>
+ * Документи (накази) повторюють однакові рядки: заголовки, блоки підписів,
+ * "Контроль за виконанням наказу…". Кеш тримає очищений рядок → embedding, тож повторний рядок
+ * не потрапляє до моделі. Реалізація — Caffeine (W-TinyLFU): часті рядки витісняються
+ * рідше, ніж разові. Розмір обмежено в байтах ({@code embedding.line-cache.max-bytes})
+ * з оцінкою розміру кожного запису.
+ * <p>
+ * Другий рівень (необов'язковий, {@code embedding.line-cache.redis}) — Redis: промахи першого рівня
+ * спершу шукаються там і лише потім обчислюються моделлю. Рядки документів зберігаються окремо від
+ * фрагментів шаблонів — під ключами {@code LineEmbedding:<hash>} (хеш як у {@link FragmentEmbeddingStore})
+ * з часом життя {@code embedding.line-cache.redis-ttl-seconds}, тож разові рядки не накопичуються.
+ */
+@Component
+public class LineEmbeddingCache {
+
+    /**
+     * Оцінка накладних витрат на запис (об'єкти рядка, масиву та вузла кешу)
+     */
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    private static final String KEY_PREFIX = "LineEmbedding:";
+
+    private static final Logger logger = LoggerFactory.getLogger(LineEmbeddingCache.class);
+
+    private final EmbeddingBatcher embeddingBatcher;
+    private final FragmentEmbeddingStore fragmentStore;
+    private final RedisService redisService;
+    private final boolean redisTier;
+    private final Duration redisTtl;
+    private final long maxBytes;
+    private final Cache<String, float[]> cache;
+
+    private final LongAdder redisHits = new LongAdder();
+    private final LongAdder redisFailures = new LongAdder();
+
+    public LineEmbeddingCache(EmbeddingBatcher embeddingBatcher,
+                              FragmentEmbeddingStore fragmentStore,
+                              RedisService redisService,
+                              @Value("${embedding.line-cache.max-bytes:67108864}") long maxBytes,
+                              @Value("${embedding.line-cache.redis:false}") boolean redisTier,
+                              @Value("${embedding.line-cache.redis-ttl-seconds:86400}") long redisTtlSeconds) {
+        this.embeddingBatcher = embeddingBatcher;
+        this.fragmentStore = fragmentStore;
+        this.redisService = redisService;
+        this.redisTier = redisTier;
+        this.redisTtl = Duration.ofSeconds(Math.max(1, redisTtlSeconds));
+        this.maxBytes = maxBytes;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher(LineEmbeddingCache::weigh)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Повертає embedding-и рядків: з кешу, з Redis (якщо увімкнено) або обчислені моделлю.
+     *
+     * @param lines очищені рядки
+     * @return embedding-и (індекс збігається з {@code lines})
+     * @throws ExecutionException   якщо виникла помилка в моделі
+     * @throws InterruptedException якщо потік перервано під час очікування
+     */
+    public List<float[]> embedAll(List<String> lines) throws ExecutionException, InterruptedException {
+        try {
+            return embedAll(lines, -1);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Варіант {@link #embedAll(List)} з обмеженням часу очікування. Строк спільний для пошуку в Redis
+     * і моделі: модель отримує лише залишок часу. Якщо час вичерпано, обчислення не скасовуються:
+     * їхні результати потраплять у кеш (і в Redis) і знадобляться наступному запиту з тими самими рядками.
+     *
+     * @param lines        очищені рядки
+     * @param timeoutNanos найбільший час очікування (від'ємний — без обмеження)
+     * @return embedding-и (індекс збігається з {@code lines})
+     * @throws TimeoutException     якщо embedding-и не обчислено вчасно
+     * @throws ExecutionException   якщо виникла помилка в моделі
+     * @throws InterruptedException якщо потік перервано під час очікування
+     */
+    public List<float[]> embedAll(List<String> lines, long timeoutNanos)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        Map<String, float[]> present = cache.getAllPresent(lines);
+        if (present.size() == lines.size()) {
+            return lines.stream().map(present::get).toList();
+        }
+
+        long deadline = System.nanoTime() + timeoutNanos;
+        List<String> missing = new ArrayList<>(new LinkedHashSet<>(lines));
+        missing.removeAll(present.keySet());
+        Map<String, float[]> loaded = new HashMap<>(present);
+        if (redisTier) {
+            Map<String, float[]> found = lookup(missing);
+            found.forEach(cache::put);
+            loaded.putAll(found);
+            missing.removeAll(found.keySet());
+        }
+
+        if (!missing.isEmpty()) {
+            CompletableFuture<List<float[]>> future = embeddingBatcher.embedAll(missing);
+            List<float[]> computed;
+            try {
+                computed = timeoutNanos < 0 ? future.get() : future.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                // Запізнілі embedding-и все одно потрапляють у кеш (і в Redis) для наступних запитів
+                future.thenAccept(late -> remember(missing, late));
+                throw e;
+            }
+            remember(missing, computed);
+            for (int i = 0; i < missing.size(); i++) {
+                loaded.put(missing.get(i), computed.get(i));
+            }
+        }
+        return lines.stream().map(loaded::get).toList();
+    }
+
+    /**
+     * Статистика кешу: частка влучань, витіснення, зайнята пам'ять.
+     */
+    public Map<String, Object> getMetrics() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("entries", cache.estimatedSize());
+        metrics.put("hits", stats.hitCount());
+        metrics.put("misses", stats.missCount());
+        metrics.put("hitRatio", stats.hitRate());
+        metrics.put("evictions", stats.evictionCount());
+        metrics.put("evictedBytes", stats.evictionWeight());
+        metrics.put("usedBytes", cache.policy().eviction().map(e -> e.weightedSize().orElse(0L)).orElse(0L));
+        metrics.put("maxBytes", maxBytes);
+        metrics.put("redisTier", redisTier);
+        metrics.put("redisHits", redisHits.sum());
+        metrics.put("redisFailures", redisFailures.sum());
+        return metrics;
+    }
+
+    /**
+     * Кладе обчислені embedding-и в кеш і, якщо увімкнено, у Redis.
+     */
+    private void remember(List<String> lines, List<float[]> embeddings) {
+        Map<String, byte[]> toStore = new HashMap<>();
+        for (int i = 0; i < lines.size(); i++) {
+            cache.put(lines.get(i), embeddings.get(i));
+            if (redisTier) {
+                toStore.put(KEY_PREFIX + fragmentStore.hash(lines.get(i)),
+                        CachedTemplateCodec.encodeVector(embeddings.get(i), CachedTemplateCodec.Encoding.FLOAT32,
+                                fragmentStore.getModelName()));
+            }
+        }
+        if (!toStore.isEmpty()) {
+            store(toStore);
+        }
+    }
+
+    /**
+     * Шукає рядки в Redis.
+     *
+     * @return знайдені рядки → embedding (порожньо, якщо Redis недоступний)
+     */
+    private Map<String, float[]> lookup(List<String> lines) {
+        List<String> keys = lines.stream().map(line -> KEY_PREFIX + fragmentStore.hash(line)).toList();
+        Map<String, float[]> found = new HashMap<>();
+        try {
+            List<byte[]> stored = redisService.getBytes(keys);
+            for (int i = 0; i < lines.size(); i++) {
+                float[] vector = stored.get(i) != null
+                        ? CachedTemplateCodec.decodeVector(stored.get(i), fragmentStore.getModelName()) : null;
+                if (vector != null) {
+                    found.put(lines.get(i), vector);
+                }
+            }
+        } catch (RuntimeException e) {
+            redisFailures.increment();
+            logger.warn("Redis кеш рядків недоступний: {}", e.getMessage());
+        }
+        redisHits.add(found.size());
+        return found;
+    }
+
+    private void store(Map<String, byte[]> values) {
+        try {
+            redisService.saveBytes(values, redisTtl);
+        } catch (RuntimeException e) {
+            redisFailures.increment();
+            logger.warn("Не вдалося зберегти {} рядків у Redis кеш: {}", values.size(), e.getMessage());
+        }
+    }
+
+    private static int weigh(String line, float[] embedding) {
+        return ENTRY_OVERHEAD_BYTES + 2 * line.length() + 4 * embedding.length;
+    }
+}
@@ -44,6 +44,13 @@ public class ModelLoader {
         }
     }
 
+    /**
+     * @return назва моделі, якою обчислюються embedding-и
+     */
+    public String getModelName() {
+        return MODEL_NAME;
+    }
+
     public Predictor<String, float[]> newPredictor(){
         return model.newPredictor();
     }
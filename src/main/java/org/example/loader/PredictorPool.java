@@ -0,0 +1,153 @@
+package org.example.loader;
+
+import ai.djl.inference.Predictor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * PredictorPool — обмежений пул предикторів поверх {@link ModelLoader#newPredictor()}.
+ * <p>
+ * Предиктор DJL не призначений для одночасного використання кількома потоками,
+ * тому кожен потік позичає окремий предиктор ({@link #borrow()}) і повертає його
+ * після використання ({@link #release(Predictor)}).
+ * <p>
+ * Предиктори позичають лише робочі потоки {@link EmbeddingBatcher}, тому розмір пулу за замовчуванням
+ * дорівнює їхній кількості ({@code embedding.batch.workers}) — зайві предиктори лише тримали б пам'ять.
+ * Пул збирає статистику очікування, щоб було видно конкуренцію за предиктори.
+ */
+@Component
+public class PredictorPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(PredictorPool.class);
+
+    private final ModelLoader modelLoader;
+
+    /**
+     * Кількість предикторів у пулі
+     */
+    private final int size;
+
+    /**
+     * Вільні предиктори
+     */
+    private final BlockingQueue<Predictor<String, float[]>> idle;
+
+    /**
+     * Усі створені предиктори (для закриття при зупинці)
+     */
+    private final List<Predictor<String, float[]>> all = new ArrayList<>();
+
+    /**
+     * Статистика очікування на предиктор
+     */
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder contendedCount = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public PredictorPool(ModelLoader modelLoader,
+                         @Value("${embedding.predictor.pool-size:${embedding.batch.workers:2}}") int size) {
+        this.modelLoader = modelLoader;
+        this.size = Math.max(1, size);
+        this.idle = new ArrayBlockingQueue<>(this.size);
+    }
+
+    /**
+     * Створює всі предиктори пулу.
+     */
+    @PostConstruct
+    public void init() {
+        for (int i = 0; i < size; i++) {
+            Predictor<String, float[]> predictor = modelLoader.newPredictor();
+            all.add(predictor);
+            idle.add(predictor);
+        }
+        logger.info("PredictorPool створено: {} предикторів", size);
+    }
+
+    /**
+     * Закриває всі предиктори пулу.
+     */
+    @PreDestroy
+    public void close() {
+        all.forEach(Predictor::close);
+        all.clear();
+        idle.clear();
+    }
+
+    /**
+     * Позичає предиктор. Якщо вільних немає — чекає, доки інший потік поверне свій.
+     *
+     * @return предиктор, який треба повернути через {@link #release(Predictor)}
+     * @throws InterruptedException якщо потік перервано під час очікування
+     */
+    public Predictor<String, float[]> borrow() throws InterruptedException {
+        Predictor<String, float[]> predictor = idle.poll();
+        if (predictor == null) {
+            long start = System.nanoTime();
+            predictor = idle.take();
+            long waited = System.nanoTime() - start;
+            contendedCount.increment();
+            totalWaitNanos.add(waited);
+            maxWaitNanos.accumulateAndGet(waited, Math::max);
+        }
+        borrowCount.increment();
+        return predictor;
+    }
+
+    /**
+     * Повертає предиктор у пул.
+     *
+     * @param predictor предиктор, отриманий через {@link #borrow()}
+     */
+    public void release(Predictor<String, float[]> predictor) {
+        if (predictor != null) {
+            idle.offer(predictor);
+        }
+    }
+
+    /**
+     * @return кількість вільних предикторів
+     */
+    public int getAvailable() {
+        return idle.size();
+    }
+
+    /**
+     * @return розмір пулу
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Статистика пулу для моніторингу конкуренції.
+     *
+     * @return карта метрик: розмір, вільні, кількість позичань, очікувань, середнє та максимальне очікування (мс)
+     */
+    public Map<String, Object> getMetrics() {
+        long borrows = borrowCount.sum();
+        long contended = contendedCount.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("size", size);
+        metrics.put("available", getAvailable());
+        metrics.put("borrows", borrows);
+        metrics.put("contended", contended);
+        metrics.put("avgWaitMs", contended == 0 ? 0.0 : totalWaitNanos.sum() / 1e6 / contended);
+        metrics.put("maxWaitMs", maxWaitNanos.get() / 1e6);
+        return metrics;
+    }
+}
@@ -1,16 +1,28 @@
 package org.example.redis;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.RedisListCommands;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
 /**
  * RedisService — сервіс для роботи з Redis як із кешем або тимчасовим сховищем.
  * <p>
  * Реалізує базові операції:
  * - збереження та отримання ключ-значення (String → String)
+ * - збереження та отримання двійкових значень (String → byte[])
  * - видалення ключів
- * - операції з чергою (списком): додавання в кінець, витяг з початку
+ * - операції з чергою (списком): додавання в кінець, витяг з початку, атомарне перенесення між списками
+ * - додавання записів у Redis Stream
  */
 @Service
 public class RedisService {
@@ -23,6 +35,12 @@ public class RedisService {
     @Autowired
     private RedisTemplate<String, String> redisTemplate;
 
+    /**
+     * RedisTemplate для двійкових значень (див. {@link RedisConfig}).
+     */
+    @Autowired
+    private RedisTemplate<String, byte[]> binaryRedisTemplate;
+
     /**
      * Зберігає значення у Redis за вказаним ключем.
      *
@@ -43,6 +61,47 @@ public class RedisService {
         return redisTemplate.opsForValue().get(key);
     }
 
+    /**
+     * Отримує кілька двійкових значень одним запитом (MGET).
+     *
+     * @param keys ключі
+     * @return значення в порядку ключів (null для відсутніх)
+     */
+    public List<byte[]> getBytes(List<String> keys) {
+        List<byte[]> values = binaryRedisTemplate.opsForValue().multiGet(keys);
+        return values != null ? values : Collections.nCopies(keys.size(), null);
+    }
+
+    /**
+     * Зберігає кілька двійкових значень одним запитом (MSET).
+     *
+     * @param values ключ → значення
+     */
+    public void saveBytes(Map<String, byte[]> values) {
+        if (!values.isEmpty()) {
+            binaryRedisTemplate.opsForValue().multiSet(values);
+        }
+    }
+
+    /**
+     * Зберігає кілька двійкових значень з часом життя (SET EX) одним конвеєром (pipeline).
+     *
+     * @param values ключ → значення
+     * @param ttl    час життя кожного запису
+     */
+    public void saveBytes(Map<String, byte[]> values, Duration ttl) {
+        if (values.isEmpty()) return;
+        binaryRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, byte[]> ops = (RedisOperations<String, byte[]>) operations;
+                values.forEach((key, value) -> ops.opsForValue().set(key, value, ttl));
+                return null;
+            }
+        });
+    }
+
     /**
      * Видаляє запис з Redis за вказаним ключем.
      *
@@ -53,6 +112,18 @@ public class RedisService {
         return Boolean.TRUE.equals(redisTemplate.delete(key));
     }
 
+    /**
+     * Видаляє кілька записів одним запитом (DEL).
+     *
+     * @param keys ключі для видалення
+     * @return кількість видалених записів
+     */
+    public long deleteData(Collection<String> keys) {
+        if (keys.isEmpty()) return 0;
+        Long deleted = redisTemplate.delete(keys);
+        return deleted != null ? deleted : 0;
+    }
+
     /**
      * Додає значення в кінець списку Redis (черга).
      * Якщо ключ ще не існує, створюється новий список.
@@ -74,4 +145,65 @@ public class RedisService {
     public String getOnLine(String key) {
         return redisTemplate.opsForList().leftPop(key);
     }
+
+    /**
+     * Атомарно переносить перше значення списку {@code source} у кінець списку {@code destination},
+     * чекаючи на нього не довше {@code timeout} (BLMOVE). Значення не зникає з Redis між двома списками.
+     *
+     * @param source      ключ списку, з якого береться значення
+     * @param destination ключ списку, куди воно переноситься
+     * @param timeout     найдовше очікування (менше за {@code spring.data.redis.timeout})
+     * @return перенесене значення або null, якщо за цей час нічого не надійшло
+     */
+    public String moveFromLine(String source, String destination, Duration timeout) {
+        return redisTemplate.opsForList().move(source, RedisListCommands.Direction.LEFT,
+                destination, RedisListCommands.Direction.RIGHT, timeout);
+    }
+
+    /**
+     * Атомарно переносить останнє значення списку {@code source} на початок списку {@code destination} (LMOVE).
+     * Повторні виклики переносять увесь список, зберігаючи порядок значень.
+     *
+     * @return перенесене значення або null, якщо {@code source} порожній
+     */
+    public String moveToLineFront(String source, String destination) {
+        return redisTemplate.opsForList().move(source, RedisListCommands.Direction.RIGHT,
+                destination, RedisListCommands.Direction.LEFT);
+    }
+
+    /**
+     * Видаляє перше входження значення зі списку (LREM з count 1).
+     *
+     * @return true, якщо значення було у списку
+     */
+    public boolean removeFromLine(String key, String value) {
+        Long removed = redisTemplate.opsForList().remove(key, 1, value);
+        return removed != null && removed > 0;
+    }
+
+    /**
+     * Додає записи в Redis Stream (XADD), обрізає потік до {@code maxLength} записів і продовжує його час життя.
+     * Усі команди виконуються одним конвеєром (pipeline).
+     *
+     * @param key       ключ потоку
+     * @param records   поля записів у порядку додавання
+     * @param maxLength найбільша кількість записів у потоці (обрізання наближене)
+     * @param ttl       час життя потоку після останнього запису
+     */
+    public void appendToStream(String key, List<Map<String, String>> records, long maxLength, Duration ttl) {
+        if (records.isEmpty()) return;
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                for (Map<String, String> fields : records) {
+                    ops.opsForStream().add(StreamRecords.string(fields).withStreamKey(key));
+                }
+                ops.opsForStream().trim(key, maxLength, true);
+                ops.expire(key, ttl);
+                return null;
+            }
+        });
+    }
 }
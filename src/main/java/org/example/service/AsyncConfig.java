@@ -1,5 +1,6 @@
 package org.example.service;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
@@ -10,10 +11,10 @@ import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 public class AsyncConfig {
 
     @Bean
-    public ThreadPoolTaskExecutor taskExecutor() {
+    public ThreadPoolTaskExecutor taskExecutor(@Value("${analysis.executor.pool-size:4}") int poolSize) {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(4);
-        executor.setMaxPoolSize(4);              // максимум == core
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);       // максимум == core
         executor.setThreadNamePrefix("async-doc-");
         executor.initialize();
         return executor;
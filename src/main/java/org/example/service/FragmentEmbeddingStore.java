@@ -0,0 +1,194 @@
+package org.example.service;
+
+import org.example.loader.EmbeddingBatcher;
+import org.example.loader.ModelLoader;
+import org.example.redis.RedisService;
+import org.example.untils.CachedTemplateCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * FragmentEmbeddingStore — сховище embedding-ів фрагментів з адресацією за вмістом.
+ * <p>
+ * Ключ запису — SHA-256 від назви моделі та нормалізованого тексту фрагмента
+ * (пробіли стиснуті, краї обрізані), тому однаковий фрагмент у різних шаблонах, після
+ * перейменування файлу чи зміни порядку шаблонів обчислюється моделлю лише один раз.
+ * Зміна моделі автоматично дає нові ключі.
+ * <p>
+ * Записи зберігаються в Redis під ключами {@code Fragment:<hash>} у форматі
+ * {@link CachedTemplateCodec#encodeVector} ({@code templates.cache.encoding}).
+ * Якщо Redis недоступний, embedding-и обчислюються моделлю.
+ */
+@Service
+public class FragmentEmbeddingStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(FragmentEmbeddingStore.class);
+
+    private static final String KEY_PREFIX = "Fragment:";
+
+    private final RedisService redisService;
+    private final EmbeddingBatcher embeddingBatcher;
+    private final ModelLoader modelLoader;
+    private final CachedTemplateCodec.Encoding encoding;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public FragmentEmbeddingStore(RedisService redisService,
+                                  EmbeddingBatcher embeddingBatcher,
+                                  ModelLoader modelLoader,
+                                  @Value("${templates.cache.encoding:float32}") String encoding) {
+        this.redisService = redisService;
+        this.embeddingBatcher = embeddingBatcher;
+        this.modelLoader = modelLoader;
+        this.encoding = CachedTemplateCodec.Encoding.valueOf(encoding.trim().toUpperCase());
+    }
+
+    /**
+     * @return нормалізований текст фрагмента
+     */
+    public static String normalize(String text) {
+        return text.replaceAll("\\s+", " ").trim();
+    }
+
+    /**
+     * @return назва поточної моделі (записується в заголовок записів {@link CachedTemplateCodec#encodeVector})
+     */
+    public String getModelName() {
+        return modelLoader.getModelName();
+    }
+
+    /**
+     * @return хеш фрагмента для поточної моделі
+     */
+    public String hash(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(modelLoader.getModelName().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(normalize(text).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступний", e);
+        }
+    }
+
+    /**
+     * Повертає embedding-и фрагментів: зі сховища або (для нових фрагментів) обчислені моделлю.
+     * Нові embedding-и зберігаються у сховищі.
+     *
+     * @param texts фрагменти
+     * @return текст фрагмента → embedding
+     */
+    public Map<String, float[]> embedAll(Collection<String> texts) throws ExecutionException, InterruptedException {
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(texts));
+        Map<String, float[]> result = new HashMap<>();
+        Map<String, String> hashes = new HashMap<>();
+        List<String> keys = new ArrayList<>(distinct.size());
+        for (String text : distinct) {
+            String hash = hash(text);
+            hashes.put(text, hash);
+            keys.add(KEY_PREFIX + hash);
+        }
+
+        List<byte[]> stored = lookup(keys);
+        List<String> missing = new ArrayList<>();
+        String modelName = getModelName();
+        for (int i = 0; i < distinct.size(); i++) {
+            byte[] data = stored.get(i);
+            // Запис старого формату чи іншої моделі обчислюється заново і перезаписується
+            float[] vector = data != null ? CachedTemplateCodec.decodeVector(data, modelName) : null;
+            if (vector != null) {
+                result.put(distinct.get(i), vector);
+            } else {
+                missing.add(distinct.get(i));
+            }
+        }
+        hits.add(distinct.size() - missing.size());
+        misses.add(missing.size());
+
+        if (!missing.isEmpty()) {
+            List<float[]> computed = embeddingBatcher.embedAllAndWait(missing.stream().map(FragmentEmbeddingStore::normalize).toList());
+            Map<String, byte[]> toStore = new HashMap<>();
+            for (int i = 0; i < missing.size(); i++) {
+                result.put(missing.get(i), computed.get(i));
+                toStore.put(KEY_PREFIX + hashes.get(missing.get(i)), CachedTemplateCodec.encodeVector(computed.get(i), encoding, modelName));
+            }
+            store(toStore);
+        }
+        return result;
+    }
+
+    /**
+     * Зберігає вже обчислені embedding-и (наприклад, під час перенесення старих записів шаблонів).
+     *
+     * @param embeddings текст фрагмента → embedding
+     */
+    public void putAll(Map<String, float[]> embeddings) {
+        Map<String, byte[]> toStore = new HashMap<>();
+        String modelName = getModelName();
+        embeddings.forEach((text, vector) ->
+                toStore.put(KEY_PREFIX + hash(text), CachedTemplateCodec.encodeVector(vector, encoding, modelName)));
+        store(toStore);
+    }
+
+    /**
+     * Видаляє записи фрагментів, на які більше не посилається жоден шаблон.
+     *
+     * @param hashes хеші фрагментів ({@link #hash})
+     * @return кількість видалених записів
+     */
+    public long remove(Collection<String> hashes) {
+        try {
+            return redisService.deleteData(hashes.stream().map(hash -> KEY_PREFIX + hash).toList());
+        } catch (RuntimeException e) {
+            failures.increment();
+            logger.warn("Не вдалося видалити {} фрагментів зі сховища: {}", hashes.size(), e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Статистика сховища: влучання, промахи (обчислено моделлю), помилки Redis.
+     */
+    public Map<String, Object> getMetrics() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("hits", hitCount);
+        metrics.put("misses", missCount);
+        metrics.put("hitRatio", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        metrics.put("redisFailures", failures.sum());
+        return metrics;
+    }
+
+    private List<byte[]> lookup(List<String> keys) {
+        if (keys.isEmpty()) return List.of();
+        try {
+            return redisService.getBytes(keys);
+        } catch (RuntimeException e) {
+            failures.increment();
+            logger.warn("Сховище фрагментів недоступне, embedding-и буде обчислено моделлю: {}", e.getMessage());
+            return Collections.nCopies(keys.size(), null);
+        }
+    }
+
+    private void store(Map<String, byte[]> values) {
+        try {
+            redisService.saveBytes(values);
+        } catch (RuntimeException e) {
+            failures.increment();
+            logger.warn("Не вдалося зберегти {} фрагментів у сховище: {}", values.size(), e.getMessage());
+        }
+    }
+}
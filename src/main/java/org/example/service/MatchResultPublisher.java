@@ -0,0 +1,203 @@
+package org.example.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.example.kafka.KafkaProducerService;
+import org.example.redis.RedisService;
+import org.example.service.match.MatchMeta;
+import org.example.service.match.TemplateMatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * MatchResultPublisher — публікація результатів аналізу документа по мірі їх отримання.
+ * <p>
+ * Якщо {@code matcher.publish.incremental=true}, для кожного порівняного шаблону публікується
+ * його {@link MatchMeta}, а для нового лідера — ще й список {@code MatchResult}. Наприкінці
+ * публікується подія {@code done} з переможцем. Події надсилаються:
+ * - у Kafka-топік {@code matcher.publish.kafka-topic} через outbox {@link KafkaProducerService} (ключ — назва
+ *   документа, тож події документа читаються по порядку); надсилання не блокує аналіз
+ * - у Redis Stream {@code matchStream:<документ>} ({@code matcher.publish.redis-stream}), обмежений
+ *   {@code matcher.publish.redis-stream-max-len} записами і {@code matcher.publish.redis-stream-ttl-seconds}.
+ *   Події накопичуються і записуються одним конвеєром по {@code matcher.publish.redis-stream-batch} штук;
+ *   подія нового лідера і {@code done} записуються одразу разом з накопиченими
+ * <p>
+ * Клієнт може показати попередній найкращий шаблон ще до завершення аналізу. Помилки публікації
+ * лише записуються в журнал і не переривають аналіз.
+ */
+@Component
+public class MatchResultPublisher {
+
+    private static final Logger logger = LoggerFactory.getLogger(MatchResultPublisher.class);
+
+    private static final String STREAM_PREFIX = "matchStream:";
+
+    private final KafkaProducerService kafkaProducerService;
+    private final RedisService redisService;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final boolean enabled;
+    private final String kafkaTopic;
+    private final boolean redisStream;
+    private final long streamMaxLength;
+    private final Duration streamTtl;
+    private final int streamBatch;
+
+    private final LongAdder events = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * Публікація подій одного документа
+     */
+    public final class Session {
+        private final String sender;
+        private final String doc;
+        private int scanned;
+        private int pruned;
+
+        /**
+         * Події, ще не записані в Redis Stream
+         */
+        private final List<Map<String, String>> pendingRecords = new ArrayList<>();
+
+        private Session(String sender, String doc) {
+            this.sender = sender;
+            this.doc = doc;
+        }
+
+        /**
+         * Публікує результат порівняння з шаблоном.
+         *
+         * @param template назва шаблону
+         * @param match    результат порівняння
+         * @param leader   true, якщо шаблон став новим лідером (тоді публікується і список збігів)
+         */
+        public void template(String template, TemplateMatch match, boolean leader) {
+            scanned++;
+            ObjectNode event = event("template");
+            event.put("template", template);
+            event.put("score", match.getTotalScore());
+            event.put("lineCount", match.getResult().size());
+            event.put("leader", leader);
+            if (leader) {
+                event.set("matchResults", mapper.valueToTree(match.getMatchResults()));
+            }
+            publish(event, leader);
+        }
+
+        /**
+         * Рахує шаблон, відкинутий без порівняння (публікується лише кількість у події {@code done}).
+         */
+        public void pruned() {
+            pruned++;
+        }
+
+        /**
+         * Публікує завершення аналізу.
+         *
+         * @param template назва шаблону-переможця (null, якщо не знайдено)
+         * @param score    бал переможця
+         */
+        public void done(String template, double score) {
+            ObjectNode event = event("done");
+            event.put("template", template);
+            event.put("score", score);
+            event.put("scannedTemplates", scanned);
+            event.put("prunedTemplates", pruned);
+            publish(event, true);
+        }
+
+        private ObjectNode event(String type) {
+            ObjectNode event = mapper.createObjectNode();
+            event.put("type", type);
+            event.put("clientId", sender);
+            event.put("doc", doc);
+            return event;
+        }
+
+        /**
+         * @param flush true — записати в Redis Stream накопичені події разом з цією, не чекаючи повного пакета
+         */
+        private void publish(ObjectNode event, boolean flush) {
+            String json = event.toString();
+            events.increment();
+            if (kafkaTopic != null && !kafkaTopic.isBlank()) {
+                kafkaProducerService.sendMessage(kafkaTopic, doc, json).whenComplete((result, e) -> {
+                    if (e != null) {
+                        failures.increment();
+                        logger.warn("Не вдалося опублікувати подію аналізу '{}' у Kafka: {}", doc, e.getMessage());
+                    }
+                });
+            }
+            if (redisStream) {
+                Map<String, String> fields = new LinkedHashMap<>();
+                fields.put("event", json);
+                pendingRecords.add(fields);
+                if (flush || pendingRecords.size() >= streamBatch) {
+                    flush();
+                }
+            }
+        }
+
+        private void flush() {
+            try {
+                redisService.appendToStream(STREAM_PREFIX + doc, pendingRecords, streamMaxLength, streamTtl);
+            } catch (Exception e) {
+                failures.add(pendingRecords.size());
+                logger.warn("Не вдалося опублікувати {} подій аналізу '{}' у Redis Stream: {}",
+                        pendingRecords.size(), doc, e.getMessage());
+            } finally {
+                pendingRecords.clear();
+            }
+        }
+    }
+
+    public MatchResultPublisher(KafkaProducerService kafkaProducerService,
+                                RedisService redisService,
+                                @Value("${matcher.publish.incremental:false}") boolean enabled,
+                                @Value("${matcher.publish.kafka-topic:match-progress}") String kafkaTopic,
+                                @Value("${matcher.publish.redis-stream:true}") boolean redisStream,
+                                @Value("${matcher.publish.redis-stream-max-len:1000}") long streamMaxLength,
+                                @Value("${matcher.publish.redis-stream-ttl-seconds:3600}") long streamTtlSeconds,
+                                @Value("${matcher.publish.redis-stream-batch:64}") int streamBatch) {
+        this.kafkaProducerService = kafkaProducerService;
+        this.redisService = redisService;
+        this.enabled = enabled;
+        this.kafkaTopic = kafkaTopic;
+        this.redisStream = redisStream;
+        this.streamMaxLength = streamMaxLength;
+        this.streamTtl = Duration.ofSeconds(streamTtlSeconds);
+        this.streamBatch = Math.max(1, streamBatch);
+    }
+
+    /**
+     * Починає публікацію подій документа.
+     *
+     * @return сесія публікації або null, якщо покрокову публікацію вимкнено
+     */
+    public Session open(String sender, String doc) {
+        return enabled ? new Session(sender, doc) : null;
+    }
+
+    /**
+     * Статистика публікації: кількість подій і помилок.
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("kafkaTopic", kafkaTopic);
+        metrics.put("redisStream", redisStream);
+        metrics.put("events", events.sum());
+        metrics.put("failures", failures.sum());
+        return metrics;
+    }
+}
@@ -4,26 +4,35 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.example.kafka.KafkaProducerService;
+import org.example.loader.LineEmbeddingCache;
 import org.example.redis.RedisService;
+import org.example.service.match.DocumentLineReader;
+import org.example.service.match.DocumentLines;
 import org.example.service.match.MatchMeta;
 import org.example.service.match.MatchResult;
-import org.example.untils.CachedTemplate;
+import org.example.service.match.TemplateMatch;
+import org.example.service.match.TemplateMatrix;
+import org.example.service.match.TemplateSnapshot;
+import org.example.service.score.DocumentScoring;
+import org.example.service.score.ScoringBackend;
 import org.example.untils.Message;
-import org.example.untils.TextSimilarityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
 
 
 /**
  * MatcherServiceAsync — асинхронний сервіс для семантичного порівняння документів з шаблонами.
  * Основні задачі:
  * - Завантаження шаблонів із кешу
- * - Обчислення embedding-векторів для кожного рядка документа
- * - Пошук найкращого шаблону за cosine similarity
+ * - Обчислення embedding-векторів для кожного унікального рядка документа (один раз на документ)
+ * - Пошук найкращого шаблону за cosine similarity (скалярний добуток нормалізованих векторів)
  * - Збереження результатів у Redis
  * - Надсилання повідомлення клієнту через Kafka
  */
@@ -40,6 +49,31 @@ public class MatcherServiceAsync {
      */
     private static final double SIMILARITY_THRESHOLD = 0.75;
 
+    /**
+     * Бекенд обчислення схожості рядків документа з фрагментами шаблонів ({@code matcher.scoring.backend})
+     */
+    private final ScoringBackend scoringBackend;
+
+    /**
+     * Лексичний відбір шаблонів перед порівнянням embedding-ів
+     */
+    private final TemplateShortlist templateShortlist;
+
+    /**
+     * Відсікання шаблонів, які вже не можуть обійти лідера
+     */
+    private final TemplatePruning templatePruning;
+
+    /**
+     * Перебір шаблонів документа (паралельний для великих документів)
+     */
+    private final TemplateScanner templateScanner;
+
+    /**
+     * Покрокова публікація результатів шаблонів ({@code matcher.publish.incremental})
+     */
+    private final MatchResultPublisher matchResultPublisher;
+
     /**
      * Сервіс для збереження та отримання даних з Redis
      */
@@ -55,6 +89,11 @@ public class MatcherServiceAsync {
      */
     private final ObjectMapper mapper = new ObjectMapper();
 
+    /**
+     * Кеш embedding-ів рядків документа (промахи обчислюються пакетами через EmbeddingBatcher)
+     */
+    private final LineEmbeddingCache lineEmbeddingCache;
+
     /**
      * Kafka-продюсер для надсилання результатів клієнту
      */
@@ -62,16 +101,38 @@ public class MatcherServiceAsync {
     private KafkaProducerService kafkaProducerService;
 
     /**
-     * Зберігає останній відсоток прогресу, щоб уникнути дублювання повідомлень
+     * Прогрес аналізу кожного документа (повідомлення клієнту з обмеженою частотою)
+     */
+    private final ProgressTracker progressTracker;
+
+    /**
+     * Кількість рядків у блоці потокового аналізу
      */
-    private int lastSentPercent = -1;
+    private final int streamBlockLines;
 
     /**
      * Конструктор класу, ініціалізує сервіси кешу шаблонів і Redis
      */
-    public MatcherServiceAsync(TemplateCacheService templateCacheService, RedisService redisService) {
+    public MatcherServiceAsync(TemplateCacheService templateCacheService,
+                               RedisService redisService,
+                               LineEmbeddingCache lineEmbeddingCache,
+                               ScoringBackend scoringBackend,
+                               TemplateShortlist templateShortlist,
+                               TemplatePruning templatePruning,
+                               TemplateScanner templateScanner,
+                               MatchResultPublisher matchResultPublisher,
+                               ProgressTracker progressTracker,
+                               @Value("${matcher.stream.block-lines:64}") int streamBlockLines) {
         this.templateCacheService = templateCacheService;
         this.redisService = redisService;
+        this.lineEmbeddingCache = lineEmbeddingCache;
+        this.scoringBackend = scoringBackend;
+        this.templateShortlist = templateShortlist;
+        this.templatePruning = templatePruning;
+        this.templateScanner = templateScanner;
+        this.matchResultPublisher = matchResultPublisher;
+        this.progressTracker = progressTracker;
+        this.streamBlockLines = Math.max(1, streamBlockLines);
     }
 
     /**
@@ -80,142 +141,276 @@ public class MatcherServiceAsync {
      * @param sender ідентифікатор відправника (напр. client1 або insider)
      * @param doc назва або ідентифікатор документа
      * @param lines список рядків тексту документа
+     * @return true, якщо аналіз завершено і результат опубліковано; false — помилку записано в журнал
      */
-    public void matchDocument(String sender, String doc, List<String> lines) {
-        try {
-            /**
-             * Поточний найвищий бал подібності серед усіх шаблонів
-             */
-            double highestScore = -1;
-
-            /**
-             * Назва шаблону з найвищим балом відповідності
-             */
-            String bestTemplateName = null;
-
-            /**
-             * Карта знайдених відповідностей: ключ — назва поля, значення — рядок із документа
-             */
-            Map<String, String> bestResult = null;
-
+    public boolean matchDocument(String sender, String doc, List<String> lines) {
+        try (ProgressTracker.Job job = progressTracker.start(sender, doc)) {
             /**
-             * JSON-модель шаблону з усіма фрагментами (ключ — поле, значення — список прикладів)
+             * Найкращий шаблон і статистика лідерів документа
              */
-            Map<String, List<String>> bestJsonModel = null;
+            DocumentBest best = new DocumentBest(matchResultPublisher.open(sender, doc));
 
             /**
-             * Всі знайдені MatchResult для кожного шаблону
+             * Рядки документа, очищені та перетворені в embedding один раз для всіх шаблонів
              */
-            Map<String, List<MatchResult>> bestJsonMatchResult = new HashMap<>();
+            DocumentLines documentLines = DocumentLines.prepare(lines, lineEmbeddingCache);
 
             /**
-             * Статистика по кожному шаблону (назва, загальний бал, кількість збігів)
+             * Знімок шаблонів, скомпільованих у нормалізовані матриці (незмінний на час аналізу)
              */
-            List<MatchMeta> matchStats = new ArrayList<>();
+            TemplateSnapshot snapshot = templateCacheService.acquireSnapshot();
 
             /**
-             * Усі доступні шаблони, завантажені з кешу
+             * Шаблони для порівняння embedding-ів (після лексичного відбору), у порядку знімка
              */
-            Map<String, CachedTemplate> allTemplates = templateCacheService.getTemplates();
+            List<TemplateMatrix> templates = new ArrayList<>(
+                    templateShortlist.select(snapshot, documentLines.getLines()).values());
 
             /**
              * Загальна кількість шаблонів для аналізу
              */
-            int totalTemplates = allTemplates.size();
+            int totalTemplates = templates.size();
+
+            TemplatePruning.Leader leader = new TemplatePruning.Leader();
+            job.total(totalTemplates);
+            job.phase("scan");
 
             /**
-             * Лічильник оброблених шаблонів (для оновлення прогресу)
+             * Збіги шаблонів, що під час перебору потрапили в історію лідерів (за позицією у знімку)
              */
-            int processedTemplates = 0;
-
-            for (Map.Entry<String, CachedTemplate> entry : allTemplates.entrySet()) {
-                String fileName = entry.getKey();
-                CachedTemplate cachedTemplate = entry.getValue();
-
-                Map<String, List<String>> templateFragments = cachedTemplate.getFragments();
-                Map<String, List<float[]>> templateEmbeddings = cachedTemplate.getEmbeddings();
-
-                Map<String, String> result = new LinkedHashMap<>();
-                double totalScore = 0.0;
-                List<MatchResult> currentMatchResults = new ArrayList<>();
-
-                for (String line : lines) {
-                    String cleaned = line.replaceAll("\\s+", " ").trim();
-                    if (cleaned.isBlank()) continue;
-
-                    float[] lineEmb = templateCacheService.getPredictor().predict(cleaned);
-
-                    String bestKey = null;
-                    String bestFragment = null;
-                    double bestScore = -1;
+            Map<Integer, TemplateMatch> leaderMatches = new HashMap<>();
+
+            try (DocumentScoring scoring = scoringBackend.begin(snapshot, documentLines)) {
+                // Вектори нормалізовані, тому cosine similarity — це скалярний добуток;
+                // великі документи порівнюються паралельно плитками, результати приходять у порядку перебору
+                templateScanner.scan(scoring, templates, documentLines.getLines(), SIMILARITY_THRESHOLD, leader,
+                        (position, template, match) -> {
+                            best.processedTemplates++;
+                            job.update(best.processedTemplates);
+                            if (match == null) {
+                                best.pruned();
+                                return;
+                            }
+                            best.scanned(template, match, leader.offer(match.getTotalScore(), position));
+                            if (leader.isLeader(position)) {
+                                leaderMatches.put(position, match);
+                            }
+                        });
+            } finally {
+                snapshot.release();
+            }
+            // Історія лідерів — у порядку знімка, незалежно від порядку перебору
+            for (int position : leader.history()) {
+                best.record(templates.get(position), leaderMatches.get(position));
+            }
+            templatePruning.recordWinner(best.templateName);
 
-                    for (var e : templateEmbeddings.entrySet()) {
-                        String key = e.getKey();
-                        List<float[]> embeddings = e.getValue();
-                        List<String> fragments = templateFragments.get(key);
+            job.complete();
+            job.phase("publish");
+            publishResult(sender, doc, best);
+            return true;
 
-                        for (int i = 0; i < embeddings.size(); i++) {
-                            double score = TextSimilarityUtils.cosineSimilarity(embeddings.get(i), lineEmb);
-                            if (score > bestScore) {
-                                bestScore = score;
-                                bestKey = key;
-                                bestFragment = fragments.get(i);
-                            }
-                        }
-                    }
+        } catch (Exception e) {
+            logger.error("\uD83D\uDEA8 Помилка аналізу документа '{}': {}", doc, e.getMessage(), e);
+            return false;
+        }
+    }
 
-                    if (bestScore > SIMILARITY_THRESHOLD && !result.containsKey(bestKey)) {
-                        List<String> indicators = TextSimilarityUtils.extractCommonIndicators(cleaned, bestFragment);
-                        currentMatchResults.add(new MatchResult(cleaned, bestKey, bestFragment, bestScore, indicators));
-                        result.put(bestKey, cleaned);
-                        totalScore += bestScore;
+    /**
+     * Потоковий аналіз великого документа з обмеженою пам'яттю.
+     * <p>
+     * Рядки читаються блоками по {@code matcher.stream.block-lines}; кожен блок перетворюється в embedding-и
+     * і порівнюється з усіма шаблонами знімка, після чого відкидається. Для кожного шаблону зберігається
+     * лише поточний {@link TemplateMatch} (не більше одного рядка на ключ), тож пам'ять задачі не залежить
+     * від розміру документа. Рядки надходять у тому самому порядку, тому призначення ключів
+     * («перший рядок займає ключ») і переможець такі самі, як у {@link #matchDocument}; повторні рядки
+     * не згортаються, але й не змінюють результат — їхній ключ уже зайнято першою появою.
+     * Лексичний відбір і відсікання шаблонів тут не застосовуються: документ не відомий наперед повністю.
+     *
+     * Помилки не поглинаються: виклик має розрізнити некоректний документ і збій сервісу.
+     *
+     * @param sender ідентифікатор відправника
+     * @param doc    назва документа
+     * @param reader джерело рядків документа
+     * @throws com.fasterxml.jackson.core.JsonProcessingException якщо NDJSON-рядок некоректний
+     * @throws IOException          якщо не вдалося прочитати потік
+     * @throws ExecutionException   якщо виникла помилка в моделі
+     * @throws InterruptedException якщо потік перервано під час очікування embedding-ів
+     */
+    public void matchDocumentStream(String sender, String doc, DocumentLineReader reader)
+            throws IOException, ExecutionException, InterruptedException {
+        try (ProgressTracker.Job job = progressTracker.start(sender, doc)) {
+            job.phase("stream");
+            TemplateSnapshot snapshot = templateCacheService.acquireSnapshot();
+            List<TemplateMatrix> templates = new ArrayList<>(snapshot.getTemplates().values());
+            TemplateMatch[] matches = new TemplateMatch[templates.size()];
+            Arrays.setAll(matches, i -> new TemplateMatch());
+            long lineCount = 0;
+
+            try {
+                List<String> block = new ArrayList<>(streamBlockLines);
+                int[] bestRows = new int[streamBlockLines];
+                float[] bestScores = new float[streamBlockLines];
+                String line;
+                while ((line = reader.next()) != null) {
+                    block.add(line);
+                    lineCount++;
+                    if (block.size() == streamBlockLines) {
+                        scoreBlock(snapshot, templates, matches, block, bestRows, bestScores);
+                        block.clear();
+                        job.lines(lineCount);
                     }
                 }
+                scoreBlock(snapshot, templates, matches, block, bestRows, bestScores);
+                job.lines(lineCount);
+            } finally {
+                snapshot.release();
+            }
 
-                if (!"insider".equals(sender)) {
-                    processedTemplates++;
-                    sendProgress(processedTemplates, totalTemplates, sender);
-                }
+            // Лідер обирається в порядку знімка, як у послідовному переборі
+            DocumentBest best = new DocumentBest(matchResultPublisher.open(sender, doc));
+            TemplatePruning.Leader leader = new TemplatePruning.Leader();
+            for (int position = 0; position < templates.size(); position++) {
+                best.scanned(templates.get(position), matches[position],
+                        leader.offer(matches[position].getTotalScore(), position));
+            }
+            for (int position : leader.history()) {
+                best.record(templates.get(position), matches[position]);
+            }
+            logger.info("📥 Потоковий аналіз '{}': {} рядків, {} символів, обрізано {} довгих рядків",
+                    doc, lineCount, reader.getCharsRead(), reader.getTruncatedLines());
+            job.complete();
+            job.phase("publish");
+            publishResult(sender, doc, best);
+        }
+    }
 
-                if (totalScore > highestScore) {
-                    highestScore = totalScore;
-                    bestResult = result;
-                    bestTemplateName = fileName;
-                    bestJsonModel = cachedTemplate.getFragments();
-                    matchStats.add(new MatchMeta(bestTemplateName, totalScore, result.size()));
-                    bestJsonMatchResult.put(bestTemplateName, currentMatchResults);
+    /**
+     * Порівнює блок рядків з усіма шаблонами і дописує збіги в результати шаблонів (у порядку рядків).
+     */
+    private void scoreBlock(TemplateSnapshot snapshot, List<TemplateMatrix> templates, TemplateMatch[] matches,
+                            List<String> block, int[] bestRows, float[] bestScores)
+            throws ExecutionException, InterruptedException {
+        if (block.isEmpty()) return;
+        DocumentLines blockLines = DocumentLines.of(block, lineEmbeddingCache.embedAll(block));
+        try (DocumentScoring scoring = scoringBackend.begin(snapshot, blockLines)) {
+            for (int position = 0; position < templates.size(); position++) {
+                TemplateMatrix template = templates.get(position);
+                scoring.score(template, bestRows, bestScores);
+                for (int i = 0; i < block.size(); i++) {
+                    matches[position].accept(template, block.get(i), bestRows[i], bestScores[i], SIMILARITY_THRESHOLD);
                 }
             }
+        }
+    }
 
-            ObjectNode wrapper = buildFinalJson(bestResult, bestJsonModel, doc, bestTemplateName);
-            JsonNode bestJsonNode = mapper.valueToTree(bestJsonMatchResult);
-            JsonNode matchStatsNode = mapper.valueToTree(matchStats);
-
-            redisService.saveData("bestJsonNode:" + doc, bestJsonNode.toString());
-            redisService.saveData("matchStatsNode:" + doc, matchStatsNode.toString());
-            redisService.saveData(doc, wrapper.toString());
-
-            if (!"insider".equals(sender)) {
-                kafkaProducerService.sendMessage("after-analysis", new Message(sender, "/queue/result", doc).getJson());
-            }
+    /**
+     * Зберігає результат аналізу в Redis і повідомляє клієнта через Kafka.
+     */
+    private void publishResult(String sender, String doc, DocumentBest best) {
+        ObjectNode wrapper = buildFinalJson(best.result, best.jsonModel, doc, best.templateName);
+        JsonNode bestJsonNode = mapper.valueToTree(best.matchResults);
+
+        redisService.saveData("bestJsonNode:" + doc, bestJsonNode.toString());
+        if (best.session == null) {
+            redisService.saveData("matchStatsNode:" + doc, mapper.valueToTree(best.matchStats).toString());
+        } else {
+            // Статистика шаблонів уже опублікована подіями; завершуємо потік подій документа
+            best.session.done(best.templateName, best.score);
+        }
+        redisService.saveData(doc, wrapper.toString());
 
-        } catch (Exception e) {
-            logger.error("\uD83D\uDEA8 Помилка аналізу документа '{}': {}", doc, e.getMessage(), e);
+        if (!"insider".equals(sender)) {
+            kafkaProducerService.sendMessage("after-analysis", sender, new Message(sender, "/queue/result", doc).getJson());
         }
     }
 
     /**
-     * Надсилає прогрес обробки шаблонів через Kafka
-     * @param processedTemplates кількість оброблених шаблонів
-     * @param totalTemplates загальна кількість шаблонів
-     * @param sender ідентифікатор відправника
+     * Найкращий шаблон документа та історія лідерів.
+     * <p>
+     * При покроковій публікації ({@link MatchResultPublisher}) результати шаблонів надсилаються одразу,
+     * а в пам'яті лишаються тільки збіги поточного лідера.
      */
-    private void sendProgress(int processedTemplates, int totalTemplates, String sender) {
-        int progressPercent = (int) ((processedTemplates / (double) totalTemplates) * 100);
-        if (progressPercent != lastSentPercent) {
-            kafkaProducerService.sendMessage("after-analysis",
-                    new Message(sender, "/queue/status", progressPercent + "%").getJson());
-            lastSentPercent = progressPercent;
+    private static final class DocumentBest {
+
+        /**
+         * Сесія покрокової публікації (null — результати публікуються лише наприкінці)
+         */
+        private final MatchResultPublisher.Session session;
+
+        /**
+         * Назва шаблону з найвищим балом відповідності
+         */
+        private String templateName;
+
+        /**
+         * Бал шаблону-лідера
+         */
+        private double score;
+
+        /**
+         * Карта знайдених відповідностей: ключ — назва поля, значення — рядок із документа
+         */
+        private Map<String, String> result;
+
+        /**
+         * JSON-модель шаблону з усіма фрагментами (ключ — поле, значення — список прикладів)
+         */
+        private Map<String, List<String>> jsonModel;
+
+        /**
+         * Знайдені MatchResult для кожного шаблону-лідера (лише поточного — при покроковій публікації)
+         */
+        private final Map<String, List<MatchResult>> matchResults = new HashMap<>();
+
+        /**
+         * Статистика по кожному лідеру (назва, загальний бал, кількість збігів); не ведеться при покроковій публікації
+         */
+        private final List<MatchMeta> matchStats = new ArrayList<>();
+
+        /**
+         * Лічильник оброблених шаблонів (для оновлення прогресу)
+         */
+        private int processedTemplates;
+
+        private DocumentBest(MatchResultPublisher.Session session) {
+            this.session = session;
+        }
+
+        /**
+         * Враховує результат порівняння з шаблоном (у порядку перебору) для покрокової публікації.
+         *
+         * @param leader true, якщо шаблон став новим лідером
+         */
+        private void scanned(TemplateMatrix template, TemplateMatch match, boolean leader) {
+            if (session != null) {
+                session.template(template.getName(), match, leader);
+            }
+        }
+
+        /**
+         * Додає лідера в історію; викликається в порядку знімка, останнім — для переможця.
+         */
+        private void record(TemplateMatrix template, TemplateMatch match) {
+            templateName = template.getName();
+            score = match.getTotalScore();
+            result = match.getResult();
+            jsonModel = template.getFragments();
+            if (session == null) {
+                matchStats.add(new MatchMeta(templateName, score, result.size()));
+            } else {
+                matchResults.clear();
+            }
+            matchResults.put(templateName, match.getMatchResults());
+        }
+
+        /**
+         * Враховує шаблон, відкинутий без повного порівняння.
+         */
+        private void pruned() {
+            if (session != null) {
+                session.pruned();
+            }
         }
     }
 
@@ -2,231 +2,257 @@
  * MatcherService — сервіс для семантичного порівняння текстів документів із шаблонами.
  * <p>
  * Основне призначення:
- * - Аналізує вхідний документ (у вигляді списку рядків)
- * - Порівнює текст з шаблонами, що зберігаються в JSON
+ * - Аналізує короткий вхідний документ (у вигляді списку рядків) синхронно, у межах запиту
+ * - Порівнює текст зі спільним знімком скомпільованих шаблонів ({@link TemplateCacheService})
  * - Повертає шаблон, який найбільше відповідає документу
  * - Показує індикатори (спільні слова), які вплинули на збіг
  * <p>
  * Технології:
- * - Apache DJL (Deep Java Library) для генерації embedding-векторів
+ * - embedding-и рядків через спільний {@link LineEmbeddingCache} (пакетування та пул предикторів)
  * - Jackson ObjectMapper для обробки JSON
- * - Використовує cosine similarity для порівняння
+ * - Використовує cosine similarity для порівняння (через спільний {@link ScoringBackend})
+ * <p>
+ * Запит обмежений часом (deadline клієнта або {@code matcher.sync.deadline-ms}). Якщо час вичерпано,
+ * повертається найкращий знайдений на цей момент шаблон з ознакою {@code partial: true}.
  */
 package org.example.service;
 
-import ai.djl.inference.Predictor;
-import ai.djl.translate.TranslateException;
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.example.loader.LineEmbeddingCache;
+import org.example.service.match.DocumentLines;
 import org.example.service.match.MatchMeta;
 import org.example.service.match.MatchResult;
-import org.example.loader.ModelLoader;
-import org.example.untils.TextSimilarityUtils;
+import org.example.service.match.TemplateMatch;
+import org.example.service.match.TemplateMatrix;
+import org.example.service.match.TemplateSnapshot;
+import org.example.service.score.DocumentScoring;
+import org.example.service.score.ScoringBackend;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.IOException;
-import java.nio.file.DirectoryStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
 
 @Service
 public class MatcherServiceSync {
 
+    private static final Logger logger = LoggerFactory.getLogger(MatcherServiceSync.class);
+
     /**
-     * Завантажувач нейромережі
+     * Поріг схожості cosine similarity, при якому фрагмент вважається релевантним
      */
-    private final ModelLoader modelLoader;
+    private static final double SIMILARITY_THRESHOLD = 0.75;
 
     /**
      * Jackson mapper для роботи з JSON
      */
     private final ObjectMapper mapper = new ObjectMapper();
 
-    public MatcherServiceSync(ModelLoader modelLoader) {
-        this.modelLoader = modelLoader;
-    }
-
     /**
-     * Основний метод, який здійснює порівняння документа з шаблонами.
-     *
-     * @param lines Рядки документа
-     * @return JSON-об'єкт з найбільш відповідним шаблоном та заповненими полями
-     * @throws IOException        якщо не вдається прочитати шаблон
-     * @throws TranslateException якщо виникла помилка в моделі
+     * Спільний знімок скомпільованих шаблонів
      */
-    public ObjectNode matchDocument(String doc,List<String> lines) throws IOException, TranslateException {
-        System.out.println("MatcherService");
-        Path templateDir = Path.of("templates/model/");
-        Predictor<String, float[]> predictor = modelLoader.newPredictor();
-        double highestScore = -1;
-        String bestTemplateName = null;
-        Map<String, String> bestResult = null;
-        Map<String, String> bestJsonModel = null;
-        Map<String, List<MatchResult>> bestJsonMatchResult = new HashMap<>();
-        List<MatchMeta> matchStats = new ArrayList<>();
-
-
-        // Відкриваємо директорію з JSON-файлами шаблонів
-        try (DirectoryStream<Path> files = Files.newDirectoryStream(templateDir, "*.json")) {
+    private final TemplateCacheService templateCacheService;
 
-            for (Path file : files) {
+    /**
+     * Вихідні JSON шаблонів (для повного тексту заголовка)
+     */
+    private final TemplateCache templateCache;
 
-                // jsonModel: карта ключів шаблону до текстових значень (наприклад: "title" -> "НАКАЗ...")
-                Map<String, String> jsonModel = mapper.readValue(file.toFile(), new TypeReference<>() {
-                });
+    /**
+     * Кеш embedding-ів рядків (промахи обчислюються пакетами через спільний пул предикторів)
+     */
+    private final LineEmbeddingCache lineEmbeddingCache;
 
-                // templateFragments: карта ключів шаблону до списків речень (фрагментів)
-                // приклад: "orders_1" -> ["Здійснити запит...", "Надіслати копії..."]
-                Map<String, List<String>> templateFragments = new HashMap<>();
+    /**
+     * Бекенд обчислення схожості ({@code matcher.scoring.backend}), спільний з асинхронною обробкою
+     */
+    private final ScoringBackend scoringBackend;
 
-                // templateEmbeddings: карта ключів шаблону до списків векторів (embedding-ів) кожного речення
-                Map<String, List<float[]>> templateEmbeddings = new HashMap<>();
+    private final TemplateShortlist templateShortlist;
+    private final TemplatePruning templatePruning;
 
-                // Обробка кожного ключа шаблону
-                for (var entry : jsonModel.entrySet()) {
-                    // Розбиваємо текст шаблону на речення (по ., !, ?, \n)
-                    List<String> fragments = List.of(entry.getValue().split("[.!?\n]"));
+    /**
+     * Час на запит, якщо клієнт не вказав свій
+     */
+    private final long defaultDeadlineMs;
 
-                    // Список embedding-векторів для кожного речення
-                    List<float[]> embeddings = new ArrayList<>();
+    /**
+     * Найбільша кількість рядків документа для синхронного аналізу
+     */
+    private final int maxLines;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder partialResults = new LongAdder();
+
+    public MatcherServiceSync(TemplateCacheService templateCacheService,
+                              TemplateCache templateCache,
+                              LineEmbeddingCache lineEmbeddingCache,
+                              ScoringBackend scoringBackend,
+                              TemplateShortlist templateShortlist,
+                              TemplatePruning templatePruning,
+                              @Value("${matcher.sync.deadline-ms:2000}") long defaultDeadlineMs,
+                              @Value("${matcher.sync.max-lines:300}") int maxLines) {
+        this.templateCacheService = templateCacheService;
+        this.templateCache = templateCache;
+        this.lineEmbeddingCache = lineEmbeddingCache;
+        this.scoringBackend = scoringBackend;
+        this.templateShortlist = templateShortlist;
+        this.templatePruning = templatePruning;
+        this.defaultDeadlineMs = defaultDeadlineMs;
+        this.maxLines = maxLines;
+    }
 
-                    for (String frag : fragments) {
-                        frag = frag.trim();
-                        if (!frag.isEmpty()) {
-                            // Генеруємо embedding для кожного речення шаблону
-                            embeddings.add(predictor.predict(frag));
-                        }
-                    }
+    /**
+     * @return найбільша кількість рядків документа для синхронного аналізу
+     */
+    public int getMaxLines() {
+        return maxLines;
+    }
 
-                    // Зберігаємо фрагменти та їхні embedding-и
-                    templateFragments.put(entry.getKey(), fragments);
-                    templateEmbeddings.put(entry.getKey(), embeddings);
-                }
+    /**
+     * Основний метод, який здійснює порівняння документа з шаблонами.
+     *
+     * @param doc        назва документа
+     * @param lines      рядки документа
+     * @param deadlineMs час на запит у мілісекундах (null або ≤ 0 — {@code matcher.sync.deadline-ms})
+     * @return JSON-об'єкт з найбільш відповідним шаблоном, заповненими полями та ознакою {@code partial}
+     * @throws ExecutionException   якщо виникла помилка в моделі
+     * @throws InterruptedException якщо потік перервано під час очікування на модель
+     */
+    public ObjectNode matchDocument(String doc, List<String> lines, Long deadlineMs)
+            throws ExecutionException, InterruptedException {
+        long start = System.nanoTime();
+        long budgetMs = deadlineMs == null || deadlineMs <= 0 ? defaultDeadlineMs : deadlineMs;
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(budgetMs);
+        requests.increment();
+
+        DocumentLines documentLines;
+        try {
+            // Рядки документа: очищені, без дублікатів, embedding один раз на рядок
+            documentLines = DocumentLines.prepare(lines, lineEmbeddingCache, deadline - System.nanoTime());
+        } catch (TimeoutException e) {
+            partialResults.increment();
+            logger.warn("⏱ Синхронний аналіз '{}': embedding-и не обчислено за {} мс", doc, budgetMs);
+            ObjectNode wrapper = buildFinalJson(doc, null, null, new HashMap<>(), List.of());
+            return withProgress(wrapper, true, 0, 0, start);
+        }
 
-                // result: збереження найкращих співпадінь ключ -> текст з документа
-                Map<String, String> result = new LinkedHashMap<>();
-
-                // Загальна сума схожості по цьому шаблону
-                double totalScore = 0.0;
-                int count = 0;
-                // Перебір кожного рядка з документа
-                List<MatchResult> currentMatchResults = new ArrayList<>();
-
-                for (String line : lines) {
-                    // cleaned: очищений рядок без зайвих пробілів
-                    String cleaned = line.replaceAll("\\s+", " ").trim();
-                    if (cleaned.isBlank()) continue;
-
-                    // lineEmb: embedding рядка з документа
-                    float[] lineEmb = predictor.predict(cleaned);
-
-                    // bestKey: ключ шаблону, який найкраще збігся
-                    String bestKey = null;
-
-                    // bestFragment: конкретне речення шаблону, що дало найбільшу схожість
-                    String bestFragment = null;
-
-                    // bestScore: найвища cosine similarity
-                    double bestScore = -1;
-                    // Порівняння з усіма реченнями всіх ключів шаблону
-                    for (var entry : templateEmbeddings.entrySet()) {
-                        String key = entry.getKey();
-                        List<float[]> embeddings = entry.getValue();
-                        List<String> fragments = templateFragments.get(key);
-
-                        for (int i = 0; i < embeddings.size(); i++) {
-                            double score = TextSimilarityUtils.cosineSimilarity(embeddings.get(i), lineEmb);
-
-                            // Якщо це найкращий результат — оновлюємо
-                            if (score > bestScore) {
-                                bestScore = score;
-                                bestKey = key;
-                                bestFragment = fragments.get(i);
-                            }
-                        }
-                    }
-
-                    // Зберігаємо тільки ті збіги, які мають високу схожість
-                    if (bestScore > 0.75 && !result.containsKey(bestKey)) {
-                        // indicators: список спільних слів між документом і шаблоном
-                        List<String> indicators = TextSimilarityUtils.extractCommonIndicators(cleaned, bestFragment);
-
-                        // Додованя результатів порівняння в консоль
-                        MatchResult matchResult = new MatchResult(cleaned, bestKey, bestFragment, bestScore, indicators);
-                        currentMatchResults.add(matchResult);
-                        // Додаємо результат у підсумкову карту
-                        result.put(bestKey, cleaned);
-                        totalScore += bestScore;
-                        count++;
-                    }
+        String bestTemplateName = null;
+        TemplateMatch bestMatch = null;
+        Map<String, List<MatchResult>> bestJsonMatchResult = new HashMap<>();
+        List<MatchMeta> matchStats = new ArrayList<>();
+        boolean partial = false;
+        int scanned = 0;
+        int total;
+
+        TemplateSnapshot snapshot = templateCacheService.acquireSnapshot();
+        try (DocumentScoring scoring = scoringBackend.begin(snapshot, documentLines)) {
+            List<TemplateMatrix> templates = new ArrayList<>(
+                    templateShortlist.select(snapshot, documentLines.getLines()).values());
+            total = templates.size();
+            int[] bestRows = new int[documentLines.size()];
+            float[] bestScores = new float[documentLines.size()];
+            TemplatePruning.Leader leader = new TemplatePruning.Leader();
+            // Збіги шаблонів, що під час перебору потрапили в історію лідерів (за позицією у знімку)
+            Map<Integer, TemplateMatch> leaderMatches = new HashMap<>();
+
+            // Найімовірніші шаблони перебираються першими, тож навіть частковий результат зазвичай остаточний
+            for (int position : templatePruning.scanOrder(templates)) {
+                if (System.nanoTime() >= deadline) {
+                    partial = true;
+                    break;
                 }
+                TemplateMatrix template = templates.get(position);
+                TemplateMatch match = templatePruning.match(scoring, template, position, documentLines.getLines(),
+                        bestRows, bestScores, SIMILARITY_THRESHOLD, leader);
+                scanned++;
 
-                // Якщо цей шаблон дав кращу схожість — зберігаємо його
-                if (totalScore > highestScore) {
-                    highestScore = totalScore;
-                    bestResult = result;             // Найкращі відповідності ключів
-                    bestTemplateName = file.getFileName().toString();  // Назва шаблону (JSON-файлу)
-                    bestJsonModel = jsonModel;       // Сам шаблон
-                    // Записуємо поточну статистику (навіть якщо не найкраща — якщо потрібно)
-                    matchStats.add(new MatchMeta(
-                            file.getFileName().toString(),  // template name
-                            totalScore,                     // score
-                            result.size()                   // кількість збігів (рядків)
-                    ));
-
-                    bestJsonMatchResult.put(file.getFileName().toString(), new ArrayList<>(currentMatchResults));
-                    currentMatchResults.clear(); // Очищаємо список для наступного шаблону
+                if (match != null && leader.offer(match.getTotalScore(), position)) {
+                    leaderMatches.put(position, match);
                 }
-
             }
+            // Історія лідерів — у порядку знімка, незалежно від порядку перебору
+            for (int position : leader.history()) {
+                TemplateMatrix template = templates.get(position);
+                TemplateMatch match = leaderMatches.get(position);
+                bestTemplateName = template.getName();
+                bestMatch = match;
+                matchStats.add(new MatchMeta(bestTemplateName, match.getTotalScore(), match.getResult().size()));
+                bestJsonMatchResult.put(bestTemplateName, match.getMatchResults());
+            }
+        } finally {
+            snapshot.release();
+        }
 
+        if (partial) {
+            partialResults.increment();
+            logger.warn("⏱ Синхронний аналіз '{}': за {} мс перевірено {} з {} шаблонів", doc, budgetMs, scanned, total);
+        } else {
+            templatePruning.recordWinner(bestTemplateName);
         }
 
-        // Формування фінального JSON
+        ObjectNode wrapper = buildFinalJson(doc, bestTemplateName, bestMatch, bestJsonMatchResult, matchStats);
+        return withProgress(wrapper, partial, scanned, total, start);
+    }
+
+    /**
+     * Формування фінального JSON (формат той самий, що й раніше, плюс поля {@code matches} і {@code stats})
+     */
+    private ObjectNode buildFinalJson(String doc, String bestTemplateName, TemplateMatch bestMatch,
+                                      Map<String, List<MatchResult>> bestJsonMatchResult, List<MatchMeta> matchStats) {
         ObjectNode wrapper = mapper.createObjectNode();
-        if (bestResult != null) {
-            ObjectNode document = mapper.createObjectNode();
-            for (var e : bestResult.entrySet()) {
-                document.put(e.getKey(), e.getValue());
-            }
+        if (bestMatch == null) {
+            wrapper.put("status", "not found");
+            return wrapper;
+        }
 
-            // Перевірка наявності поля title
-            String expectedTitle = Optional.ofNullable(bestJsonModel.get("title"))
-                    .filter(t -> !t.isBlank())
-                    .orElse("not_title");
-
-            if (!document.has("title") || document.get("title").asText().isBlank()) {
-                boolean found = false;
-                for (String e : lines) {
-                    if (e.contains(expectedTitle)) {
-                        document.put("title", expectedTitle);
-                        found = true;
-                        break;
-                    }
-                }
+        ObjectNode document = mapper.createObjectNode();
+        bestMatch.getResult().forEach(document::put);
 
-                // Якщо не знайдено — просто додати як fallback
-                if (!found) {
-                    document.put("title", expectedTitle);
-                }
-            }
+        // Перевірка наявності поля title (повний текст заголовка з JSON шаблону)
+        String expectedTitle = Optional.ofNullable(templateCache.getTemplates().get(bestTemplateName))
+                .map(json -> json.get("title"))
+                .filter(title -> !title.isBlank())
+                .orElse("not_title");
 
-            JsonNode bestJsonNode = mapper.valueToTree(bestJsonMatchResult);
-            JsonNode matchStatsNode = mapper.valueToTree(matchStats);
-            wrapper.put("doc", doc);
-            wrapper.put("template", bestTemplateName);
-            wrapper.set("document", document);
-            wrapper.set("matches", bestJsonNode);
-            wrapper.set("stats", matchStatsNode);
-           // System.out.println(mapper.writerWithDefaultPrettyPrinter().writeValueAsString(wrapper));
-        } else {
-            wrapper.put("status", "not found");
+        if (!document.has("title") || document.get("title").asText().isBlank()) {
+            document.put("title", expectedTitle);
         }
 
+        JsonNode bestJsonNode = mapper.valueToTree(bestJsonMatchResult);
+        JsonNode matchStatsNode = mapper.valueToTree(matchStats);
+        wrapper.put("doc", doc);
+        wrapper.put("template", bestTemplateName);
+        wrapper.set("document", document);
+        wrapper.set("matches", bestJsonNode);
+        wrapper.set("stats", matchStatsNode);
+        return wrapper;
+    }
+
+    private ObjectNode withProgress(ObjectNode wrapper, boolean partial, int scanned, int total, long start) {
+        wrapper.put("partial", partial);
+        wrapper.put("scannedTemplates", scanned);
+        wrapper.put("totalTemplates", total);
+        wrapper.put("elapsedMs", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
         return wrapper;
     }
 
-} 
+    /**
+     * Статистика синхронних запитів: скільки всього і скільки завершились частковим результатом.
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("defaultDeadlineMs", defaultDeadlineMs);
+        metrics.put("maxLines", maxLines);
+        metrics.put("requests", requests.sum());
+        metrics.put("partialResults", partialResults.sum());
+        return metrics;
+    }
+}
@@ -0,0 +1,186 @@
+package org.example.service;
+
+import org.example.kafka.KafkaProducerService;
+import org.example.untils.Message;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ProgressTracker — прогрес аналізу кожного документа окремо.
+ * <p>
+ * Кожен аналіз отримує власну задачу ({@link Job}) у спільному реєстрі; стан задачі змінює лише потік
+ * документа, тому паралельні документи не перемішують прогрес. Повідомлення {@code /queue/status}
+ * надсилаються через асинхронний {@link KafkaProducerService} не частіше ніж раз на
+ * {@code matcher.progress.interval-ms} для задачі (проміжні відсотки згортаються в останній), а 100% —
+ * одразу після завершення. Клієнт {@code insider} повідомлень не отримує, але його задачі видно в списку.
+ */
+@Component
+public class ProgressTracker {
+
+    private static final String INSIDER = "insider";
+
+    private final KafkaProducerService kafkaProducerService;
+    private final long intervalNanos;
+
+    /**
+     * Активні задачі за ідентифікатором
+     */
+    private final Map<Long, Job> jobs = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong();
+
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder sentMessages = new LongAdder();
+
+    /**
+     * Задача аналізу одного документа. Закриття ({@link #close()}) прибирає її з реєстру.
+     */
+    public final class Job implements AutoCloseable {
+        private final long id;
+        private final String clientId;
+        private final String doc;
+        private final long startedAt = System.currentTimeMillis();
+
+        private volatile String phase = "prepare";
+        private volatile int total;
+        private volatile int processed;
+        private volatile long lines;
+
+        private int lastSentPercent = -1;
+        private long lastSentNanos;
+
+        private Job(long id, String clientId, String doc) {
+            this.id = id;
+            this.clientId = clientId;
+            this.doc = doc;
+        }
+
+        /**
+         * Етап аналізу для списку задач ({@code prepare}, {@code scan}, {@code stream}, {@code publish})
+         */
+        public void phase(String phase) {
+            this.phase = phase;
+        }
+
+        /**
+         * @param total кількість шаблонів для порівняння
+         */
+        public void total(int total) {
+            this.total = total;
+        }
+
+        /**
+         * Кількість прочитаних рядків (потоковий аналіз, де кількість шаблонів не визначає прогрес)
+         */
+        public void lines(long lines) {
+            this.lines = lines;
+        }
+
+        /**
+         * Оновлює кількість оброблених шаблонів; повідомлення надсилається, лише якщо відсоток змінився
+         * і від попереднього минуло не менше інтервалу.
+         */
+        public void update(int processed) {
+            this.processed = processed;
+            updates.increment();
+            int percent = percent();
+            if (percent < 0 || percent == lastSentPercent) return;
+            long now = System.nanoTime();
+            if (lastSentPercent >= 0 && now - lastSentNanos < intervalNanos) return;
+            send(percent, now);
+        }
+
+        /**
+         * Завершення аналізу: 100% надсилається одразу, без очікування інтервалу.
+         */
+        public void complete() {
+            if (total > 0) processed = total;
+            if (lastSentPercent != 100) {
+                send(100, System.nanoTime());
+            }
+        }
+
+        @Override
+        public void close() {
+            jobs.remove(id);
+        }
+
+        private int percent() {
+            int t = total;
+            return t > 0 ? (int) ((processed / (double) t) * 100) : -1;
+        }
+
+        private void send(int percent, long now) {
+            lastSentPercent = percent;
+            lastSentNanos = now;
+            if (INSIDER.equals(clientId)) return;
+            sentMessages.increment();
+            kafkaProducerService.sendMessage("after-analysis", clientId,
+                    new Message(clientId, "/queue/status", percent + "%").getJson());
+        }
+
+        private Map<String, Object> describe() {
+            Map<String, Object> state = new LinkedHashMap<>();
+            state.put("id", id);
+            state.put("clientId", clientId);
+            state.put("doc", doc);
+            state.put("phase", phase);
+            state.put("processedTemplates", processed);
+            state.put("totalTemplates", total);
+            state.put("percent", Math.max(0, percent()));
+            state.put("lines", lines);
+            state.put("elapsedMs", System.currentTimeMillis() - startedAt);
+            return state;
+        }
+    }
+
+    public ProgressTracker(KafkaProducerService kafkaProducerService,
+                           @Value("${matcher.progress.interval-ms:250}") long intervalMs) {
+        this.kafkaProducerService = kafkaProducerService;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, intervalMs));
+    }
+
+    /**
+     * Реєструє аналіз документа.
+     *
+     * @param clientId ідентифікатор клієнта
+     * @param doc      назва документа
+     * @return задача (закривається в кінці аналізу, у тому числі при помилці)
+     */
+    public Job start(String clientId, String doc) {
+        long id = nextId.incrementAndGet();
+        Job job = new Job(id, clientId, doc);
+        jobs.put(id, job);
+        return job;
+    }
+
+    /**
+     * @return стан усіх активних задач у порядку запуску
+     */
+    public List<Map<String, Object>> getActiveJobs() {
+        List<Job> active = new ArrayList<>(jobs.values());
+        active.sort(Comparator.comparingLong(job -> job.id));
+        List<Map<String, Object>> result = new ArrayList<>(active.size());
+        for (Job job : active) {
+            result.add(job.describe());
+        }
+        return result;
+    }
+
+    /**
+     * Статистика: активні задачі, оновлення прогресу і скільки з них надіслано клієнтам.
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("intervalMs", TimeUnit.NANOSECONDS.toMillis(intervalNanos));
+        metrics.put("activeJobs", jobs.size());
+        metrics.put("updates", updates.sum());
+        metrics.put("sentMessages", sentMessages.sum());
+        return metrics;
+    }
+}
@@ -1,5 +1,6 @@
 package org.example.service;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.annotation.PostConstruct;
 import lombok.Getter;
@@ -8,7 +9,10 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
 
 /**
@@ -29,15 +33,23 @@ public class TemplateCache {
      * Кешовані шаблони.
      * Зовнішня мапа: назва файлу → мапа полів шаблону (ключ-значення).
      * Наприклад: "nakaz.json" → { "title": "наказ", "organization": "..." }
+     * <p>
+     * Мапа незмінна і впорядкована за назвою файлу; при перезавантаженні файлу замінюється цілком.
      */
     @Getter
-    private final Map<String, Map<String, String>> templates = new HashMap<>();
+    private volatile Map<String, Map<String, String>> templates = Map.of();
 
     /**
      * Jackson ObjectMapper — використовується для парсингу JSON-файлів у Map.
      */
     private final ObjectMapper mapper = new ObjectMapper();
 
+    /**
+     * Тип вмісту файлу шаблону: ключ → текст
+     */
+    private static final TypeReference<Map<String, String>> TEMPLATE_TYPE = new TypeReference<>() {
+    };
+
     /**
      * Шлях до директорії, де зберігаються шаблони у форматі JSON.
      */
@@ -49,20 +61,83 @@ public class TemplateCache {
      */
     @PostConstruct
     public void loadTemplates() {
+        Map<String, Map<String, String>> loaded = new TreeMap<>();
         try (DirectoryStream<Path> files = Files.newDirectoryStream(TEMPLATE_DIR, "*.json")) {
             for (Path file : files) {
                 String fileName = file.getFileName().toString(); // приклад: "nakaz.json"
 
                 // Зчитуємо JSON-файл як Map<String, String>
-                Map<String, String> jsonModel = mapper.readValue(file.toFile(), Map.class);
+                Map<String, String> jsonModel = mapper.readValue(file.toFile(), TEMPLATE_TYPE);
 
                 // Додаємо у кеш
-                templates.put(fileName, jsonModel);
+                loaded.put(fileName, jsonModel);
             }
 
+            templates = Collections.unmodifiableMap(loaded);
             logger.info("Завантажено {} шаблонів у кеш", templates.size());
         } catch (Exception e) {
             logger.error("Помилка завантаження шаблонів у кеш: {}", e.getMessage(), e);
         }
     }
+
+    /**
+     * Перечитує один файл шаблону (або видаляє його з кешу, якщо файлу більше немає).
+     *
+     * @param fileName назва файлу в каталозі шаблонів
+     * @return true, якщо вміст кешу змінився
+     */
+    public synchronized boolean reloadFile(String fileName) {
+        Path file = TEMPLATE_DIR.resolve(fileName);
+        Map<String, Map<String, String>> updated = new TreeMap<>(templates);
+        try {
+            if (Files.isRegularFile(file)) {
+                updated.put(fileName, mapper.readValue(file.toFile(), TEMPLATE_TYPE));
+            } else {
+                updated.remove(fileName);
+            }
+        } catch (Exception e) {
+            // Файл може бути ще не дописаний — лишаємо попередню версію
+            logger.warn("Не вдалося перечитати шаблон {}: {}", fileName, e.getMessage());
+            return false;
+        }
+        if (updated.equals(templates)) return false;
+        templates = Collections.unmodifiableMap(updated);
+        return true;
+    }
+
+    /**
+     * @return каталог шаблонів
+     */
+    public Path getTemplateDir() {
+        return TEMPLATE_DIR;
+    }
+
+    /**
+     * Обчислює хеш вмісту всіх шаблонів (SHA-256 по назвах файлів, ключах і значеннях у відсортованому порядку).
+     * Змінюється, якщо додано, видалено або змінено хоча б один шаблон.
+     *
+     * @return хеш у шістнадцятковому вигляді
+     */
+    public String contentHash() {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (var file : new TreeMap<>(templates).entrySet()) {
+                update(digest, file.getKey());
+                for (var field : new TreeMap<>(file.getValue()).entrySet()) {
+                    update(digest, field.getKey());
+                    update(digest, String.valueOf(field.getValue()));
+                }
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступний", e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        digest.update(new byte[]{(byte) (bytes.length >>> 24), (byte) (bytes.length >>> 16),
+                (byte) (bytes.length >>> 8), (byte) bytes.length});
+        digest.update(bytes);
+    }
 }
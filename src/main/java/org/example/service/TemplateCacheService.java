@@ -1,131 +1,397 @@
 package org.example.service;
 
-import ai.djl.inference.Predictor;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.annotation.PostConstruct;
-import lombok.Getter;
 import org.example.loader.ModelLoader;
 import org.example.redis.RedisService;
+import org.example.service.match.LexicalIndex;
+import org.example.service.match.TemplateMatrix;
+import org.example.service.match.TemplateSnapshot;
+import org.example.service.match.TemplateSnapshotFile;
+import org.example.service.score.ScoringBackend;
 import org.example.untils.CachedTemplate;
 import org.example.untils.JsonSerializable;
+import org.example.untils.TemplateManifest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * TemplateCacheService — ініціалізує шаблони в памʼяті з Redis або з оригінального джерела (JSON),
- * та кешує їх у Redis для подальшого використання.
+ * TemplateCacheService — будує шаблони з оригінального джерела (JSON-файли {@link TemplateCache})
+ * та тримає їх у памʼяті у вигляді незмінного знімка для аналізу документів.
+ * <p>
+ * Embedding-и фрагментів беруться зі сховища з адресацією за вмістом ({@link FragmentEmbeddingStore}),
+ * тому модель викликається лише для фрагментів, яких ще ніхто не обчислював. Кожен шаблон
+ * зберігається в Redis як маніфест ({@link TemplateManifest}: фрагменти та їхні хеші)
+ * під справжньою назвою файлу — {@code TemplateManifest:<файл>}. Маніфести попередньої збірки
+ * показують, які записи {@code Fragment:<hash>} після зміни шаблонів більше нікому не потрібні —
+ * такі записи видаляються.
+ * Старі записи {@code Templates-N} (JSON) при першому запуску переносяться у сховище фрагментів і видаляються.
+ * <p>
+ * Після публікації скомпільовані матриці записуються в локальний файл знімка
+ * ({@code templates.snapshot.dir}), назва якого залежить від моделі та хешу вмісту шаблонів.
+ * Під час наступного запуску з тими самими шаблонами й моделлю знімок читається з цього файлу
+ * через відображення в пам'ять — без Redis і без повторного обчислення embedding-ів.
  */
 @Service
 public class TemplateCacheService {
 
     private static final Logger logger = LoggerFactory.getLogger(TemplateCacheService.class);
 
-    private final Map<String, CachedTemplate> cachedTemplates = new HashMap<>();
-    private final ModelLoader modelLoader;
+    /**
+     * Префікс ключів старого JSON-формату
+     */
+    private static final String JSON_KEY_PREFIX = "Templates-";
+
+    /**
+     * Префікс ключів маніфестів шаблонів
+     */
+    private static final String MANIFEST_KEY_PREFIX = "TemplateManifest:";
+
+    /**
+     * Ключ зі списком назв шаблонів, для яких збережено маніфести
+     */
+    private static final String MANIFEST_INDEX_KEY = "TemplateManifests";
+
+    /**
+     * Поточний незмінний знімок скомпільованих шаблонів, з яким працює аналіз документів.
+     * Публікується заміною посилання; аналізи, що вже почались, дорабатують на своєму знімку.
+     */
+    private final AtomicReference<TemplateSnapshot> snapshot = new AtomicReference<>(new TemplateSnapshot(0, Map.of()));
+
+    /**
+     * Лічильник версій знімків
+     */
+    private final AtomicLong snapshotVersion = new AtomicLong();
+    private final FragmentEmbeddingStore fragmentStore;
     private final RedisService redisService;
     private final TemplateCache templateCache;
-    @Getter
-    private Predictor<String, float[]> predictor;
+    private final ScoringBackend scoringBackend;
+    private final ModelLoader modelLoader;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Каталог локальних файлів знімка
+     */
+    private final Path snapshotDir;
 
 
-    public TemplateCacheService(ModelLoader modelLoader,
+    public TemplateCacheService(FragmentEmbeddingStore fragmentStore,
                                 RedisService redisService,
-                                TemplateCache templateCache) {
-        this.modelLoader = modelLoader;
+                                TemplateCache templateCache,
+                                ScoringBackend scoringBackend,
+                                ModelLoader modelLoader,
+                                @Value("${templates.snapshot.dir:snapshots}") String snapshotDir) {
+        this.fragmentStore = fragmentStore;
         this.redisService = redisService;
         this.templateCache = templateCache;
+        this.scoringBackend = scoringBackend;
+        this.modelLoader = modelLoader;
+        this.snapshotDir = Path.of(snapshotDir);
     }
 
     /**
      * Метод ініціалізує шаблони після запуску сервісу.
-     * Якщо знайдено шаблони у Redis — вони десеріалізуються та використовуються.
-     * Якщо Redis порожній — створюються заново та зберігаються в Redis.
+     * Якщо є актуальний локальний файл знімка — шаблони читаються з нього.
+     * Інакше шаблони будуються з JSON-файлів, а embedding-и беруться зі сховища фрагментів.
      */
     @PostConstruct
     public void init() {
         try {
-            predictor = modelLoader.newPredictor();
-            // Перевіряємо наявність шаблонів у Redis
-            String firstTemplate = redisService.getData("Templates-0");
-            if (firstTemplate != null && !firstTemplate.isBlank() && !"null".equalsIgnoreCase(firstTemplate)) {
-                logger.info("🔁 Завантаження шаблонів з Redis...");
-                loadFromRedis();
-            } else {
-                logger.info("🆕 Кешування шаблонів з JSON...");
-                buildAndCacheTemplates();
+            Path snapshotFile = snapshotFile();
+            Map<String, TemplateMatrix> fromFile = loadSnapshotFile(snapshotFile);
+            if (fromFile != null) {
+                publish(fromFile);
+                return;
             }
+
+            migrateLegacyRecords();
+            logger.info("🆕 Кешування шаблонів з JSON...");
+            Map<String, CachedTemplate> built = buildTemplates();
+            saveManifests(built);
+            Map<String, TemplateMatrix> compiled = compile(built);
+            // Файл пишеться з float-матриць до публікації: бекенд може тримати у знімку компактніше представлення
+            writeSnapshotFile(snapshotFile, compiled);
+            publish(forBackend(snapshotFile, compiled));
         } catch (Exception e) {
             logger.error("Помилка під час ініціалізації шаблонів: {}", e.getMessage(), e);
         }
     }
 
-    private void loadFromRedis() {
-        int index = 0;
-        String key;
-        String data;
-        do {
-            key = "Templates-" + index;
-            data = redisService.getData(key);
-            if (data != null && !data.isBlank() && !"null".equalsIgnoreCase(data)) {
-                CachedTemplate cachedTemplate = JsonSerializable.fromJson(data, CachedTemplate.class);
-                cachedTemplates.put(key, cachedTemplate);
-                logger.info("✅ Шаблон #{} завантажено: {} фрагментів", index, cachedTemplate.getEmbeddings().size());
-                index++;
+    /**
+     * Перебудовує шаблони після зміни файлів у каталозі шаблонів і публікує новий знімок.
+     * Модель викликається лише для фрагментів, яких немає у сховищі фрагментів
+     * (тобто для доданих і змінених речень).
+     *
+     * @param changedFiles змінені, додані або видалені файли (для журналу)
+     */
+    public synchronized void reload(Collection<String> changedFiles) throws ExecutionException, InterruptedException {
+        long start = System.nanoTime();
+        Map<String, CachedTemplate> rebuilt = buildTemplates();
+        saveManifests(rebuilt);
+        Map<String, TemplateMatrix> compiled = compile(rebuilt);
+        Path file = snapshotFile();
+        writeSnapshotFile(file, compiled);
+        publish(forBackend(file, compiled));
+        logger.info("♻️ Шаблони перезавантажено ({}): {} мс", changedFiles, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * @return шлях до файлу знімка для поточної моделі та поточного вмісту шаблонів
+     */
+    private Path snapshotFile() {
+        return snapshotDir.resolve(modelLoader.getModelName() + "-" + templateCache.contentHash().substring(0, 16) + ".bin");
+    }
+
+    /**
+     * Завантажує скомпільовані шаблони з локального файлу знімка.
+     *
+     * @return шаблони або null, якщо файлу немає або він не відповідає поточній моделі чи шаблонам
+     */
+    private Map<String, TemplateMatrix> loadSnapshotFile(Path file) {
+        if (!Files.isRegularFile(file)) return null;
+        long start = System.nanoTime();
+        try {
+            TemplateSnapshotFile.Contents contents = TemplateSnapshotFile.read(file, scoringBackend.mapsTemplateVectors());
+            if (!modelLoader.getModelName().equals(contents.modelName())
+                    || !templateCache.contentHash().equals(contents.contentHash())) {
+                logger.warn("Файл знімка {} не відповідає поточній моделі або шаблонам", file);
+                return null;
             }
-        } while (data != null && !data.isBlank() && !"null".equalsIgnoreCase(data));
+            logger.info("⚡ Шаблони завантажено з файлу знімка {}: {} шаблонів, {} мс",
+                    file, contents.templates().size(), (System.nanoTime() - start) / 1_000_000);
+            return contents.templates();
+        } catch (IOException e) {
+            logger.warn("Не вдалося прочитати файл знімка {}: {}", file, e.getMessage());
+            return null;
+        }
     }
 
-    private void buildAndCacheTemplates() throws Exception {
-        Map<String, Map<String, String>> allTemplates = templateCache.getTemplates();
-        int index = 0;
+    /**
+     * Для бекенду, якому не потрібні float-вектори в купі ({@link ScoringBackend#mapsTemplateVectors()}),
+     * шаблони перечитуються зі щойно записаного файлу знімка з відображеними векторами, а скомпільовані
+     * float-матриці звільняються.
+     */
+    private Map<String, TemplateMatrix> forBackend(Path file, Map<String, TemplateMatrix> compiled) {
+        if (!scoringBackend.mapsTemplateVectors()) return compiled;
+        Map<String, TemplateMatrix> mapped = loadSnapshotFile(file);
+        if (mapped != null) return mapped;
+        logger.warn("Файл знімка {} недоступний: float-вектори шаблонів лишаються в купі", file);
+        return compiled;
+    }
 
-        for (Map.Entry<String, Map<String, String>> entry : allTemplates.entrySet()) {
-            String fileName = entry.getKey();
-            Map<String, String> jsonModel = entry.getValue();
+    /**
+     * Записує скомпільовані шаблони в локальний файл і видаляє застарілі файли цієї моделі.
+     */
+    private void writeSnapshotFile(Path file, Map<String, TemplateMatrix> templates) {
+        try {
+            TemplateSnapshotFile.write(file, modelLoader.getModelName(), templateCache.contentHash(), templates);
+            try (DirectoryStream<Path> stale = Files.newDirectoryStream(snapshotDir, modelLoader.getModelName() + "-*.bin")) {
+                for (Path old : stale) {
+                    if (!old.getFileName().equals(file.getFileName())) {
+                        Files.deleteIfExists(old);
+                    }
+                }
+            }
+            logger.info("💾 Знімок шаблонів збережено у файл {}", file);
+        } catch (IOException e) {
+            logger.warn("Не вдалося зберегти файл знімка {}: {}", file, e.getMessage());
+        }
+    }
 
-            // Пропускаємо, якщо шаблон уже в кеші
-            if (cachedTemplates.containsKey(fileName)) continue;
+    /**
+     * Переносить embedding-и зі старих записів шаблонів ({@code Templates-N}) у сховище фрагментів
+     * і видаляє ці записи.
+     */
+    private void migrateLegacyRecords() {
+        int migrated = 0;
+        for (int index = 0; ; index++) {
+            String data = redisService.getData(JSON_KEY_PREFIX + index);
+            if (data == null || data.isBlank() || "null".equalsIgnoreCase(data)) break;
+            // JSON-записи не містять назви моделі — вважаємо, що їх обчислено поточною
+            migrateTemplate(JsonSerializable.fromJson(data, CachedTemplate.class));
+            redisService.deleteData(JSON_KEY_PREFIX + index);
+            migrated++;
+        }
+        if (migrated > 0) {
+            logger.info("📦 Старі записи шаблонів перенесено у сховище фрагментів: {}", migrated);
+        }
+    }
 
-            Map<String, List<String>> fragmentsMap = new HashMap<>();
-            Map<String, List<float[]>> embeddingsMap = new HashMap<>();
+    private void migrateTemplate(CachedTemplate template) {
+        Map<String, float[]> embeddings = new HashMap<>();
+        template.getEmbeddings().forEach((key, vectors) -> {
+            List<String> fragments = template.getFragments().getOrDefault(key, List.of()).stream()
+                    .map(String::trim).filter(f -> !f.isEmpty()).toList();
+            // Лише вирівняні записи: кількість фрагментів збігається з кількістю embedding-ів
+            if (fragments.size() != vectors.size()) return;
+            for (int i = 0; i < fragments.size(); i++) {
+                embeddings.put(fragments.get(i), vectors.get(i));
+            }
+        });
+        fragmentStore.putAll(embeddings);
+    }
+
+    /**
+     * Зберігає маніфести шаблонів під назвами файлів і видаляє маніфести шаблонів, яких більше немає.
+     * Фрагменти, що були в маніфестах попередньої збірки цієї моделі, але не входять у жоден
+     * поточний шаблон, видаляються зі сховища фрагментів.
+     */
+    private void saveManifests(Map<String, CachedTemplate> templates) {
+        try {
+            Set<String> current = new HashSet<>();
+            Map<String, TemplateManifest> manifests = new LinkedHashMap<>();
+            for (var entry : templates.entrySet()) {
+                Map<String, List<String>> hashes = new LinkedHashMap<>();
+                entry.getValue().getFragments().forEach((key, fragments) -> {
+                    List<String> keyHashes = fragments.stream().map(fragmentStore::hash).toList();
+                    hashes.put(key, keyHashes);
+                    current.addAll(keyHashes);
+                });
+                manifests.put(entry.getKey(), new TemplateManifest(modelLoader.getModelName(),
+                        entry.getValue().getFragments(), hashes));
+            }
+
+            List<String> previousNames = List.of();
+            String previous = redisService.getData(MANIFEST_INDEX_KEY);
+            if (previous != null) {
+                previousNames = mapper.readValue(previous, new TypeReference<List<String>>() {});
+            }
+            Set<String> orphaned = new HashSet<>();
+            for (String name : previousNames) {
+                String data = redisService.getData(MANIFEST_KEY_PREFIX + name);
+                if (data == null) continue;
+                TemplateManifest old = JsonSerializable.fromJson(data, TemplateManifest.class);
+                // Фрагменти іншої моделі мають інші хеші — їх не чіпаємо
+                if (old.getHashes() == null || !modelLoader.getModelName().equals(old.getModel())) continue;
+                old.getHashes().values().forEach(orphaned::addAll);
+            }
+            orphaned.removeAll(current);
+
+            for (var entry : manifests.entrySet()) {
+                redisService.saveData(MANIFEST_KEY_PREFIX + entry.getKey(), entry.getValue().getJson());
+            }
+            for (String name : previousNames) {
+                if (!templates.containsKey(name)) {
+                    redisService.deleteData(MANIFEST_KEY_PREFIX + name);
+                }
+            }
+            redisService.saveData(MANIFEST_INDEX_KEY, mapper.writeValueAsString(new ArrayList<>(templates.keySet())));
 
-            for (var e : jsonModel.entrySet()) {
-                List<String> fragments = List.of(e.getValue().split("[.!?\\n]"));
-                List<float[]> embeddings = new ArrayList<>();
-                for (String fragment : fragments) {
+            long removed = orphaned.isEmpty() ? 0 : fragmentStore.remove(orphaned);
+            logger.info("📦 Збережено маніфестів шаблонів у Redis: {}, видалено застарілих фрагментів: {}",
+                    templates.size(), removed);
+        } catch (Exception e) {
+            logger.warn("Не вдалося зберегти маніфести шаблонів: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Будує шаблони з вихідних JSON-файлів. Назва шаблону — назва файлу.
+     *
+     * @return шаблони: назва → шаблон з embedding-ами
+     */
+    private Map<String, CachedTemplate> buildTemplates() throws ExecutionException, InterruptedException {
+        Map<String, Map<String, String>> allTemplates = templateCache.getTemplates();
+
+        // Розбиваємо всі шаблони на фрагменти, щоб отримати embedding-и одним запитом
+        Map<String, Map<String, List<String>>> split = new LinkedHashMap<>();
+        Set<String> allFragments = new LinkedHashSet<>();
+        for (Map.Entry<String, Map<String, String>> entry : allTemplates.entrySet()) {
+            Map<String, List<String>> fragmentsMap = new HashMap<>();
+            for (var e : entry.getValue().entrySet()) {
+                // Зберігаємо лише непорожні фрагменти, щоб індекси збігалися з embedding-ами
+                List<String> fragments = new ArrayList<>();
+                for (String fragment : e.getValue().split("[.!?\\n]")) {
                     fragment = fragment.trim();
                     if (!fragment.isEmpty()) {
-                        embeddings.add(predictor.predict(fragment));
+                        fragments.add(fragment);
                     }
                 }
                 fragmentsMap.put(e.getKey(), fragments);
-                embeddingsMap.put(e.getKey(), embeddings);
+                allFragments.addAll(fragments);
             }
+            split.put(entry.getKey(), fragmentsMap);
+        }
+
+        Map<String, float[]> embeddings = fragmentStore.embedAll(allFragments);
+
+        Map<String, CachedTemplate> built = new LinkedHashMap<>();
+        split.forEach((fileName, fragmentsMap) -> {
+            Map<String, List<float[]>> embeddingsMap = new HashMap<>();
+            fragmentsMap.forEach((key, fragments) ->
+                    embeddingsMap.put(key, fragments.stream().map(embeddings::get).toList()));
+            built.put(fileName, new CachedTemplate(fragmentsMap, embeddingsMap));
+        });
+        logger.info("Побудовано шаблонів: {} ({} унікальних фрагментів)", built.size(), allFragments.size());
+        return built;
+    }
 
-            CachedTemplate cachedTemplate = new CachedTemplate(fragmentsMap, embeddingsMap);
-            String redisKey = "Templates-" + index;
-            cachedTemplates.put(redisKey, cachedTemplate);
-            redisService.saveData(redisKey, cachedTemplate.getJson());
-            logger.info("📦 Збережено шаблон у Redis: {}", redisKey);
-            index++;
+    private static Map<String, TemplateMatrix> compile(Map<String, CachedTemplate> templates) {
+        Map<String, TemplateMatrix> compiled = new LinkedHashMap<>();
+        templates.forEach((name, template) -> compiled.put(name, TemplateMatrix.compile(name, template)));
+        return compiled;
+    }
+
+    /**
+     * Бере посилання на поточний знімок шаблонів.
+     * Після завершення роботи знімок треба повернути через {@link TemplateSnapshot#release()}.
+     *
+     * @return поточний знімок шаблонів
+     */
+    public TemplateSnapshot acquireSnapshot() {
+        while (true) {
+            TemplateSnapshot current = snapshot.get();
+            if (current.tryAcquire()) {
+                return current;
+            }
         }
     }
 
-    public Map<String, CachedTemplate> getTemplates() {
-        return cachedTemplates;
+    /**
+     * @return кількість фрагментів у поточному знімку (без взяття посилання на знімок)
+     */
+    public int getFragmentCount() {
+        return snapshot.get().getTotalRows();
     }
 
-    public CachedTemplate getTemplate(String templateName) {
-        return cachedTemplates.get(templateName);
+    /**
+     * Додає або замінює шаблон і публікує новий знімок (наявна мапа не змінюється — створюється копія).
+     */
+    public synchronized void addTemplate(String templateName, CachedTemplate template) {
+        Map<String, TemplateMatrix> compiled = new LinkedHashMap<>(snapshot.get().getTemplates());
+        compiled.put(templateName, TemplateMatrix.compile(templateName, template));
+        publish(compiled);
     }
 
-    public void addTemplate(String templateName, CachedTemplate template) {
-        cachedTemplates.put(templateName, template);
+    /**
+     * Публікує новий знімок скомпільованих шаблонів. Попередній знімок звільняється,
+     * щойно завершаться аналізи, що його використовують.
+     */
+    private synchronized void publish(Map<String, TemplateMatrix> compiled) {
+        Map<String, TemplateMatrix> stored = new LinkedHashMap<>();
+        compiled.forEach((name, template) -> stored.put(name, scoringBackend.store(template)));
+        TemplateSnapshot next = new TemplateSnapshot(snapshotVersion.incrementAndGet(), stored);
+        scoringBackend.prepare(next);
+        LexicalIndex.of(next);
+        TemplateSnapshot previous = snapshot.getAndSet(next);
+        previous.release();
+        logger.info("Опубліковано знімок шаблонів v{}: {} шаблонів, {} фрагментів",
+                next.getVersion(), next.size(), next.getTotalRows());
     }
 
     public boolean containsTemplate(String templateName) {
-        return cachedTemplates.containsKey(templateName);
+        return snapshot.get().getTemplates().containsKey(templateName);
     }
 }
@@ -0,0 +1,214 @@
+package org.example.service;
+
+import org.example.service.match.TemplateMatch;
+import org.example.service.match.TemplateMatrix;
+import org.example.service.score.DocumentScoring;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * TemplatePruning — відсікання шаблонів, які вже не можуть перемогти (branch-and-bound).
+ * <p>
+ * Загальний бал шаблону — сума схожостей призначених рядків, по одному рядку на ключ, і кожна
+ * схожість не більша за 1.0. Тому бал шаблону не перевищує
+ * {@code набраний бал + min(непорівняні рядки, вільні ключі)}. Якщо ця межа не вища за бал лідера,
+ * шаблон відкидається: ще до порівняння (мало ключів) або посеред документа (рядки порівнюються
+ * блоками по {@code matcher.pruning.block-lines}).
+ * <p>
+ * Щоб лідер з'являвся якнайраніше, шаблони перебираються від тих, що найчастіше перемагали раніше.
+ * Шаблон відкидається лише через лідера серед шаблонів, що стоять раніше у знімку, тож і переможець
+ * (при рівному балі — раніший у знімку), і історія лідерів ({@link Leader#history()}) такі самі,
+ * як при повному переборі в порядку знімка.
+ */
+@Component
+public class TemplatePruning {
+
+    /**
+     * Найбільша схожість одного рядка: 1.0 із запасом на похибку округлення скалярного добутку float
+     */
+    private static final double MAX_LINE_SCORE = 1.0 + 1e-4;
+
+    private final boolean enabled;
+    private final int blockLines;
+
+    /**
+     * Кількість перемог кожного шаблону (визначає порядок перебору)
+     */
+    private final Map<String, LongAdder> wins = new ConcurrentHashMap<>();
+
+    private final LongAdder comparisons = new LongAdder();
+    private final LongAdder skippedComparisons = new LongAdder();
+    private final LongAdder skippedTemplates = new LongAdder();
+    private final LongAdder abandonedTemplates = new LongAdder();
+
+    /**
+     * Лідер аналізу одного документа.
+     * <p>
+     * Зберігає лідерів у порядку знімка: позиції шаблонів, що набрали більше за всі шаблони перед ними
+     * (бали зростають разом із позицією). Шаблони можуть надходити в будь-якому порядку перебору,
+     * а результат — той самий, що при перегляді знімка від початку до кінця.
+     */
+    public static final class Leader {
+
+        /**
+         * Позиція у знімку → бал лідера
+         */
+        private final TreeMap<Integer, Double> leaders = new TreeMap<>();
+
+        /**
+         * Враховує бал шаблону.
+         *
+         * @return true, якщо шаблон став лідером документа (найвищий бал; при рівності — раніший у знімку)
+         */
+        public boolean offer(double score, int position) {
+            Map.Entry<Integer, Double> before = leaders.lowerEntry(position);
+            if (before != null && before.getValue() >= score) return false;
+            // Пізніші у знімку шаблони з не вищим балом перестають бути лідерами
+            Iterator<Map.Entry<Integer, Double>> after = leaders.tailMap(position, false).entrySet().iterator();
+            while (after.hasNext() && after.next().getValue() <= score) {
+                after.remove();
+            }
+            leaders.put(position, score);
+            return leaders.lastKey() == position;
+        }
+
+        /**
+         * @return true, якщо шаблон зараз входить в історію лідерів
+         */
+        public boolean isLeader(int position) {
+            return leaders.containsKey(position);
+        }
+
+        /**
+         * @return позиції лідерів у порядку знімка; остання — переможець
+         */
+        public List<Integer> history() {
+            return new ArrayList<>(leaders.keySet());
+        }
+
+        /**
+         * @return true, якщо шаблон з верхньою межею {@code bound} не обійде жоден шаблон, що стоїть
+         * раніше у знімку (а отже не стане ні переможцем, ні лідером в історії)
+         */
+        boolean outranks(double bound, int position) {
+            Map.Entry<Integer, Double> before = leaders.lowerEntry(position);
+            return before != null && bound <= before.getValue();
+        }
+    }
+
+    public TemplatePruning(@Value("${matcher.pruning.enabled:true}") boolean enabled,
+                           @Value("${matcher.pruning.block-lines:16}") int blockLines) {
+        this.enabled = enabled;
+        this.blockLines = Math.max(1, blockLines);
+    }
+
+    /**
+     * Порядок перебору шаблонів: спочатку ті, що частіше перемагали; при рівності — порядок знімка.
+     *
+     * @param templates шаблони в порядку знімка
+     * @return позиції шаблонів у {@code templates}
+     */
+    public int[] scanOrder(List<TemplateMatrix> templates) {
+        Integer[] order = new Integer[templates.size()];
+        long[] counts = new long[templates.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+            LongAdder count = wins.get(templates.get(i).getName());
+            counts[i] = count == null ? 0 : count.sum();
+        }
+        if (enabled) {
+            Arrays.sort(order, Comparator.comparingLong((Integer i) -> counts[i]).reversed());
+        }
+        return Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Запам'ятовує переможця аналізу документа.
+     */
+    public void recordWinner(String template) {
+        if (template != null) {
+            wins.computeIfAbsent(template, t -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * Порівнює документ з шаблоном, припиняючи порівняння, щойно шаблон не може обійти лідера.
+     *
+     * @param scoring    сесія порівняння документа
+     * @param template   шаблон
+     * @param position   позиція шаблону у знімку
+     * @param lines      очищені рядки документа
+     * @param bestRows   робочий масив найкращих рядків матриці (довжина — кількість рядків документа)
+     * @param bestScores робочий масив схожостей
+     * @param threshold  поріг схожості
+     * @param leader     поточний лідер
+     * @return результат порівняння або null, якщо шаблон відкинуто
+     */
+    public TemplateMatch match(DocumentScoring scoring, TemplateMatrix template, int position, List<String> lines,
+                               int[] bestRows, float[] bestScores, double threshold, Leader leader) {
+        int lineCount = lines.size();
+        comparisons.add((long) lineCount * template.getRows());
+        if (!enabled) {
+            scoring.score(template, bestRows, bestScores);
+            return TemplateMatch.assemble(template, lines, bestRows, bestScores, threshold);
+        }
+
+        int block = scoring.scoresLineBlocks() ? blockLines : Math.max(1, lineCount);
+        TemplateMatch match = new TemplateMatch();
+        int scored = 0;
+        for (int line = 0; line < lineCount; line++) {
+            int freeKeys = template.getMatchableKeys() - match.getResult().size();
+            double bound = match.getTotalScore() + MAX_LINE_SCORE * Math.min(lineCount - line, freeKeys);
+            if (leader.outranks(bound, position)) {
+                skippedComparisons.add((long) (lineCount - scored) * template.getRows());
+                (line == 0 ? skippedTemplates : abandonedTemplates).increment();
+                return null;
+            }
+            if (line == scored) {
+                scored = Math.min(lineCount, line + block);
+                scoring.score(template, line, scored, bestRows, bestScores);
+            }
+            match.accept(template, lines.get(line), bestRows[line], bestScores[line], threshold);
+        }
+        return match;
+    }
+
+    /**
+     * Перевіряє до порівняння, чи може шаблон обійти лідера (верхня межа — кількість ключів).
+     * Використовується паралельним переглядом, де рядки шаблону порівнюються одночасно.
+     *
+     * @return true, якщо шаблон відкинуто без порівняння
+     */
+    public boolean cannotWin(TemplateMatrix template, int position, int lineCount, Leader leader) {
+        comparisons.add((long) lineCount * template.getRows());
+        if (!enabled) return false;
+        double bound = MAX_LINE_SCORE * Math.min(lineCount, template.getMatchableKeys());
+        if (leader.outranks(bound, position)) {
+            skippedComparisons.add((long) lineCount * template.getRows());
+            skippedTemplates.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Статистика відсікання: скільки порівнянь «шаблон × рядок» пропущено.
+     */
+    public Map<String, Object> getMetrics() {
+        long total = comparisons.sum();
+        long skipped = skippedComparisons.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("blockLines", blockLines);
+        metrics.put("comparisons", total);
+        metrics.put("skippedComparisons", skipped);
+        metrics.put("skippedRatio", total == 0 ? 0.0 : (double) skipped / total);
+        metrics.put("skippedTemplates", skippedTemplates.sum());
+        metrics.put("abandonedTemplates", abandonedTemplates.sum());
+        return metrics;
+    }
+}
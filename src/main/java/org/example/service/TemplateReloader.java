@@ -0,0 +1,122 @@
+package org.example.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TemplateReloader — стежить за каталогом шаблонів і перезавантажує змінені файли без перезапуску.
+ * <p>
+ * Події {@link WatchService} збираються протягом {@code templates.reload.debounce-ms}
+ * (редактори часто пишуть файл кількома операціями), після чого змінені файли перечитуються
+ * у {@link TemplateCache}, а {@link TemplateCacheService#reload} у фоновому потоці будує
+ * і публікує новий знімок. Аналізи документів при цьому не блокуються.
+ */
+@Component
+public class TemplateReloader {
+
+    private static final Logger logger = LoggerFactory.getLogger(TemplateReloader.class);
+
+    private final TemplateCache templateCache;
+    private final TemplateCacheService templateCacheService;
+    private final boolean enabled;
+    private final long debounceMs;
+
+    private WatchService watchService;
+    private Thread watcherThread;
+    private volatile boolean running;
+
+    public TemplateReloader(TemplateCache templateCache,
+                            TemplateCacheService templateCacheService,
+                            @Value("${templates.reload.enabled:true}") boolean enabled,
+                            @Value("${templates.reload.debounce-ms:500}") long debounceMs) {
+        this.templateCache = templateCache;
+        this.templateCacheService = templateCacheService;
+        this.enabled = enabled;
+        this.debounceMs = debounceMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) return;
+        Path dir = templateCache.getTemplateDir();
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            logger.warn("Не вдалося підписатися на зміни каталогу шаблонів {}: {}", dir, e.getMessage());
+            return;
+        }
+        running = true;
+        watcherThread = new Thread(this::watch, "template-reload");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+        logger.info("👀 Відстеження змін шаблонів у {}", dir);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (watcherThread != null) watcherThread.interrupt();
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void watch() {
+        while (running) {
+            try {
+                Set<String> changed = new LinkedHashSet<>();
+                collect(watchService.take(), changed);
+                // Збираємо події, що надійшли слідом (запис файлу частинами, копіювання кількох файлів)
+                WatchKey next;
+                while ((next = watchService.poll(debounceMs, TimeUnit.MILLISECONDS)) != null) {
+                    collect(next, changed);
+                }
+
+                Set<String> reloaded = new LinkedHashSet<>();
+                for (String fileName : changed) {
+                    if (templateCache.reloadFile(fileName)) {
+                        reloaded.add(fileName);
+                    }
+                }
+                if (!reloaded.isEmpty()) {
+                    templateCacheService.reload(reloaded);
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("Помилка перезавантаження шаблонів: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private static void collect(WatchKey key, Set<String> changed) {
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.context() instanceof Path path && path.toString().endsWith(".json")) {
+                changed.add(path.toString());
+            }
+        }
+        key.reset();
+    }
+}
@@ -0,0 +1,192 @@
+package org.example.service;
+
+import jakarta.annotation.PreDestroy;
+import org.example.service.match.TemplateMatch;
+import org.example.service.match.TemplateMatrix;
+import org.example.service.score.DocumentScoring;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+
+/**
+ * TemplateScanner — перебір шаблонів для одного документа, послідовний або паралельний.
+ * <p>
+ * Великий документ ділиться на плитки «шаблон × блок рядків», які виконуються на спільному
+ * work-stealing пулі {@code match-tile-}. Шаблони обробляються хвилями в порядку перебору
+ * ({@link TemplatePruning#scanOrder}); після кожної хвилі результати збираються в тому самому порядку
+ * потоком документа, тому призначення ключів ({@link TemplateMatch#accept}) і вибір лідера
+ * такі самі, як у послідовному переборі. Відсікання до порівняння використовує лідера на початок хвилі —
+ * він не сильніший за послідовного, тож відкидається не більше шаблонів, ніж при послідовному переборі.
+ * <p>
+ * Один документ займає не більше {@code matcher.parallel.max-per-document} потоків (разом із власним),
+ * щоб великі документи не витісняли малі. Документи з кількістю порівнянь, меншою за
+ * {@code matcher.parallel.min-comparisons}, і бекенди без блокового порівняння обробляються послідовно.
+ */
+@Component
+public class TemplateScanner {
+
+    private static final Logger logger = LoggerFactory.getLogger(TemplateScanner.class);
+
+    /**
+     * Отримувач результатів у порядку перебору (викликається потоком документа)
+     */
+    @FunctionalInterface
+    public interface Visitor {
+        /**
+         * @param position позиція шаблону у знімку
+         * @param template шаблон
+         * @param match    результат порівняння або null, якщо шаблон відкинуто
+         */
+        void visit(int position, TemplateMatrix template, TemplateMatch match);
+    }
+
+    private final TemplatePruning templatePruning;
+    private final boolean enabled;
+    private final int maxPerDocument;
+    private final int tileLines;
+    private final long minComparisons;
+    private final ForkJoinPool pool;
+
+    private final LongAdder parallelDocuments = new LongAdder();
+    private final LongAdder sequentialDocuments = new LongAdder();
+    private final LongAdder tiles = new LongAdder();
+
+    public TemplateScanner(TemplatePruning templatePruning,
+                           @Value("${matcher.parallel.enabled:true}") boolean enabled,
+                           @Value("${matcher.parallel.pool-size:0}") int poolSize,
+                           @Value("${matcher.parallel.max-per-document:4}") int maxPerDocument,
+                           @Value("${matcher.parallel.tile-lines:32}") int tileLines,
+                           @Value("${matcher.parallel.min-comparisons:200000}") long minComparisons) {
+        this.templatePruning = templatePruning;
+        this.enabled = enabled;
+        this.maxPerDocument = Math.max(1, maxPerDocument);
+        this.tileLines = Math.max(1, tileLines);
+        this.minComparisons = minComparisons;
+
+        int size = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        this.pool = new ForkJoinPool(size, p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("match-tile-" + counter.incrementAndGet());
+            return thread;
+        }, null, false);
+        logger.info("Пул плиток порівняння: {} потоків, до {} на документ", size, this.maxPerDocument);
+    }
+
+    /**
+     * Перебирає шаблони документа і передає результати {@code visitor} у порядку перебору.
+     *
+     * @param scoring   сесія порівняння документа
+     * @param templates шаблони в порядку знімка
+     * @param lines     очищені рядки документа
+     * @param threshold поріг схожості
+     * @param leader    лідер документа (оновлюється у {@code visitor})
+     * @param visitor   отримувач результатів
+     */
+    public void scan(DocumentScoring scoring, List<TemplateMatrix> templates, List<String> lines,
+                     double threshold, TemplatePruning.Leader leader, Visitor visitor) {
+        int[] order = templatePruning.scanOrder(templates);
+        int lineCount = lines.size();
+        long comparisons = (long) lineCount * templates.stream().mapToLong(TemplateMatrix::getRows).sum();
+
+        if (!enabled || maxPerDocument < 2 || comparisons < minComparisons || !scoring.scoresLineBlocks()) {
+            sequentialDocuments.increment();
+            int[] bestRows = new int[lineCount];
+            float[] bestScores = new float[lineCount];
+            for (int position : order) {
+                TemplateMatrix template = templates.get(position);
+                visitor.visit(position, template, templatePruning.match(scoring, template, position, lines,
+                        bestRows, bestScores, threshold, leader));
+            }
+            return;
+        }
+
+        parallelDocuments.increment();
+        int wave = maxPerDocument * 2;
+        for (int start = 0; start < order.length; start += wave) {
+            int end = Math.min(order.length, start + wave);
+            int[][] bestRows = new int[end - start][];
+            float[][] bestScores = new float[end - start][];
+
+            // Плитки хвилі: шаблони, що ще можуть обійти лідера, × блоки рядків
+            List<int[]> waveTiles = new ArrayList<>();
+            for (int i = start; i < end; i++) {
+                TemplateMatrix template = templates.get(order[i]);
+                if (templatePruning.cannotWin(template, order[i], lineCount, leader)) continue;
+                bestRows[i - start] = new int[lineCount];
+                bestScores[i - start] = new float[lineCount];
+                for (int from = 0; from < lineCount; from += tileLines) {
+                    waveTiles.add(new int[]{i - start, from, Math.min(lineCount, from + tileLines)});
+                }
+            }
+
+            int base = start;
+            runTiles(waveTiles.size(), tile -> {
+                int[] t = waveTiles.get(tile);
+                scoring.score(templates.get(order[base + t[0]]), t[1], t[2], bestRows[t[0]], bestScores[t[0]]);
+            });
+
+            // Детерміноване зведення: у порядку перебору, тим самим потоком, що й послідовний перебір
+            for (int i = start; i < end; i++) {
+                TemplateMatrix template = templates.get(order[i]);
+                TemplateMatch match = bestRows[i - start] == null ? null
+                        : TemplateMatch.assemble(template, lines, bestRows[i - start], bestScores[i - start], threshold);
+                visitor.visit(order[i], template, match);
+            }
+        }
+    }
+
+    /**
+     * Виконує плитки силами потоку документа і не більше ніж {@code maxPerDocument - 1} потоків пулу.
+     * Плитки розбираються з лічильника, тому вільний потік бере наступну плитку, не чекаючи інших.
+     */
+    private void runTiles(int count, IntConsumer tile) {
+        if (count == 0) return;
+        tiles.add(count);
+        AtomicInteger next = new AtomicInteger();
+        Runnable worker = () -> {
+            int index;
+            while ((index = next.getAndIncrement()) < count) {
+                tile.accept(index);
+            }
+        };
+        List<ForkJoinTask<?>> helpers = new ArrayList<>();
+        for (int i = 1; i < Math.min(maxPerDocument, count); i++) {
+            helpers.add(pool.submit(worker));
+        }
+        worker.run();
+        helpers.forEach(ForkJoinTask::join);
+    }
+
+    /**
+     * Статистика: скільки документів оброблено паралельно і скільки плиток виконано.
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("poolSize", pool.getParallelism());
+        metrics.put("maxPerDocument", maxPerDocument);
+        metrics.put("activeThreads", pool.getActiveThreadCount());
+        metrics.put("parallelDocuments", parallelDocuments.sum());
+        metrics.put("sequentialDocuments", sequentialDocuments.sum());
+        metrics.put("tiles", tiles.sum());
+        return metrics;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+}
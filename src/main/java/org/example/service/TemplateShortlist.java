@@ -0,0 +1,96 @@
+package org.example.service;
+
+import org.example.service.match.LexicalIndex;
+import org.example.service.match.TemplateMatrix;
+import org.example.service.match.TemplateSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * TemplateShortlist — перший (лексичний) етап вибору шаблонів для порівняння embedding-ів.
+ * <p>
+ * Шаблони ранжуються за BM25 по основах слів ({@link LexicalIndex}), і до порівняння embedding-ів
+ * потрапляють лише {@code matcher.shortlist.top-n} найкращих. Якщо відбір ненадійний — обрані шаблони
+ * покривають меншу частку відомої шаблонам лексики документа, ніж {@code matcher.shortlist.min-coverage},
+ * або жоден шаблон не має спільних слів з документом — порівнюються всі шаблони.
+ * Порядок обраних шаблонів той самий, що у знімку, тому результат детермінований.
+ * <p>
+ * Відбір вмикається явно ({@code matcher.shortlist.enabled=true}): шаблон, що не потрапив у top-n,
+ * не порівнюється зовсім, тож результат може відрізнятися від повного перебору.
+ */
+@Component
+public class TemplateShortlist {
+
+    private static final Logger logger = LoggerFactory.getLogger(TemplateShortlist.class);
+
+    private final boolean enabled;
+    private final int topN;
+    private final double minCoverage;
+
+    private final LongAdder shortlisted = new LongAdder();
+    private final LongAdder fullScans = new LongAdder();
+    private final LongAdder skippedTemplates = new LongAdder();
+
+    public TemplateShortlist(@Value("${matcher.shortlist.enabled:false}") boolean enabled,
+                             @Value("${matcher.shortlist.top-n:10}") int topN,
+                             @Value("${matcher.shortlist.min-coverage:0.8}") double minCoverage) {
+        this.enabled = enabled;
+        this.topN = topN;
+        this.minCoverage = minCoverage;
+    }
+
+    /**
+     * Обирає шаблони для порівняння embedding-ів.
+     *
+     * @param snapshot знімок шаблонів
+     * @param lines    очищені рядки документа
+     * @return шаблони в порядку знімка (усі — якщо відбір вимкнено або ненадійний)
+     */
+    public Map<String, TemplateMatrix> select(TemplateSnapshot snapshot, List<String> lines) {
+        Map<String, TemplateMatrix> all = snapshot.getTemplates();
+        if (!enabled || topN <= 0 || all.size() <= topN) {
+            return all;
+        }
+
+        LexicalIndex index = LexicalIndex.of(snapshot);
+        Set<String> stems = LexicalIndex.stems(lines);
+        List<LexicalIndex.Candidate> ranked = index.rank(stems);
+
+        Set<String> chosen = new HashSet<>();
+        for (LexicalIndex.Candidate candidate : ranked.subList(0, topN)) {
+            if (candidate.score() > 0) chosen.add(candidate.template());
+        }
+        double coverage = index.coverage(stems, chosen);
+        if (chosen.isEmpty() || coverage < minCoverage) {
+            fullScans.increment();
+            logger.debug("Лексичний відбір ненадійний (покриття {}), порівнюються всі шаблони", coverage);
+            return all;
+        }
+
+        Map<String, TemplateMatrix> selected = new LinkedHashMap<>();
+        all.forEach((name, template) -> {
+            if (chosen.contains(name)) selected.put(name, template);
+        });
+        shortlisted.increment();
+        skippedTemplates.add(all.size() - selected.size());
+        return selected;
+    }
+
+    /**
+     * Статистика відбору: скільки документів пройшли з коротким списком, скільки — повним перебором.
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("topN", topN);
+        metrics.put("shortlisted", shortlisted.sum());
+        metrics.put("fullScans", fullScans.sum());
+        metrics.put("skippedTemplates", skippedTemplates.sum());
+        return metrics;
+    }
+}
@@ -0,0 +1,318 @@
+package org.example.service.ann;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * HnswIndex — ієрархічний граф малого світу (HNSW) для наближеного пошуку найближчих векторів.
+ * <p>
+ * Вектори мають бути нормалізовані за L2-нормою; схожість — скалярний добуток (cosine similarity).
+ * Вектори не копіюються: кожен вузол посилається на рядок у суцільній матриці (row-major),
+ * тому індекс може покривати одразу кілька матриць шаблонів.
+ * <p>
+ * Параметри:
+ * - {@code m} — кількість зв'язків вузла на верхніх рівнях (на рівні 0 — {@code 2 * m})
+ * - {@code efConstruction} — ширина пошуку під час побудови
+ * - {@code efSearch} — ширина пошуку під час запиту (більше — точніше, але повільніше)
+ * <p>
+ * Побудова однопотокова; після побудови індекс лише читається і безпечний для одночасних запитів.
+ */
+public class HnswIndex {
+
+    /**
+     * Результат пошуку: вузол і його схожість із запитом
+     */
+    public record Hit(int node, float score) {
+    }
+
+    private static final Comparator<Hit> BY_SCORE = Comparator.comparingDouble(Hit::score);
+
+    private final int dimension;
+    private final int m;
+    private final int maxLevelZeroLinks;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final Random random;
+
+    /**
+     * Матриці, на рядки яких посилаються вузли
+     */
+    private final List<float[]> sources = new ArrayList<>();
+
+    private int[] nodeSource = new int[16];
+    private int[] nodeOffset = new int[16];
+
+    /**
+     * Зв'язки: links[node][level][0] — кількість сусідів, далі — їхні номери
+     */
+    private int[][][] links = new int[16][][];
+
+    private int size;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    /**
+     * Позначки відвіданих вузлів (окремі для кожного потоку)
+     */
+    private final ThreadLocal<int[]> visitedMarks = new ThreadLocal<>();
+    private final ThreadLocal<int[]> visitedGeneration = ThreadLocal.withInitial(() -> new int[1]);
+
+    public HnswIndex(int dimension, int m, int efConstruction, long seed) {
+        this.dimension = dimension;
+        this.m = Math.max(2, m);
+        this.maxLevelZeroLinks = this.m * 2;
+        this.efConstruction = Math.max(this.m, efConstruction);
+        this.levelMultiplier = 1.0 / Math.log(this.m);
+        this.random = new Random(seed);
+    }
+
+    /**
+     * @return кількість вузлів в індексі
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Додає всі рядки матриці в індекс.
+     *
+     * @param vectors нормалізовані вектори (row-major)
+     * @param rows    кількість рядків
+     * @return номер першого доданого вузла (вузли рядків ідуть підряд)
+     */
+    public int addAll(float[] vectors, int rows) {
+        int sourceIndex = sources.size();
+        sources.add(vectors);
+        int first = size;
+        for (int row = 0; row < rows; row++) {
+            insert(sourceIndex, row * dimension);
+        }
+        return first;
+    }
+
+    /**
+     * Шукає {@code k} найближчих вузлів до запиту.
+     *
+     * @param query    нормалізований вектор запиту (у масиві)
+     * @param offset   початок вектора в масиві
+     * @param k        кількість результатів
+     * @param efSearch ширина пошуку
+     * @return знайдені вузли, від найбільш схожого
+     */
+    public List<Hit> search(float[] query, int offset, int k, int efSearch) {
+        if (entryPoint < 0) return List.of();
+
+        int current = entryPoint;
+        float currentScore = similarity(query, offset, current);
+        for (int level = maxLevel; level > 0; level--) {
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                int[] neighbours = links[current][level];
+                for (int i = 1; i <= neighbours[0]; i++) {
+                    int candidate = neighbours[i];
+                    float score = similarity(query, offset, candidate);
+                    if (score > currentScore) {
+                        currentScore = score;
+                        current = candidate;
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        PriorityQueue<Hit> found = searchLayer(query, offset, new Hit(current, currentScore), Math.max(efSearch, k), 0);
+        List<Hit> result = new ArrayList<>(found);
+        result.sort(BY_SCORE.reversed());
+        return result.size() > k ? new ArrayList<>(result.subList(0, k)) : result;
+    }
+
+    private void insert(int sourceIndex, int offset) {
+        int node = size;
+        ensureCapacity(node + 1);
+        nodeSource[node] = sourceIndex;
+        nodeOffset[node] = offset;
+
+        int level = (int) Math.floor(-Math.log(1.0 - random.nextDouble()) * levelMultiplier);
+        links[node] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[node][l] = new int[(l == 0 ? maxLevelZeroLinks : m) + 1];
+        }
+        size++;
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+
+        float[] query = sources.get(sourceIndex);
+        int current = entryPoint;
+        float currentScore = similarity(query, offset, current);
+        for (int l = maxLevel; l > level; l--) {
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                int[] neighbours = links[current][l];
+                for (int i = 1; i <= neighbours[0]; i++) {
+                    float score = similarity(query, offset, neighbours[i]);
+                    if (score > currentScore) {
+                        currentScore = score;
+                        current = neighbours[i];
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        Hit entry = new Hit(current, currentScore);
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            PriorityQueue<Hit> candidates = searchLayer(query, offset, entry, efConstruction, l);
+            List<Hit> sorted = new ArrayList<>(candidates);
+            sorted.sort(BY_SCORE.reversed());
+            entry = sorted.get(0);
+
+            int capacity = l == 0 ? maxLevelZeroLinks : m;
+            List<Hit> selected = selectNeighbours(sorted, m);
+            int[] own = links[node][l];
+            for (Hit hit : selected) {
+                own[++own[0]] = hit.node();
+            }
+            for (Hit hit : selected) {
+                connect(hit.node(), node, hit.score(), l, capacity);
+            }
+        }
+
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+    }
+
+    /**
+     * Додає зв'язок {@code from → to}; якщо місця немає — перевибирає сусідів евристикою.
+     */
+    private void connect(int from, int to, float score, int level, int capacity) {
+        int[] neighbours = links[from][level];
+        if (neighbours[0] < capacity) {
+            neighbours[++neighbours[0]] = to;
+            return;
+        }
+        List<Hit> candidates = new ArrayList<>(capacity + 1);
+        candidates.add(new Hit(to, score));
+        float[] vectors = sources.get(nodeSource[from]);
+        int offset = nodeOffset[from];
+        for (int i = 1; i <= neighbours[0]; i++) {
+            candidates.add(new Hit(neighbours[i], similarity(vectors, offset, neighbours[i])));
+        }
+        candidates.sort(BY_SCORE.reversed());
+        List<Hit> selected = selectNeighbours(candidates, capacity);
+        neighbours[0] = 0;
+        for (Hit hit : selected) {
+            neighbours[++neighbours[0]] = hit.node();
+        }
+    }
+
+    /**
+     * Евристика вибору сусідів (алгоритм 4 з оригінальної статті HNSW): кандидат береться,
+     * якщо він ближчий до вузла, ніж до будь-якого вже вибраного сусіда. Це зберігає
+     * зв'язки між кластерами. Вільні місця заповнюються найближчими з відкинутих.
+     *
+     * @param candidates кандидати, відсортовані від найбільш схожого
+     */
+    private List<Hit> selectNeighbours(List<Hit> candidates, int limit) {
+        List<Hit> selected = new ArrayList<>(limit);
+        List<Hit> discarded = new ArrayList<>();
+        for (Hit candidate : candidates) {
+            if (selected.size() >= limit) break;
+            float[] vectors = sources.get(nodeSource[candidate.node()]);
+            int offset = nodeOffset[candidate.node()];
+            boolean diverse = true;
+            for (Hit chosen : selected) {
+                if (similarity(vectors, offset, chosen.node()) > candidate.score()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected.add(candidate);
+            } else {
+                discarded.add(candidate);
+            }
+        }
+        for (int i = 0; i < discarded.size() && selected.size() < limit; i++) {
+            selected.add(discarded.get(i));
+        }
+        return selected;
+    }
+
+    /**
+     * Пошук у межах одного рівня графа.
+     *
+     * @return до {@code ef} найбільш схожих вузлів (черга з найменш схожим на вершині)
+     */
+    private PriorityQueue<Hit> searchLayer(float[] query, int offset, Hit entry, int ef, int level) {
+        int[] marks = visitedMarks.get();
+        if (marks == null || marks.length < size) {
+            marks = new int[Math.max(size, 16) * 2];
+            visitedMarks.set(marks);
+            visitedGeneration.get()[0] = 0;
+        }
+        int generation = ++visitedGeneration.get()[0];
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(marks, 0);
+            visitedGeneration.get()[0] = generation = 1;
+        }
+
+        PriorityQueue<Hit> candidates = new PriorityQueue<>(BY_SCORE.reversed());
+        PriorityQueue<Hit> found = new PriorityQueue<>(BY_SCORE);
+        candidates.add(entry);
+        found.add(entry);
+        marks[entry.node()] = generation;
+
+        while (!candidates.isEmpty()) {
+            Hit closest = candidates.poll();
+            if (found.size() >= ef && closest.score() < found.peek().score()) break;
+
+            int[][] nodeLinks = links[closest.node()];
+            if (level >= nodeLinks.length) continue;
+            int[] neighbours = nodeLinks[level];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                int neighbour = neighbours[i];
+                if (marks[neighbour] == generation) continue;
+                marks[neighbour] = generation;
+
+                float score = similarity(query, offset, neighbour);
+                if (found.size() < ef || score > found.peek().score()) {
+                    Hit hit = new Hit(neighbour, score);
+                    candidates.add(hit);
+                    found.add(hit);
+                    if (found.size() > ef) found.poll();
+                }
+            }
+        }
+        return found;
+    }
+
+    private float similarity(float[] query, int offset, int node) {
+        float[] vectors = sources.get(nodeSource[node]);
+        int nodeStart = nodeOffset[node];
+        float sum = 0f;
+        for (int i = 0; i < dimension; i++) {
+            sum += query[offset + i] * vectors[nodeStart + i];
+        }
+        return sum;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= nodeSource.length) return;
+        int capacity = Math.max(required, nodeSource.length * 2);
+        nodeSource = Arrays.copyOf(nodeSource, capacity);
+        nodeOffset = Arrays.copyOf(nodeOffset, capacity);
+        links = Arrays.copyOf(links, capacity);
+    }
+}
@@ -0,0 +1,151 @@
+package org.example.service.ann;
+
+import org.example.service.match.DocumentLines;
+import org.example.service.match.TemplateMatrix;
+import org.example.service.match.TemplateSnapshot;
+import org.example.service.score.DocumentScoring;
+import org.example.service.score.ScoringBackend;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HnswScoringBackend — наближене порівняння через один HNSW-індекс над фрагментами всіх шаблонів.
+ * <p>
+ * Замість порівняння кожного рядка з кожним фрагментом кожного шаблону виконується один
+ * top-k запит на рядок документа. Знайдені фрагменти розподіляються за шаблонами, і для кожного
+ * шаблону найкращим збігом рядка вважається найкращий знайдений фрагмент цього шаблону.
+ * Шаблон, фрагменти якого не потрапили в top-k для рядка, не отримує збігу з цим рядком.
+ * <p>
+ * Індекс будується один раз на знімок шаблонів (під час публікації знімка).
+ * Налаштування: {@code matcher.ann.m}, {@code matcher.ann.ef-construction},
+ * {@code matcher.ann.ef-search}, {@code matcher.ann.top-k}.
+ */
+@Component
+@ConditionalOnProperty(name = "matcher.scoring.backend", havingValue = "hnsw")
+public class HnswScoringBackend implements ScoringBackend {
+
+    private static final Logger logger = LoggerFactory.getLogger(HnswScoringBackend.class);
+
+    private static final String ATTACHMENT = "hnsw-index";
+
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    private final int topK;
+
+    /**
+     * Індекс знімка з відповідністю вузол → (шаблон, рядок матриці)
+     */
+    private static final class SnapshotIndex {
+        private final HnswIndex index;
+        private final Map<String, Integer> templateOrdinal = new HashMap<>();
+        private final int[] nodeTemplate;
+        private final int[] nodeRow;
+
+        SnapshotIndex(HnswIndex index, int totalRows) {
+            this.index = index;
+            this.nodeTemplate = new int[totalRows];
+            this.nodeRow = new int[totalRows];
+        }
+    }
+
+    public HnswScoringBackend(@Value("${matcher.ann.m:16}") int m,
+                              @Value("${matcher.ann.ef-construction:200}") int efConstruction,
+                              @Value("${matcher.ann.ef-search:128}") int efSearch,
+                              @Value("${matcher.ann.top-k:64}") int topK) {
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.topK = topK;
+    }
+
+    @Override
+    public String name() {
+        return "hnsw(m=" + m + ", efSearch=" + efSearch + ", k=" + topK + ")";
+    }
+
+    @Override
+    public void prepare(TemplateSnapshot snapshot) {
+        snapshot.attachment(ATTACHMENT, this::build);
+    }
+
+    @Override
+    public DocumentScoring begin(TemplateSnapshot snapshot, DocumentLines lines) {
+        SnapshotIndex snapshotIndex = snapshot.attachment(ATTACHMENT, this::build);
+        int lineCount = lines.size();
+        int dimension = lines.getDimension();
+
+        // Найкращий знайдений фрагмент кожного шаблону для кожного рядка документа
+        Map<Integer, int[]> rowsByTemplate = new HashMap<>();
+        Map<Integer, float[]> scoresByTemplate = new HashMap<>();
+
+        for (int line = 0; line < lineCount; line++) {
+            List<HnswIndex.Hit> hits = snapshotIndex.index.search(lines.getVectors(), line * dimension, topK, efSearch);
+            for (HnswIndex.Hit hit : hits) {
+                int template = snapshotIndex.nodeTemplate[hit.node()];
+                int row = snapshotIndex.nodeRow[hit.node()];
+                int[] rows = rowsByTemplate.computeIfAbsent(template, t -> filled(lineCount));
+                float[] scores = scoresByTemplate.computeIfAbsent(template, t -> negativeInfinity(lineCount));
+                // При рівній схожості перемагає менший рядок — як у точному переборі
+                if (hit.score() > scores[line] || (hit.score() == scores[line] && row < rows[line])) {
+                    scores[line] = hit.score();
+                    rows[line] = row;
+                }
+            }
+        }
+
+        return (template, bestRow, bestScore) -> {
+            Integer ordinal = snapshotIndex.templateOrdinal.get(template.getName());
+            int[] rows = ordinal == null ? null : rowsByTemplate.get(ordinal);
+            if (rows == null) {
+                Arrays.fill(bestRow, 0, lineCount, -1);
+                Arrays.fill(bestScore, 0, lineCount, Float.NEGATIVE_INFINITY);
+                return;
+            }
+            System.arraycopy(rows, 0, bestRow, 0, lineCount);
+            System.arraycopy(scoresByTemplate.get(ordinal), 0, bestScore, 0, lineCount);
+        };
+    }
+
+    private SnapshotIndex build(TemplateSnapshot snapshot) {
+        long start = System.nanoTime();
+        int dimension = snapshot.getTemplates().values().stream()
+                .mapToInt(TemplateMatrix::getDimension).max().orElse(0);
+        SnapshotIndex snapshotIndex = new SnapshotIndex(
+                new HnswIndex(dimension, m, efConstruction, snapshot.getVersion()), snapshot.getTotalRows());
+
+        int ordinal = 0;
+        for (TemplateMatrix template : snapshot.getTemplates().values()) {
+            snapshotIndex.templateOrdinal.put(template.getName(), ordinal);
+            int first = snapshotIndex.index.addAll(template.getVectors(), template.getRows());
+            for (int row = 0; row < template.getRows(); row++) {
+                snapshotIndex.nodeTemplate[first + row] = ordinal;
+                snapshotIndex.nodeRow[first + row] = row;
+            }
+            ordinal++;
+        }
+        logger.info("HNSW-індекс знімка v{} побудовано: {} фрагментів, {} мс",
+                snapshot.getVersion(), snapshotIndex.index.size(), (System.nanoTime() - start) / 1_000_000);
+        return snapshotIndex;
+    }
+
+    private static int[] filled(int length) {
+        int[] array = new int[length];
+        Arrays.fill(array, -1);
+        return array;
+    }
+
+    private static float[] negativeInfinity(int length) {
+        float[] array = new float[length];
+        Arrays.fill(array, Float.NEGATIVE_INFINITY);
+        return array;
+    }
+}
@@ -0,0 +1,122 @@
+package org.example.service.match;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * DocumentLineReader — потокове читання рядків документа з обмеженою пам'яттю.
+ * <p>
+ * Формати:
+ * - {@link Format#TEXT} — звичайний текст, рядок за рядком ({@code text/plain})
+ * - {@link Format#NDJSON} — один JSON на рядок: рядок-значення {@code "..."} або об'єкт з полем
+ *   {@code text} (NDJSON, {@code application/x-ndjson})
+ * <p>
+ * Рядок довший за {@code maxLineChars} обрізається (решта до кінця рядка пропускається), тож
+ * пам'ять читача не залежить ні від розміру документа, ні від довжини окремого рядка
+ * (обрізаний NDJSON-рядок стає некоректним JSON і відхиляється як помилка формату).
+ * Повертаються вже очищені ({@link DocumentLines#cleanLine}) непорожні рядки.
+ */
+public class DocumentLineReader {
+
+    /**
+     * Формат вхідного потоку
+     */
+    public enum Format {
+        TEXT,
+        NDJSON
+    }
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final Reader reader;
+    private final Format format;
+    private final int maxLineChars;
+    private final char[] buffer = new char[8192];
+    private final StringBuilder line = new StringBuilder();
+
+    private int position;
+    private int limit;
+    private boolean finished;
+
+    /**
+     * Кількість прочитаних символів (для журналу)
+     */
+    private long charsRead;
+
+    /**
+     * Кількість обрізаних довгих рядків
+     */
+    private long truncatedLines;
+
+    public DocumentLineReader(Reader reader, Format format, int maxLineChars) {
+        this.reader = reader;
+        this.format = format;
+        this.maxLineChars = Math.max(1, maxLineChars);
+    }
+
+    /**
+     * @return наступний очищений непорожній рядок або null, якщо потік закінчився
+     * @throws IOException якщо не вдалося прочитати потік або NDJSON-рядок некоректний
+     */
+    public String next() throws IOException {
+        String raw;
+        while ((raw = nextRaw()) != null) {
+            String text = format == Format.NDJSON ? fromJson(raw) : raw;
+            if (text == null) continue;
+            String cleaned = DocumentLines.cleanLine(text);
+            if (!cleaned.isEmpty()) return cleaned;
+        }
+        return null;
+    }
+
+    public long getCharsRead() {
+        return charsRead;
+    }
+
+    public long getTruncatedLines() {
+        return truncatedLines;
+    }
+
+    /**
+     * Читає рядок до {@code \n}, зберігаючи не більше {@code maxLineChars} символів.
+     */
+    private String nextRaw() throws IOException {
+        if (finished) return null;
+        line.setLength(0);
+        boolean truncated = false;
+        while (true) {
+            if (position == limit) {
+                limit = reader.read(buffer);
+                position = 0;
+                if (limit <= 0) {
+                    finished = true;
+                    limit = 0;
+                    return line.length() > 0 || truncated ? line.toString() : null;
+                }
+                charsRead += limit;
+            }
+            char c = buffer[position++];
+            if (c == '\n') {
+                return line.toString();
+            }
+            if (c == '\r') continue;
+            if (line.length() < maxLineChars) {
+                line.append(c);
+            } else if (!truncated) {
+                truncated = true;
+                truncatedLines++;
+            }
+        }
+    }
+
+    private static String fromJson(String raw) throws IOException {
+        if (raw.isBlank()) return null;
+        JsonNode node = mapper.readTree(raw);
+        if (node.isTextual()) return node.asText();
+        JsonNode text = node.get("text");
+        return text == null || text.isNull() ? null : text.asText();
+    }
+}
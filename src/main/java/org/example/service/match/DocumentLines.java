@@ -0,0 +1,137 @@
+package org.example.service.match;
+
+import lombok.Getter;
+import org.example.loader.EmbeddingBatcher;
+import org.example.loader.LineEmbeddingCache;
+import org.example.untils.TextSimilarityUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * DocumentLines — рядки документа, підготовлені для порівняння з шаблонами.
+ * <p>
+ * Підготовка виконується один раз на документ (а не для кожного шаблону):
+ * - рядки очищуються від зайвих пробілів
+ * - порожні рядки відкидаються
+ * - повторювані рядки згортаються (зберігається порядок першої появи)
+ * - embedding обчислюється один раз для кожного унікального рядка: з кешу {@link LineEmbeddingCache},
+ *   промахи — через спільний {@link EmbeddingBatcher}
+ * <p>
+ * Згортання дублікатів не змінює результат: повторний рядок дає той самий найкращий ключ,
+ * а ключ, уже зайнятий першою появою рядка, повторно не призначається.
+ */
+@Getter
+public class DocumentLines {
+
+    /**
+     * Унікальні очищені рядки документа в порядку першої появи
+     */
+    private final List<String> lines;
+
+    /**
+     * Embedding-вектори рядків (індекс збігається з {@link #lines})
+     */
+    private final List<float[]> embeddings;
+
+    /**
+     * Розмірність embedding-векторів
+     */
+    private final int dimension;
+
+    /**
+     * Нормалізовані embedding-и рядків в одному суцільному масиві (row-major),
+     * для порівняння зі {@link TemplateMatrix} через скалярний добуток
+     */
+    private final float[] vectors;
+
+    private DocumentLines(List<String> lines, List<float[]> embeddings) {
+        this.lines = lines;
+        this.embeddings = embeddings;
+        this.dimension = embeddings.isEmpty() ? 0 : embeddings.get(0).length;
+        this.vectors = new float[embeddings.size() * dimension];
+        for (int i = 0; i < embeddings.size(); i++) {
+            TextSimilarityUtils.normalizeInto(embeddings.get(i), vectors, i * dimension);
+        }
+    }
+
+    /**
+     * Створює підготовлені рядки з уже обчислених embedding-ів.
+     *
+     * @param lines      унікальні очищені рядки
+     * @param embeddings embedding-и рядків (індекс збігається з {@code lines})
+     * @return підготовлені рядки
+     */
+    public static DocumentLines of(List<String> lines, List<float[]> embeddings) {
+        return new DocumentLines(lines, embeddings);
+    }
+
+    /**
+     * Очищує рядки документа, відкидає порожні та згортає дублікати.
+     *
+     * @param rawLines сирі рядки документа
+     * @return унікальні очищені рядки в порядку першої появи
+     */
+    public static List<String> clean(List<String> rawLines) {
+        Set<String> unique = new LinkedHashSet<>();
+        for (String line : rawLines) {
+            String cleaned = cleanLine(line);
+            if (!cleaned.isEmpty()) {
+                unique.add(cleaned);
+            }
+        }
+        return new ArrayList<>(unique);
+    }
+
+    /**
+     * Очищує один рядок: згортає пробільні символи та обрізає краї.
+     *
+     * @param line сирий рядок
+     * @return очищений рядок (порожній, якщо рядок складався лише з пробілів)
+     */
+    public static String cleanLine(String line) {
+        return line.replaceAll("\\s+", " ").trim();
+    }
+
+    /**
+     * Готує рядки документа; embedding-и повторюваних між документами рядків беруться з кешу.
+     *
+     * @param rawLines сирі рядки документа
+     * @param cache    кеш embedding-ів рядків
+     * @return підготовлені рядки з embedding-ами
+     * @throws ExecutionException   якщо виникла помилка в моделі
+     * @throws InterruptedException якщо потік перервано під час очікування
+     */
+    public static DocumentLines prepare(List<String> rawLines, LineEmbeddingCache cache) throws ExecutionException, InterruptedException {
+        List<String> cleaned = clean(rawLines);
+        return new DocumentLines(cleaned, cache.embedAll(cleaned));
+    }
+
+    /**
+     * Готує рядки документа з обмеженням часу очікування на модель (для синхронних запитів).
+     *
+     * @param rawLines     сирі рядки документа
+     * @param cache        кеш embedding-ів рядків
+     * @param timeoutNanos найбільший час очікування
+     * @return підготовлені рядки з embedding-ами
+     * @throws TimeoutException     якщо embedding-и не обчислено вчасно
+     * @throws ExecutionException   якщо виникла помилка в моделі
+     * @throws InterruptedException якщо потік перервано під час очікування
+     */
+    public static DocumentLines prepare(List<String> rawLines, LineEmbeddingCache cache, long timeoutNanos)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        List<String> cleaned = clean(rawLines);
+        return new DocumentLines(cleaned, cache.embedAll(cleaned, timeoutNanos));
+    }
+
+    /**
+     * @return кількість унікальних рядків документа
+     */
+    public int size() {
+        return lines.size();
+    }
+}
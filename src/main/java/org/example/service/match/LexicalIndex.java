@@ -0,0 +1,134 @@
+package org.example.service.match;
+
+import org.example.untils.TextSimilarityUtils;
+
+import java.util.*;
+
+/**
+ * LexicalIndex — інвертований індекс основ слів (стемів) фрагментів шаблонів.
+ * <p>
+ * Кожен шаблон розглядається як один "документ" з усіх його фрагментів; слова розбиваються
+ * та нормалізуються через {@link TextSimilarityUtils#tokenize}. Для документа, що аналізується,
+ * шаблони ранжуються за BM25 — це дешевий перший етап перед порівнянням embedding-ів.
+ * <p>
+ * Індекс будується один раз на знімок шаблонів і прикріплюється до нього ({@link #of}).
+ */
+public class LexicalIndex {
+
+    private static final String ATTACHMENT = "lexical-index";
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    /**
+     * Оцінка шаблону
+     */
+    public record Candidate(String template, double score) {
+    }
+
+    private final String[] templateNames;
+
+    /**
+     * Кількість слів у кожному шаблоні
+     */
+    private final int[] lengths;
+
+    private final double averageLength;
+
+    /**
+     * Основа слова → (номер шаблону → кількість фрагментів шаблону з цією основою)
+     */
+    private final Map<String, Map<Integer, Integer>> postings = new HashMap<>();
+
+    private LexicalIndex(TemplateSnapshot snapshot) {
+        templateNames = snapshot.getTemplates().keySet().toArray(new String[0]);
+        lengths = new int[templateNames.length];
+        long total = 0;
+        for (int t = 0; t < templateNames.length; t++) {
+            TemplateMatrix template = snapshot.getTemplates().get(templateNames[t]);
+            for (List<String> fragments : template.getFragments().values()) {
+                for (String fragment : fragments) {
+                    for (String stem : TextSimilarityUtils.tokenize(fragment)) {
+                        postings.computeIfAbsent(stem, s -> new HashMap<>()).merge(t, 1, Integer::sum);
+                        lengths[t]++;
+                    }
+                }
+            }
+            total += lengths[t];
+        }
+        averageLength = templateNames.length == 0 ? 0 : Math.max(1.0, (double) total / templateNames.length);
+    }
+
+    /**
+     * Повертає індекс знімка (будує його при першому зверненні).
+     *
+     * @param snapshot знімок шаблонів
+     * @return індекс
+     */
+    public static LexicalIndex of(TemplateSnapshot snapshot) {
+        return snapshot.attachment(ATTACHMENT, LexicalIndex::new);
+    }
+
+    /**
+     * Частка основ документа, відомих шаблонам {@code templates}, серед основ, відомих хоча б одному шаблону.
+     * 1.0 — обрані шаблони покривають усю "шаблонну" лексику документа.
+     *
+     * @param stems     основи слів документа
+     * @param templates назви обраних шаблонів
+     * @return покриття від 0 до 1 (1, якщо документ не має жодної відомої основи)
+     */
+    public double coverage(Set<String> stems, Collection<String> templates) {
+        Set<Integer> selected = new HashSet<>();
+        for (int t = 0; t < templateNames.length; t++) {
+            if (templates.contains(templateNames[t])) selected.add(t);
+        }
+        int known = 0;
+        int covered = 0;
+        for (String stem : stems) {
+            Map<Integer, Integer> posting = postings.get(stem);
+            if (posting == null) continue;
+            known++;
+            if (!Collections.disjoint(posting.keySet(), selected)) covered++;
+        }
+        return known == 0 ? 1.0 : (double) covered / known;
+    }
+
+    /**
+     * Ранжує всі шаблони за BM25 для набору основ документа.
+     *
+     * @param stems основи слів документа
+     * @return усі шаблони від найбільш схожого; шаблони без спільних слів мають оцінку 0
+     */
+    public List<Candidate> rank(Set<String> stems) {
+        double[] scores = new double[templateNames.length];
+        int n = templateNames.length;
+        for (String stem : stems) {
+            Map<Integer, Integer> posting = postings.get(stem);
+            if (posting == null) continue;
+            double idf = Math.log(1 + (n - posting.size() + 0.5) / (posting.size() + 0.5));
+            for (var e : posting.entrySet()) {
+                int t = e.getKey();
+                double tf = e.getValue();
+                scores[t] += idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * lengths[t] / averageLength));
+            }
+        }
+        List<Candidate> ranked = new ArrayList<>(n);
+        for (int t = 0; t < n; t++) {
+            ranked.add(new Candidate(templateNames[t], scores[t]));
+        }
+        ranked.sort(Comparator.comparingDouble(Candidate::score).reversed());
+        return ranked;
+    }
+
+    /**
+     * @param lines рядки документа
+     * @return основи слів усіх рядків документа
+     */
+    public static Set<String> stems(List<String> lines) {
+        Set<String> stems = new HashSet<>();
+        for (String line : lines) {
+            stems.addAll(TextSimilarityUtils.tokenize(line));
+        }
+        return stems;
+    }
+}
@@ -0,0 +1,76 @@
+package org.example.service.match;
+
+import lombok.Getter;
+import org.example.untils.TextSimilarityUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * TemplateMatch — результат порівняння документа з одним шаблоном.
+ * <p>
+ * Рядки документа перебираються по порядку; рядок призначається ключу шаблону,
+ * якщо схожість перевищує поріг і цей ключ ще не зайнятий попереднім рядком.
+ */
+@Getter
+public class TemplateMatch {
+
+    /**
+     * Знайдені відповідності: ключ шаблону → рядок документа
+     */
+    private final Map<String, String> result = new LinkedHashMap<>();
+
+    /**
+     * Детальні результати для кожного призначеного рядка
+     */
+    private final List<MatchResult> matchResults = new ArrayList<>();
+
+    /**
+     * Сума схожостей призначених рядків
+     */
+    private double totalScore;
+
+    /**
+     * Призначає рядок документа ключу шаблону, якщо схожість вища за поріг і ключ вільний.
+     *
+     * @param template  шаблон
+     * @param line      очищений рядок документа
+     * @param bestRow   найкращий рядок матриці шаблону (-1, якщо немає)
+     * @param bestScore схожість найкращого рядка
+     * @param threshold поріг схожості
+     * @return true, якщо рядок призначено
+     */
+    public boolean accept(TemplateMatrix template, String line, int bestRow, double bestScore, double threshold) {
+        if (bestRow < 0 || bestScore <= threshold) return false;
+        String bestKey = template.key(bestRow);
+        if (result.containsKey(bestKey)) return false;
+
+        String bestFragment = template.fragment(bestRow);
+        List<String> indicators = TextSimilarityUtils.extractCommonIndicators(line, bestFragment);
+        matchResults.add(new MatchResult(line, bestKey, bestFragment, bestScore, indicators));
+        result.put(bestKey, line);
+        totalScore += bestScore;
+        return true;
+    }
+
+    /**
+     * Будує результат для шаблону з найкращих збігів усіх рядків документа.
+     *
+     * @param template   шаблон
+     * @param lines      рядки документа
+     * @param bestRows   найкращий рядок матриці шаблону для кожного рядка документа
+     * @param bestScores схожість найкращого рядка для кожного рядка документа
+     * @param threshold  поріг схожості
+     * @return результат порівняння з шаблоном
+     */
+    public static TemplateMatch assemble(TemplateMatrix template, List<String> lines,
+                                         int[] bestRows, float[] bestScores, double threshold) {
+        TemplateMatch match = new TemplateMatch();
+        for (int i = 0; i < lines.size(); i++) {
+            match.accept(template, lines.get(i), bestRows[i], bestScores[i], threshold);
+        }
+        return match;
+    }
+}
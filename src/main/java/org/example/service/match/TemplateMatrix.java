@@ -0,0 +1,237 @@
+package org.example.service.match;
+
+import lombok.Getter;
+import org.example.untils.CachedTemplate;
+import org.example.untils.TextSimilarityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * TemplateMatrix — скомпільований шаблон для швидкого порівняння.
+ * <p>
+ * Усі embedding-вектори фрагментів шаблону зберігаються в одному суцільному масиві
+ * {@code float[]} (рядок за рядком, row-major), попередньо нормалізованими за L2-нормою.
+ * Тому cosine similarity зводиться до скалярного добутку без повторного обчислення норм.
+ * <p>
+ * Паралельні масиви {@link #rowKey} та {@link #rowFragment} зіставляють рядок матриці
+ * з ключем шаблону та індексом фрагмента в межах цього ключа.
+ * <p>
+ * Квантована матриця ({@link #quantize()}) тримає в купі замість float-векторів лише int8-коди
+ * ({@link QuantizedMatrix}) — вчетверо менше пам'яті для бекенду {@code int8}. Float-вектори для точного
+ * перерахунку кандидатів лишаються доступними через {@link #floatRows}: зазвичай це блок векторів
+ * відображеного в пам'ять файлу знімка ({@link TemplateSnapshotFile}), тобто поза купою.
+ */
+@Getter
+public class TemplateMatrix {
+
+    private static final Logger logger = LoggerFactory.getLogger(TemplateMatrix.class);
+
+    /**
+     * Назва шаблону
+     */
+    private final String name;
+
+    /**
+     * Розмірність embedding-векторів
+     */
+    private final int dimension;
+
+    /**
+     * Кількість рядків (фрагментів) у матриці
+     */
+    private final int rows;
+
+    /**
+     * Нормалізовані вектори фрагментів: рядок {@code r} займає {@code [r * dimension, (r + 1) * dimension)};
+     * null, якщо матрицю квантовано
+     */
+    private final float[] vectors;
+
+    /**
+     * Int8-коди векторів (лише для квантованої матриці, інакше null)
+     */
+    private final QuantizedMatrix quantized;
+
+    /**
+     * Нормалізовані float-вектори квантованої матриці (row-major, абсолютні індекси) — для точного перерахунку;
+     * null для неквантованої матриці
+     */
+    private final FloatBuffer floatRows;
+
+    /**
+     * Ключі шаблону (наприклад, "title", "orders_1")
+     */
+    private final String[] keys;
+
+    /**
+     * Індекс ключа в {@link #keys} для кожного рядка матриці
+     */
+    private final int[] rowKey;
+
+    /**
+     * Індекс фрагмента в списку {@link #fragments} відповідного ключа для кожного рядка матриці
+     */
+    private final int[] rowFragment;
+
+    /**
+     * Фрагменти шаблону (без порожніх), вирівняні з embedding-ами
+     */
+    private final Map<String, List<String>> fragments;
+
+    /**
+     * Кількість ключів, що мають хоча б один фрагмент у матриці — найбільша можлива кількість
+     * призначених рядків, а отже й верхня межа загального балу шаблону
+     */
+    private final int matchableKeys;
+
+    public TemplateMatrix(String name, int dimension, float[] vectors, String[] keys,
+                          int[] rowKey, int[] rowFragment, Map<String, List<String>> fragments) {
+        this(name, dimension, vectors, null, null, keys, rowKey, rowFragment, fragments);
+    }
+
+    private TemplateMatrix(String name, int dimension, float[] vectors, QuantizedMatrix quantized, FloatBuffer floatRows,
+                           String[] keys, int[] rowKey, int[] rowFragment, Map<String, List<String>> fragments) {
+        this.name = name;
+        this.dimension = dimension;
+        this.rows = rowKey.length;
+        this.vectors = vectors;
+        this.quantized = quantized;
+        this.floatRows = floatRows;
+        this.keys = keys;
+        this.rowKey = rowKey;
+        this.rowFragment = rowFragment;
+        this.fragments = fragments;
+        this.matchableKeys = (int) Arrays.stream(rowKey).distinct().count();
+    }
+
+    /**
+     * Квантована матриця, float-вектори якої лишаються в буфері поза купою (відображений файл знімка).
+     *
+     * @param floatRows нормалізовані вектори (row-major, {@code rows * dimension} елементів від індексу 0)
+     */
+    public static TemplateMatrix quantized(String name, int dimension, FloatBuffer floatRows, String[] keys,
+                                           int[] rowKey, int[] rowFragment, Map<String, List<String>> fragments) {
+        return new TemplateMatrix(name, dimension, null, QuantizedMatrix.quantize(floatRows, rowKey.length, dimension),
+                floatRows, keys, rowKey, rowFragment, fragments);
+    }
+
+    /**
+     * Повертає ту саму матрицю з int8-кодами замість float-векторів. Матриця, що не має відображених
+     * векторів, зберігає для перерахунку власний масив (у купі) — так буває лише для шаблонів,
+     * доданих поза файлом знімка.
+     *
+     * @return квантована матриця (або ця, якщо її вже квантовано)
+     */
+    public TemplateMatrix quantize() {
+        if (quantized != null) return this;
+        return new TemplateMatrix(name, dimension, null, QuantizedMatrix.quantize(vectors, rows, dimension),
+                FloatBuffer.wrap(vectors), keys, rowKey, rowFragment, fragments);
+    }
+
+    /**
+     * @return true, якщо матриця тримає лише int8-коди
+     */
+    public boolean isQuantized() {
+        return quantized != null;
+    }
+
+    /**
+     * Компілює шаблон у суцільну нормалізовану матрицю.
+     * <p>
+     * Раніше список фрагментів містив і порожні результати розбиття тексту, а embedding-и
+     * обчислювались лише для непорожніх — через це {@code fragments.get(i)} міг повертати
+     * не те речення. Тут фрагменти вирівнюються з embedding-ами: порожні відкидаються.
+     *
+     * @param name     назва шаблону
+     * @param template шаблон з фрагментами та embedding-ами
+     * @return скомпільована матриця
+     */
+    public static TemplateMatrix compile(String name, CachedTemplate template) {
+        Map<String, List<float[]>> embeddings = template.getEmbeddings();
+        Map<String, List<String>> rawFragments = template.getFragments();
+
+        Map<String, List<String>> aligned = new LinkedHashMap<>();
+        List<String> keys = new ArrayList<>();
+        List<float[]> rowVectors = new ArrayList<>();
+        List<int[]> rowIndex = new ArrayList<>();
+        int dimension = 0;
+
+        for (var e : embeddings.entrySet()) {
+            String key = e.getKey();
+            List<float[]> keyEmbeddings = e.getValue();
+            List<String> keyFragments = alignFragments(rawFragments.get(key));
+
+            if (keyFragments.size() != keyEmbeddings.size()) {
+                logger.warn("Шаблон '{}', ключ '{}': {} фрагментів, але {} embedding-ів",
+                        name, key, keyFragments.size(), keyEmbeddings.size());
+            }
+
+            int count = Math.min(keyFragments.size(), keyEmbeddings.size());
+            int keyIndex = keys.size();
+            keys.add(key);
+            aligned.put(key, new ArrayList<>(keyFragments.subList(0, count)));
+
+            for (int i = 0; i < count; i++) {
+                float[] vector = keyEmbeddings.get(i);
+                dimension = vector.length;
+                rowVectors.add(vector);
+                rowIndex.add(new int[]{keyIndex, i});
+            }
+        }
+
+        // Ключі без embedding-ів зберігаємо у фрагментах, щоб не втратити структуру шаблону
+        if (rawFragments != null) {
+            rawFragments.forEach((key, list) -> aligned.putIfAbsent(key, alignFragments(list)));
+        }
+
+        int rows = rowVectors.size();
+        float[] vectors = new float[rows * dimension];
+        int[] rowKey = new int[rows];
+        int[] rowFragment = new int[rows];
+        for (int r = 0; r < rows; r++) {
+            TextSimilarityUtils.normalizeInto(rowVectors.get(r), vectors, r * dimension);
+            rowKey[r] = rowIndex.get(r)[0];
+            rowFragment[r] = rowIndex.get(r)[1];
+        }
+
+        return new TemplateMatrix(name, dimension, vectors, keys.toArray(new String[0]), rowKey, rowFragment, aligned);
+    }
+
+    /**
+     * Залишає лише непорожні фрагменти (обрізані від пробілів) — саме для них обчислюються embedding-и.
+     */
+    private static List<String> alignFragments(List<String> fragments) {
+        List<String> result = new ArrayList<>();
+        if (fragments == null) return result;
+        for (String fragment : fragments) {
+            String trimmed = fragment.trim();
+            if (!trimmed.isEmpty()) {
+                result.add(trimmed);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param row рядок матриці
+     * @return ключ шаблону, до якого належить рядок
+     */
+    public String key(int row) {
+        return keys[rowKey[row]];
+    }
+
+    /**
+     * @param row рядок матриці
+     * @return текст фрагмента, якому відповідає рядок
+     */
+    public String fragment(int row) {
+        return fragments.get(key(row)).get(rowFragment[row]);
+    }
+}
@@ -0,0 +1,115 @@
+package org.example.service.match;
+
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * TemplateSnapshot — незмінний набір скомпільованих шаблонів, з яким працює аналіз документа.
+ * <p>
+ * До знімка можна прикріпити допоміжні структури (наприклад, матриці шаблонів у нативній пам'яті
+ * DJL), які створюються один раз і звільняються разом зі знімком.
+ * <p>
+ * Час життя керується лічильником посилань без блокувань: сервіс кешу тримає одне посилання,
+ * кожен аналіз документа бере ще одне через {@link #tryAcquire()} і повертає через {@link #release()}.
+ * Коли знімок замінено новим і всі аналізи завершились, прикріплені ресурси закриваються.
+ */
+public class TemplateSnapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger(TemplateSnapshot.class);
+
+    /**
+     * Номер версії знімка (зростає з кожною публікацією)
+     */
+    @Getter
+    private final long version;
+
+    /**
+     * Шаблони: назва → скомпільована матриця (порядок перебору фіксований)
+     */
+    @Getter
+    private final Map<String, TemplateMatrix> templates;
+
+    /**
+     * Загальна кількість фрагментів у всіх шаблонах
+     */
+    @Getter
+    private final int totalRows;
+
+    /**
+     * Допоміжні структури, прикріплені до знімка
+     */
+    private final Map<String, Object> attachments = new ConcurrentHashMap<>();
+
+    /**
+     * Лічильник посилань; 0 — знімок закрито
+     */
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    public TemplateSnapshot(long version, Map<String, TemplateMatrix> templates) {
+        this.version = version;
+        this.templates = Collections.unmodifiableMap(new LinkedHashMap<>(templates));
+        this.totalRows = templates.values().stream().mapToInt(TemplateMatrix::getRows).sum();
+    }
+
+    /**
+     * @return кількість шаблонів у знімку
+     */
+    public int size() {
+        return templates.size();
+    }
+
+    /**
+     * Бере посилання на знімок.
+     *
+     * @return false, якщо знімок уже закрито (треба взяти актуальний)
+     */
+    public boolean tryAcquire() {
+        int current;
+        do {
+            current = references.get();
+            if (current <= 0) return false;
+        } while (!references.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * Повертає посилання. Останнє посилання закриває прикріплені ресурси.
+     */
+    public void release() {
+        if (references.decrementAndGet() == 0) {
+            attachments.values().forEach(this::closeAttachment);
+            attachments.clear();
+        }
+    }
+
+    /**
+     * Повертає прикріплену структуру або створює її при першому зверненні.
+     * Якщо структура реалізує {@link AutoCloseable}, її буде закрито разом зі знімком.
+     *
+     * @param key     ключ структури
+     * @param factory фабрика структури
+     * @return прикріплена структура
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T attachment(String key, Function<TemplateSnapshot, T> factory) {
+        return (T) attachments.computeIfAbsent(key, k -> factory.apply(this));
+    }
+
+    private void closeAttachment(Object attachment) {
+        if (attachment instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                logger.warn("Не вдалося закрити ресурс знімка шаблонів v{}: {}", version, e.getMessage());
+            }
+        }
+    }
+}
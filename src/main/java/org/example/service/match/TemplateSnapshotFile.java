@@ -0,0 +1,219 @@
+package org.example.service.match;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * TemplateSnapshotFile — локальний файл зі скомпільованими матрицями шаблонів.
+ * <p>
+ * Файл читається через {@link FileChannel#map}: метадані (ключі, фрагменти, індекси рядків)
+ * розбираються з відображеної пам'яті, а вектори копіюються в {@code float[]} одним блоком —
+ * без JSON, без нормалізації та без звернень до Redis. Для бекенду, що тримає шаблони як int8-коди,
+ * вектори не копіюються: матриці посилаються на блок векторів відображеного файлу.
+ * <p>
+ * Структура (усі числа little-endian):
+ * <pre>
+ * magic "TSNP" | версія (int) | назва моделі | хеш вмісту шаблонів | початок блоку векторів (long)
+ * кількість шаблонів (int), для кожного:
+ *   назва | розмірність | кількість рядків | ключі | rowKey[] | rowFragment[] | фрагменти | зсув векторів (long)
+ * блок векторів (вирівняний на 64 байти)
+ * </pre>
+ * Рядки кодуються як довжина в байтах (int) + UTF-8.
+ */
+public final class TemplateSnapshotFile {
+
+    private static final int MAGIC = 0x504E5354; // "TSNP" у little-endian
+    private static final int VERSION = 1;
+    private static final int ALIGNMENT = 64;
+
+    /**
+     * Вміст файлу: заголовок і скомпільовані шаблони (у порядку запису)
+     */
+    public record Contents(String modelName, String contentHash, Map<String, TemplateMatrix> templates) {
+    }
+
+    private TemplateSnapshotFile() {
+    }
+
+    /**
+     * Записує шаблони у файл (через тимчасовий файл і атомарне перейменування).
+     *
+     * @param file        шлях до файлу
+     * @param modelName   назва моделі
+     * @param contentHash хеш вмісту шаблонів
+     * @param templates   скомпільовані шаблони
+     */
+    public static void write(Path file, String modelName, String contentHash,
+                             Map<String, TemplateMatrix> templates) throws IOException {
+        Metadata metadata = new Metadata();
+        metadata.writeInt(MAGIC);
+        metadata.writeInt(VERSION);
+        metadata.writeString(modelName);
+        metadata.writeString(contentHash);
+        int dataStartPosition = metadata.size();
+        metadata.writeLong(0);
+        metadata.writeInt(templates.size());
+
+        long vectorOffset = 0;
+        for (TemplateMatrix template : templates.values()) {
+            metadata.writeString(template.getName());
+            metadata.writeInt(template.getDimension());
+            metadata.writeInt(template.getRows());
+            metadata.writeInt(template.getKeys().length);
+            for (String key : template.getKeys()) metadata.writeString(key);
+            for (int value : template.getRowKey()) metadata.writeInt(value);
+            for (int value : template.getRowFragment()) metadata.writeInt(value);
+            metadata.writeInt(template.getFragments().size());
+            for (var e : template.getFragments().entrySet()) {
+                metadata.writeString(e.getKey());
+                metadata.writeInt(e.getValue().size());
+                for (String fragment : e.getValue()) metadata.writeString(fragment);
+            }
+            metadata.writeLong(vectorOffset);
+            vectorOffset += 4L * template.getVectors().length;
+        }
+
+        long dataStart = align(metadata.size());
+        byte[] header = metadata.toByteArray();
+        ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN).putLong(dataStartPosition, dataStart);
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.wrap(header));
+            channel.position(dataStart);
+            for (TemplateMatrix template : templates.values()) {
+                ByteBuffer block = ByteBuffer.allocate(4 * template.getVectors().length).order(ByteOrder.LITTLE_ENDIAN);
+                block.asFloatBuffer().put(template.getVectors());
+                while (block.hasRemaining()) channel.write(block);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Читає шаблони з файлу.
+     *
+     * @param file шлях до файлу
+     * @return вміст файлу
+     * @throws IOException якщо файл не читається або має інший формат
+     */
+    public static Contents read(Path file) throws IOException {
+        return read(file, false);
+    }
+
+    /**
+     * Читає шаблони з файлу.
+     *
+     * @param file       шлях до файлу
+     * @param mapVectors true — повертати квантовані матриці ({@link TemplateMatrix#quantized}), float-вектори
+     *                   яких лишаються у відображеному файлі поза купою
+     * @return вміст файлу
+     * @throws IOException якщо файл не читається або має інший формат
+     */
+    public static Contents read(Path file, boolean mapVectors) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            ByteBuffer buffer = mapped.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+                throw new IOException("Невідомий формат файлу знімка: " + file);
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Непідтримувана версія файлу знімка: " + version);
+            }
+            String modelName = readString(buffer);
+            String contentHash = readString(buffer);
+            long dataStart = buffer.getLong();
+            int templateCount = buffer.getInt();
+
+            Map<String, TemplateMatrix> templates = new LinkedHashMap<>();
+            for (int t = 0; t < templateCount; t++) {
+                String name = readString(buffer);
+                int dimension = buffer.getInt();
+                int rows = buffer.getInt();
+                String[] keys = new String[buffer.getInt()];
+                for (int k = 0; k < keys.length; k++) keys[k] = readString(buffer);
+                int[] rowKey = new int[rows];
+                buffer.asIntBuffer().get(rowKey);
+                buffer.position(buffer.position() + 4 * rows);
+                int[] rowFragment = new int[rows];
+                buffer.asIntBuffer().get(rowFragment);
+                buffer.position(buffer.position() + 4 * rows);
+                int fragmentKeys = buffer.getInt();
+                Map<String, List<String>> fragments = new LinkedHashMap<>();
+                for (int k = 0; k < fragmentKeys; k++) {
+                    String key = readString(buffer);
+                    int count = buffer.getInt();
+                    List<String> list = new ArrayList<>(count);
+                    for (int f = 0; f < count; f++) list.add(readString(buffer));
+                    fragments.put(key, list);
+                }
+                long vectorOffset = buffer.getLong();
+
+                FloatBuffer block = buffer.slice(Math.toIntExact(dataStart + vectorOffset), 4 * rows * dimension)
+                        .order(ByteOrder.LITTLE_ENDIAN)
+                        .asFloatBuffer();
+                if (mapVectors) {
+                    templates.put(name, TemplateMatrix.quantized(name, dimension, block, keys, rowKey, rowFragment, fragments));
+                    continue;
+                }
+                float[] vectors = new float[rows * dimension];
+                block.get(vectors);
+                templates.put(name, new TemplateMatrix(name, dimension, vectors, keys, rowKey, rowFragment, fragments));
+            }
+            return new Contents(modelName, contentHash, templates);
+        } catch (RuntimeException e) {
+            throw new IOException("Пошкоджений файл знімка: " + file, e);
+        }
+    }
+
+    private static long align(long position) {
+        return (position + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Буфер метаданих у little-endian
+     */
+    private static final class Metadata extends ByteArrayOutputStream {
+
+        void writeInt(int value) {
+            write(value);
+            write(value >>> 8);
+            write(value >>> 16);
+            write(value >>> 24);
+        }
+
+        void writeLong(long value) {
+            writeInt((int) value);
+            writeInt((int) (value >>> 32));
+        }
+
+        void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeInt(bytes.length);
+            writeBytes(bytes);
+        }
+    }
+}
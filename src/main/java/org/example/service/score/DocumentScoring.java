@@ -0,0 +1,48 @@
+package org.example.service.score;
+
+import org.example.service.match.TemplateMatrix;
+
+/**
+ * DocumentScoring — сесія порівняння одного документа з шаблонами.
+ * <p>
+ * Тримає ресурси, пов'язані з документом (наприклад, матрицю рядків у нативній пам'яті),
+ * і звільняє їх у {@link #close()}.
+ */
+public interface DocumentScoring extends AutoCloseable {
+
+    /**
+     * Для кожного рядка документа знаходить найкращий фрагмент шаблону.
+     *
+     * @param template  шаблон зі знімка
+     * @param bestRow   результат: індекс найкращого рядка матриці шаблону (-1, якщо немає)
+     * @param bestScore результат: схожість найкращого рядка
+     */
+    void score(TemplateMatrix template, int[] bestRow, float[] bestScore);
+
+    /**
+     * @return true, якщо сесія вміє порівнювати з шаблоном окремі блоки рядків документа
+     * ({@link #score(TemplateMatrix, int, int, int[], float[])})
+     */
+    default boolean scoresLineBlocks() {
+        return false;
+    }
+
+    /**
+     * Порівнює з шаблоном лише блок рядків документа {@code [fromLine, toLine)} — щоб відкинути
+     * шаблон, який уже не може перемогти, до обчислення решти рядків.
+     * Реалізація за замовчуванням рахує всі рядки документа.
+     *
+     * @param template  шаблон зі знімка
+     * @param fromLine  перший рядок блоку (включно)
+     * @param toLine    останній рядок блоку (виключно)
+     * @param bestRow   результат: індекс найкращого рядка матриці шаблону для рядків блоку
+     * @param bestScore результат: схожість найкращого рядка для рядків блоку
+     */
+    default void score(TemplateMatrix template, int fromLine, int toLine, int[] bestRow, float[] bestScore) {
+        score(template, bestRow, bestScore);
+    }
+
+    @Override
+    default void close() {
+    }
+}
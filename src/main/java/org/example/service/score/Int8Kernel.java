@@ -0,0 +1,29 @@
+package org.example.service.score;
+
+/**
+ * Int8Kernel — наближене порівняння квантованих рядків документа з квантованими фрагментами шаблону.
+ * <p>
+ * Результат — матриця наближених схожостей {@code lineCount × rowCount}; для найкращих кандидатів
+ * схожість потім перераховується з float-векторами рядків документа.
+ */
+public interface Int8Kernel {
+
+    /**
+     * @param lines      коди рядків документа ({@code lineCount * dimension})
+     * @param lineScales масштаби рядків документа
+     * @param lineCount  кількість рядків документа
+     * @param rows       коди фрагментів шаблону ({@code rowCount * dimension})
+     * @param rowScales  масштаби фрагментів шаблону
+     * @param rowCount   кількість фрагментів шаблону
+     * @param dimension  розмірність
+     * @param out        результат: {@code out[line * rowCount + row]} — наближена схожість
+     */
+    void scores(byte[] lines, float[] lineScales, int lineCount,
+                byte[] rows, float[] rowScales, int rowCount,
+                int dimension, float[] out);
+
+    /**
+     * @return назва ядра
+     */
+    String name();
+}
@@ -0,0 +1,164 @@
+package org.example.service.score;
+
+import org.example.service.match.DocumentLines;
+import org.example.service.match.QuantizedMatrix;
+import org.example.service.match.TemplateMatrix;
+import org.example.service.match.TemplateSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Int8ScoringBackend — перебір по int8-квантованих фрагментах з перерахунком кандидатів.
+ * <p>
+ * Знімок тримає в купі лише int8-коди шаблонів ({@link TemplateMatrix#quantize()}) — чверть пам'яті float.
+ * Float-вектори фрагментів лишаються у відображеному в пам'ять файлі знімка ({@link TemplateMatrix#getFloatRows()}).
+ * <p>
+ * Для кожного рядка документа по int8-кодах обох сторін обираються {@code matcher.int8.rescore}
+ * найкращих кандидатів, після чого їхня схожість перераховується точно — тим самим ядром
+ * {@link SimilarityKernels#best()} по float-векторах рядка і фрагментів, що й у бекенді {@code java}.
+ * Тож {@code similarityScore} збігається з бекендом {@code java}, якщо найкращий фрагмент потрапив
+ * у кандидати; квантування впливає лише на відбір кандидатів.
+ */
+@Component
+@ConditionalOnProperty(name = "matcher.scoring.backend", havingValue = "int8")
+public class Int8ScoringBackend implements ScoringBackend {
+
+    private static final Logger logger = LoggerFactory.getLogger(Int8ScoringBackend.class);
+
+    private final Int8Kernel kernel = SimilarityKernels.bestInt8();
+
+    /**
+     * Ядро точного перерахунку кандидатів (те саме, що в {@link JavaScoringBackend})
+     */
+    private final SimilarityKernel exactKernel = SimilarityKernels.best();
+
+    private final int rescoreCandidates;
+
+    public Int8ScoringBackend(@Value("${matcher.int8.rescore:4}") int rescoreCandidates) {
+        this.rescoreCandidates = Math.max(1, rescoreCandidates);
+    }
+
+    @Override
+    public String name() {
+        return kernel.name() + "(rescore=" + rescoreCandidates + ")";
+    }
+
+    @Override
+    public TemplateMatrix store(TemplateMatrix template) {
+        return template.quantize();
+    }
+
+    @Override
+    public boolean mapsTemplateVectors() {
+        return true;
+    }
+
+    @Override
+    public void prepare(TemplateSnapshot snapshot) {
+        long bytes = 0;
+        long floatBytes = 0;
+        for (TemplateMatrix template : snapshot.getTemplates().values()) {
+            if (template.isQuantized()) {
+                bytes += template.getQuantized().sizeInBytes();
+                floatBytes += 4L * template.getRows() * template.getDimension();
+            }
+        }
+        logger.info("Int8-матриці знімка v{}: {} КБ у купі замість {} КБ float (float-вектори — у файлі знімка)",
+                snapshot.getVersion(), bytes / 1024, floatBytes / 1024);
+    }
+
+    @Override
+    public DocumentScoring begin(TemplateSnapshot snapshot, DocumentLines lines) {
+        int lineCount = lines.size();
+        int dimension = lines.getDimension();
+        QuantizedMatrix quantizedLines = QuantizedMatrix.quantize(lines.getVectors(), lineCount, dimension);
+
+        return (template, bestRow, bestScore) -> {
+            // Шаблон не з цього знімка квантується на льоту
+            TemplateMatrix stored = template.quantize();
+            QuantizedMatrix matrix = stored.getQuantized();
+            int rows = template.getRows();
+            float[] approximate = new float[lineCount * rows];
+            kernel.scores(quantizedLines.getCodes(), quantizedLines.getScales(), lineCount,
+                    matrix.getCodes(), matrix.getScales(), rows, dimension, approximate);
+
+            int candidates = Math.min(rescoreCandidates, rows);
+            int[] candidateRows = new int[candidates];
+            float[] candidateScores = new float[candidates];
+            Rescore rescore = new Rescore(candidates, dimension);
+            for (int line = 0; line < lineCount; line++) {
+                int found = selectCandidates(approximate, line * rows, rows, candidateRows, candidateScores);
+                rescore.best(lines.getVectors(), line, stored.getFloatRows(), candidateRows, found, bestRow, bestScore);
+            }
+        };
+    }
+
+    /**
+     * Відбирає рядки з найбільшою наближеною схожістю (вставкою в невеликий відсортований масив).
+     *
+     * @return кількість відібраних кандидатів
+     */
+    private static int selectCandidates(float[] approximate, int offset, int rows,
+                                        int[] candidateRows, float[] candidateScores) {
+        int limit = candidateRows.length;
+        int found = 0;
+        for (int row = 0; row < rows; row++) {
+            float score = approximate[offset + row];
+            if (found == limit && score <= candidateScores[found - 1]) continue;
+            int position = found < limit ? found++ : found - 1;
+            while (position > 0 && candidateScores[position - 1] < score) {
+                candidateScores[position] = candidateScores[position - 1];
+                candidateRows[position] = candidateRows[position - 1];
+                position--;
+            }
+            candidateScores[position] = score;
+            candidateRows[position] = row;
+        }
+        return found;
+    }
+
+    /**
+     * Точний перерахунок кандидатів одного шаблону: float-вектори кандидатів копіюються з файлу знімка
+     * в невеликий блок і порівнюються з рядком документа ядром {@link #exactKernel}.
+     */
+    private final class Rescore {
+        private final int dimension;
+        private final float[] line;
+        private final float[] block;
+        private final int[] resultRow = new int[1];
+        private final float[] resultScore = new float[1];
+
+        private Rescore(int candidates, int dimension) {
+            this.dimension = dimension;
+            this.line = new float[dimension];
+            this.block = new float[candidates * dimension];
+        }
+
+        /**
+         * Кандидати копіюються в порядку зростання рядка, тож при рівній схожості, як і в повному переборі,
+         * перемагає менший рядок.
+         */
+        private void best(float[] lineVectors, int lineIndex, FloatBuffer floatRows,
+                          int[] candidateRows, int found, int[] bestRow, float[] bestScore) {
+            if (found == 0) {
+                bestRow[lineIndex] = -1;
+                bestScore[lineIndex] = Float.NEGATIVE_INFINITY;
+                return;
+            }
+            Arrays.sort(candidateRows, 0, found);
+            System.arraycopy(lineVectors, lineIndex * dimension, line, 0, dimension);
+            for (int i = 0; i < found; i++) {
+                floatRows.get(candidateRows[i] * dimension, block, i * dimension, dimension);
+            }
+            exactKernel.bestMatches(line, 1, block, found, dimension, resultRow, resultScore);
+            bestRow[lineIndex] = candidateRows[resultRow[0]];
+            bestScore[lineIndex] = resultScore[0];
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.example.service.score;
+
+import org.example.service.match.DocumentLines;
+import org.example.service.match.TemplateMatrix;
+import org.example.service.match.TemplateSnapshot;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JavaScoringBackend — порівняння в JVM через {@link SimilarityKernels#best()}.
+ */
+@Component
+@ConditionalOnProperty(name = "matcher.scoring.backend", havingValue = "java", matchIfMissing = true)
+public class JavaScoringBackend implements ScoringBackend {
+
+    private final SimilarityKernel kernel = SimilarityKernels.best();
+
+    @Override
+    public String name() {
+        return "java/" + kernel.name();
+    }
+
+    @Override
+    public DocumentScoring begin(TemplateSnapshot snapshot, DocumentLines lines) {
+        int dimension = lines.getDimension();
+
+        return new DocumentScoring() {
+
+            /**
+             * Суцільні копії блоків рядків цього документа (ключ — межі блоку {@code [fromLine, toLine)}),
+             * щоб ядро працювало з блоком як з окремою матрицею. Сесія належить одному документу,
+             * тож блоки різних документів не змішуються, а блоки з тим самим початком, але різною
+             * довжиною (плитки паралельного перегляду і блоки відсікання) зберігаються окремо.
+             */
+            private final Map<Long, float[]> blocks = new ConcurrentHashMap<>();
+
+            @Override
+            public void score(TemplateMatrix template, int[] bestRow, float[] bestScore) {
+                kernel.bestMatches(lines.getVectors(), lines.size(),
+                        template.getVectors(), template.getRows(),
+                        dimension, bestRow, bestScore);
+            }
+
+            @Override
+            public boolean scoresLineBlocks() {
+                return true;
+            }
+
+            @Override
+            public void score(TemplateMatrix template, int fromLine, int toLine, int[] bestRow, float[] bestScore) {
+                if (fromLine == 0 && toLine == lines.size()) {
+                    score(template, bestRow, bestScore);
+                    return;
+                }
+                int count = toLine - fromLine;
+                float[] block = blocks.computeIfAbsent(((long) fromLine << 32) | toLine, key -> Arrays.copyOfRange(
+                        lines.getVectors(), fromLine * dimension, toLine * dimension));
+                int[] blockRow = new int[count];
+                float[] blockScore = new float[count];
+                kernel.bestMatches(block, count, template.getVectors(), template.getRows(),
+                        dimension, blockRow, blockScore);
+                System.arraycopy(blockRow, 0, bestRow, fromLine, count);
+                System.arraycopy(blockScore, 0, bestScore, fromLine, count);
+            }
+        };
+    }
+}
@@ -0,0 +1,98 @@
+package org.example.service.score;
+
+import ai.djl.ndarray.NDArray;
+import ai.djl.ndarray.NDManager;
+import ai.djl.ndarray.types.Shape;
+import org.example.service.match.DocumentLines;
+import org.example.service.match.TemplateMatrix;
+import org.example.service.match.TemplateSnapshot;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * NDArrayScoringBackend — порівняння через множення матриць на рушії DJL (PyTorch, MKL/oneDNN на CPU).
+ * <p>
+ * Матриця фрагментів кожного шаблону завантажується в {@link NDArray} один раз на знімок шаблонів
+ * (вже транспонованою). Для документа обчислюється {@code lines × fragmentsᵀ} одним викликом,
+ * а argmax і max по рядках рахуються на боці рушія.
+ * <p>
+ * Нативна пам'ять:
+ * - матриці шаблонів належать {@link NDManager}, прикріпленому до знімка, і звільняються разом з ним
+ * - матриця рядків документа належить під-менеджеру сесії і звільняється в {@link DocumentScoring#close()}
+ */
+@Component
+@ConditionalOnProperty(name = "matcher.scoring.backend", havingValue = "ndarray")
+public class NDArrayScoringBackend implements ScoringBackend {
+
+    private static final String ATTACHMENT = "ndarray-templates";
+
+    /**
+     * Матриці шаблонів одного знімка в нативній пам'яті
+     */
+    private static final class SnapshotArrays implements AutoCloseable {
+        private final NDManager manager = NDManager.newBaseManager();
+        private final Map<String, NDArray> transposed = new ConcurrentHashMap<>();
+
+        NDArray get(TemplateMatrix template) {
+            return transposed.computeIfAbsent(template.getName(), name -> {
+                NDArray matrix = manager.create(template.getVectors(),
+                        new Shape(template.getRows(), template.getDimension()));
+                return matrix.transpose();
+            });
+        }
+
+        @Override
+        public void close() {
+            manager.close();
+        }
+    }
+
+    @Override
+    public String name() {
+        return "ndarray";
+    }
+
+    @Override
+    public DocumentScoring begin(TemplateSnapshot snapshot, DocumentLines lines) {
+        SnapshotArrays arrays = snapshot.attachment(ATTACHMENT, s -> new SnapshotArrays());
+        NDManager documentManager = arrays.manager.newSubManager();
+        NDArray lineMatrix = lines.size() == 0 ? null
+                : documentManager.create(lines.getVectors(), new Shape(lines.size(), lines.getDimension()));
+
+        return new DocumentScoring() {
+            @Override
+            public void score(TemplateMatrix template, int[] bestRow, float[] bestScore) {
+                if (lineMatrix == null) return;
+                if (template.getRows() == 0) {
+                    Arrays.fill(bestRow, 0, lines.size(), -1);
+                    Arrays.fill(bestScore, 0, lines.size(), Float.NEGATIVE_INFINITY);
+                    return;
+                }
+                try (NDManager scope = documentManager.newSubManager()) {
+                    NDArray similarities = lineMatrix.matMul(arrays.get(template));
+                    similarities.attach(scope);
+                    NDArray argMax = similarities.argMax(1);
+                    argMax.attach(scope);
+                    NDArray max = similarities.max(new int[]{1});
+                    max.attach(scope);
+
+                    long[] rows = argMax.toLongArray();
+                    float[] scores = max.toFloatArray();
+                    for (int i = 0; i < rows.length; i++) {
+                        bestRow[i] = (int) rows[i];
+                        bestScore[i] = scores[i];
+                    }
+                }
+            }
+
+            @Override
+            public void close() {
+                documentManager.close();
+            }
+        };
+    }
+}
@@ -0,0 +1,29 @@
+package org.example.service.score;
+
+/**
+ * ScalarInt8Kernel — скалярне int8-ядро (без Vector API).
+ */
+public class ScalarInt8Kernel implements Int8Kernel {
+
+    @Override
+    public void scores(byte[] lines, float[] lineScales, int lineCount,
+                       byte[] rows, float[] rowScales, int rowCount,
+                       int dimension, float[] out) {
+        for (int line = 0; line < lineCount; line++) {
+            int lineOffset = line * dimension;
+            for (int row = 0; row < rowCount; row++) {
+                int rowOffset = row * dimension;
+                int sum = 0;
+                for (int i = 0; i < dimension; i++) {
+                    sum += lines[lineOffset + i] * rows[rowOffset + i];
+                }
+                out[line * rowCount + row] = sum * lineScales[line] * rowScales[row];
+            }
+        }
+    }
+
+    @Override
+    public String name() {
+        return "int8-scalar";
+    }
+}
@@ -0,0 +1,50 @@
+package org.example.service.score;
+
+import java.util.Arrays;
+
+/**
+ * ScalarSimilarityKernel — скалярне ядро порівняння без Vector API.
+ * <p>
+ * Використовується, якщо модуль {@code jdk.incubator.vector} не підключено.
+ * Фрагменти обробляються блоками, щоб блок шаблону залишався в кеші процесора,
+ * поки з ним порівнюються всі рядки документа.
+ */
+public class ScalarSimilarityKernel implements SimilarityKernel {
+
+    /**
+     * Кількість фрагментів у блоці (64 × 384 × 4 байти ≈ 96 КБ — вміщується в L2)
+     */
+    static final int FRAGMENT_TILE = 64;
+
+    @Override
+    public void bestMatches(float[] lines, int lineCount,
+                            float[] fragments, int fragmentCount,
+                            int dimension,
+                            int[] bestRow, float[] bestScore) {
+        Arrays.fill(bestRow, 0, lineCount, -1);
+        Arrays.fill(bestScore, 0, lineCount, Float.NEGATIVE_INFINITY);
+
+        for (int tileStart = 0; tileStart < fragmentCount; tileStart += FRAGMENT_TILE) {
+            int tileEnd = Math.min(tileStart + FRAGMENT_TILE, fragmentCount);
+            for (int line = 0; line < lineCount; line++) {
+                int lineOffset = line * dimension;
+                for (int fragment = tileStart; fragment < tileEnd; fragment++) {
+                    int fragmentOffset = fragment * dimension;
+                    float sum = 0f;
+                    for (int i = 0; i < dimension; i++) {
+                        sum += lines[lineOffset + i] * fragments[fragmentOffset + i];
+                    }
+                    if (sum > bestScore[line]) {
+                        bestScore[line] = sum;
+                        bestRow[line] = fragment;
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+}
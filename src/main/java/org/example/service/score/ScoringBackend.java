@@ -0,0 +1,58 @@
+package org.example.service.score;
+
+import org.example.service.match.DocumentLines;
+import org.example.service.match.TemplateMatrix;
+import org.example.service.match.TemplateSnapshot;
+
+/**
+ * ScoringBackend — спосіб обчислення схожості рядків документа з фрагментами шаблонів.
+ * <p>
+ * Реалізація обирається властивістю {@code matcher.scoring.backend}:
+ * - {@code java} (за замовчуванням) — {@link JavaScoringBackend}, ядро {@link SimilarityKernel}
+ * - {@code ndarray} — {@link NDArrayScoringBackend}, множення матриць на рушії DJL
+ * - {@code hnsw} — {@link org.example.service.ann.HnswScoringBackend}, наближений пошук по HNSW-індексу
+ * - {@code int8} — {@link Int8ScoringBackend}, перебір по int8-кодах фрагментів
+ */
+public interface ScoringBackend {
+
+    /**
+     * @return назва реалізації (для логування)
+     */
+    String name();
+
+    /**
+     * Представлення матриці шаблону, яке бекенд тримає у знімку (викликається перед публікацією знімка).
+     *
+     * @param template скомпільована матриця з float-векторами
+     * @return та сама або компактніша матриця
+     */
+    default TemplateMatrix store(TemplateMatrix template) {
+        return template;
+    }
+
+    /**
+     * @return true, якщо бекенду не потрібні float-вектори в купі: знімок читається з файлу знімка з векторами,
+     * відображеними в пам'ять ({@link org.example.service.match.TemplateSnapshotFile#read(java.nio.file.Path, boolean)})
+     */
+    default boolean mapsTemplateVectors() {
+        return false;
+    }
+
+    /**
+     * Готує структури бекенду для нового знімка шаблонів (викликається під час публікації знімка),
+     * щоб перший документ не чекав на їх побудову.
+     *
+     * @param snapshot опублікований знімок шаблонів
+     */
+    default void prepare(TemplateSnapshot snapshot) {
+    }
+
+    /**
+     * Починає порівняння одного документа зі шаблонами знімка.
+     *
+     * @param snapshot знімок шаблонів (має бути взятий через {@link TemplateSnapshot#tryAcquire()})
+     * @param lines    підготовлені рядки документа
+     * @return сесія порівняння, яку треба закрити після завершення
+     */
+    DocumentScoring begin(TemplateSnapshot snapshot, DocumentLines lines);
+}
@@ -0,0 +1,33 @@
+package org.example.service.score;
+
+/**
+ * SimilarityKernel — ядро порівняння блоку рядків документа з блоком фрагментів шаблону.
+ * <p>
+ * Обидві матриці зберігаються суцільними масивами (row-major) нормалізованих векторів,
+ * тому схожість — це скалярний добуток. Для кожного рядка документа ядро повертає
+ * індекс фрагмента з найбільшою схожістю (argmax) та саму схожість.
+ * <p>
+ * При однакових значеннях перемагає фрагмент з меншим індексом — так само,
+ * як у послідовному переборі з умовою {@code score > bestScore}.
+ */
+public interface SimilarityKernel {
+
+    /**
+     * @param lines         вектори рядків документа, {@code lineCount * dimension} елементів
+     * @param lineCount     кількість рядків документа
+     * @param fragments     вектори фрагментів шаблону, {@code fragmentCount * dimension} елементів
+     * @param fragmentCount кількість фрагментів шаблону
+     * @param dimension     розмірність векторів
+     * @param bestRow       результат: індекс найкращого фрагмента для кожного рядка (-1, якщо фрагментів немає)
+     * @param bestScore     результат: схожість найкращого фрагмента для кожного рядка
+     */
+    void bestMatches(float[] lines, int lineCount,
+                     float[] fragments, int fragmentCount,
+                     int dimension,
+                     int[] bestRow, float[] bestScore);
+
+    /**
+     * @return назва ядра (для логування та замірів)
+     */
+    String name();
+}
@@ -0,0 +1,77 @@
+package org.example.service.score;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * SimilarityKernels — вибір ядра порівняння.
+ * <p>
+ * Якщо JVM запущено з {@code --add-modules jdk.incubator.vector}, використовуються
+ * {@link VectorSimilarityKernel} та {@link VectorInt8Kernel}; інакше — скалярні ядра.
+ */
+public final class SimilarityKernels {
+
+    private static final Logger logger = LoggerFactory.getLogger(SimilarityKernels.class);
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    private static final SimilarityKernel BEST =
+            SimilarityKernels.<SimilarityKernel>detect("VectorSimilarityKernel", ScalarSimilarityKernel::new, SimilarityKernel::name);
+
+    private static final Int8Kernel BEST_INT8 =
+            SimilarityKernels.<Int8Kernel>detect("VectorInt8Kernel", ScalarInt8Kernel::new, Int8Kernel::name);
+
+    private SimilarityKernels() {
+    }
+
+    /**
+     * @return найшвидше доступне ядро
+     */
+    public static SimilarityKernel best() {
+        return BEST;
+    }
+
+    /**
+     * @return скалярне ядро (працює без додаткових модулів JVM)
+     */
+    public static SimilarityKernel scalar() {
+        return new ScalarSimilarityKernel();
+    }
+
+    /**
+     * @return найшвидше доступне int8-ядро
+     */
+    public static Int8Kernel bestInt8() {
+        return BEST_INT8;
+    }
+
+    /**
+     * @return скалярне int8-ядро
+     */
+    public static Int8Kernel scalarInt8() {
+        return new ScalarInt8Kernel();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T detect(String vectorClass, Supplier<T> scalar, Function<T, String> name) {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+            try {
+                // Клас завантажується через рефлексію, щоб без модуля не виникало помилок зв'язування
+                T kernel = (T) Class
+                        .forName(SimilarityKernels.class.getPackageName() + "." + vectorClass)
+                        .getDeclaredConstructor()
+                        .newInstance();
+                logger.info("Ядро порівняння: {}", name.apply(kernel));
+                return kernel;
+            } catch (ReflectiveOperationException | LinkageError e) {
+                logger.warn("Vector API недоступний, використовується скалярне ядро: {}", e.getMessage());
+            }
+        } else {
+            logger.info("Модуль {} не підключено, використовується скалярне ядро", VECTOR_MODULE);
+        }
+        return scalar.get();
+    }
+}
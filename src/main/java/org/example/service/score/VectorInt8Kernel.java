@@ -0,0 +1,58 @@
+package org.example.service.score;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * VectorInt8Kernel — SIMD int8-ядро на основі {@code jdk.incubator.vector}.
+ * <p>
+ * Байти розширюються до int (B2I) на всю ширину регістра, множаться та накопичуються в int-акумуляторі;
+ * переповнення немає: |127 × 127 × 384| далеко менше за {@link Integer#MAX_VALUE}.
+ * Створюється лише через {@link SimilarityKernels}.
+ */
+class VectorInt8Kernel implements Int8Kernel {
+
+    private static final VectorSpecies<Integer> INT = IntVector.SPECIES_PREFERRED;
+
+    /**
+     * Байтовий вид з тією ж кількістю лінійок, що й int-вид (у 4 рази вужчий)
+     */
+    private static final VectorSpecies<Byte> BYTE = VectorSpecies.of(byte.class,
+            VectorShape.forBitSize(INT.length() * Byte.SIZE));
+
+    @Override
+    public void scores(byte[] lines, float[] lineScales, int lineCount,
+                       byte[] rows, float[] rowScales, int rowCount,
+                       int dimension, float[] out) {
+        int step = INT.length();
+        int upperBound = dimension - dimension % step;
+        for (int line = 0; line < lineCount; line++) {
+            int lineOffset = line * dimension;
+            for (int row = 0; row < rowCount; row++) {
+                int rowOffset = row * dimension;
+                IntVector acc = IntVector.zero(INT);
+                int i = 0;
+                for (; i < upperBound; i += step) {
+                    IntVector a = (IntVector) ByteVector.fromArray(BYTE, lines, lineOffset + i)
+                            .convertShape(VectorOperators.B2I, INT, 0);
+                    IntVector b = (IntVector) ByteVector.fromArray(BYTE, rows, rowOffset + i)
+                            .convertShape(VectorOperators.B2I, INT, 0);
+                    acc = acc.add(a.mul(b));
+                }
+                int sum = acc.reduceLanes(VectorOperators.ADD);
+                for (; i < dimension; i++) {
+                    sum += lines[lineOffset + i] * rows[rowOffset + i];
+                }
+                out[line * rowCount + row] = sum * lineScales[line] * rowScales[row];
+            }
+        }
+    }
+
+    @Override
+    public String name() {
+        return "int8-vector-" + INT.vectorBitSize();
+    }
+}
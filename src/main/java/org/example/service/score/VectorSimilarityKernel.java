@@ -0,0 +1,117 @@
+package org.example.service.score;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.Arrays;
+
+/**
+ * VectorSimilarityKernel — SIMD-ядро порівняння на основі {@code jdk.incubator.vector}.
+ * <p>
+ * Фрагменти шаблону обробляються блоками розміром з кеш ({@link ScalarSimilarityKernel#FRAGMENT_TILE}),
+ * а рядки документа — групами по {@link #LINE_BLOCK}: кожен завантажений вектор фрагмента
+ * використовується одразу для чотирьох рядків через FMA, що зменшує навантаження на пам'ять.
+ * Ширина вектора обирається автоматично (AVX2 — 8 float, AVX-512 — 16 float).
+ * <p>
+ * Потребує запуску JVM з {@code --add-modules jdk.incubator.vector}.
+ * Створюється лише через {@link SimilarityKernels}, який перевіряє наявність модуля.
+ */
+class VectorSimilarityKernel implements SimilarityKernel {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    /**
+     * Кількість рядків документа, що обробляються разом з одним вектором фрагмента
+     */
+    private static final int LINE_BLOCK = 4;
+
+    @Override
+    public void bestMatches(float[] lines, int lineCount,
+                            float[] fragments, int fragmentCount,
+                            int dimension,
+                            int[] bestRow, float[] bestScore) {
+        Arrays.fill(bestRow, 0, lineCount, -1);
+        Arrays.fill(bestScore, 0, lineCount, Float.NEGATIVE_INFINITY);
+
+        int upperBound = SPECIES.loopBound(dimension);
+        int step = SPECIES.length();
+
+        for (int tileStart = 0; tileStart < fragmentCount; tileStart += ScalarSimilarityKernel.FRAGMENT_TILE) {
+            int tileEnd = Math.min(tileStart + ScalarSimilarityKernel.FRAGMENT_TILE, fragmentCount);
+
+            int line = 0;
+            for (; line + LINE_BLOCK <= lineCount; line += LINE_BLOCK) {
+                int o0 = line * dimension;
+                int o1 = o0 + dimension;
+                int o2 = o1 + dimension;
+                int o3 = o2 + dimension;
+
+                for (int fragment = tileStart; fragment < tileEnd; fragment++) {
+                    int fo = fragment * dimension;
+                    FloatVector a0 = FloatVector.zero(SPECIES);
+                    FloatVector a1 = FloatVector.zero(SPECIES);
+                    FloatVector a2 = FloatVector.zero(SPECIES);
+                    FloatVector a3 = FloatVector.zero(SPECIES);
+
+                    int i = 0;
+                    for (; i < upperBound; i += step) {
+                        FloatVector f = FloatVector.fromArray(SPECIES, fragments, fo + i);
+                        a0 = FloatVector.fromArray(SPECIES, lines, o0 + i).fma(f, a0);
+                        a1 = FloatVector.fromArray(SPECIES, lines, o1 + i).fma(f, a1);
+                        a2 = FloatVector.fromArray(SPECIES, lines, o2 + i).fma(f, a2);
+                        a3 = FloatVector.fromArray(SPECIES, lines, o3 + i).fma(f, a3);
+                    }
+
+                    float s0 = a0.reduceLanes(VectorOperators.ADD);
+                    float s1 = a1.reduceLanes(VectorOperators.ADD);
+                    float s2 = a2.reduceLanes(VectorOperators.ADD);
+                    float s3 = a3.reduceLanes(VectorOperators.ADD);
+                    for (; i < dimension; i++) {
+                        float f = fragments[fo + i];
+                        s0 += lines[o0 + i] * f;
+                        s1 += lines[o1 + i] * f;
+                        s2 += lines[o2 + i] * f;
+                        s3 += lines[o3 + i] * f;
+                    }
+
+                    update(line, fragment, s0, bestRow, bestScore);
+                    update(line + 1, fragment, s1, bestRow, bestScore);
+                    update(line + 2, fragment, s2, bestRow, bestScore);
+                    update(line + 3, fragment, s3, bestRow, bestScore);
+                }
+            }
+
+            // Залишок рядків, що не утворив повну групу
+            for (; line < lineCount; line++) {
+                int lo = line * dimension;
+                for (int fragment = tileStart; fragment < tileEnd; fragment++) {
+                    int fo = fragment * dimension;
+                    FloatVector acc = FloatVector.zero(SPECIES);
+                    int i = 0;
+                    for (; i < upperBound; i += step) {
+                        acc = FloatVector.fromArray(SPECIES, lines, lo + i)
+                                .fma(FloatVector.fromArray(SPECIES, fragments, fo + i), acc);
+                    }
+                    float sum = acc.reduceLanes(VectorOperators.ADD);
+                    for (; i < dimension; i++) {
+                        sum += lines[lo + i] * fragments[fo + i];
+                    }
+                    update(line, fragment, sum, bestRow, bestScore);
+                }
+            }
+        }
+    }
+
+    private static void update(int line, int fragment, float score, int[] bestRow, float[] bestScore) {
+        if (score > bestScore[line]) {
+            bestScore[line] = score;
+            bestRow[line] = fragment;
+        }
+    }
+
+    @Override
+    public String name() {
+        return "vector-" + SPECIES.vectorBitSize();
+    }
+}
@@ -0,0 +1,89 @@
+package org.example.untils;
+
+import org.example.service.match.QuantizedMatrix;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * CachedTemplateCodec — двійковий формат embedding-ів фрагментів у Redis ({@link #encodeVector}).
+ * <p>
+ * Структура запису (усі числа little-endian):
+ * <pre>
+ * версія (1 байт) | формат (1 байт: 0 — float32, 1 — int8) | модель (int) | розмірність (int) | вектор
+ * вектор:
+ *   float32 — {@code dimension} float
+ *   int8    — масштаб (float) + {@code dimension} байт
+ * </pre>
+ * Модель записується як {@link String#hashCode()} її назви. Під час читання заголовок перевіряється:
+ * запис іншої версії, іншої моделі чи з розмірністю, що не відповідає довжині, вважається відсутнім,
+ * тож після зміни моделі вектор іншої розмірності не потрапить в аналіз.
+ * Формат int8 втрачає точність (≈0.5% від максимальної компоненти вектора) — це компроміс заради розміру.
+ */
+public final class CachedTemplateCodec {
+
+    private static final byte VERSION = 2;
+    private static final int HEADER_BYTES = 10;
+
+    /**
+     * Формат векторів
+     */
+    public enum Encoding {
+        FLOAT32, INT8
+    }
+
+    private CachedTemplateCodec() {
+    }
+
+    /**
+     * Кодує один вектор із заголовком (версія, формат, модель, розмірність).
+     *
+     * @param vector    вектор
+     * @param encoding  формат
+     * @param modelName назва моделі, що обчислила вектор
+     * @return двійкове представлення
+     */
+    public static byte[] encodeVector(float[] vector, Encoding encoding, String modelName) {
+        boolean int8 = encoding == Encoding.INT8;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + (int8 ? 4 + vector.length : 4 * vector.length))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(VERSION).put((byte) (int8 ? 1 : 0)).putInt(modelName.hashCode()).putInt(vector.length);
+        if (int8) {
+            QuantizedMatrix quantized = QuantizedMatrix.quantize(vector, 1, vector.length);
+            buffer.putFloat(quantized.getScales()[0]).put(quantized.getCodes());
+        } else {
+            buffer.asFloatBuffer().put(vector);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Розкодовує вектор, закодований {@link #encodeVector}.
+     *
+     * @param data      двійкове представлення
+     * @param modelName назва поточної моделі
+     * @return вектор або null, якщо запис іншої версії формату, іншої моделі або пошкоджений
+     */
+    public static float[] decodeVector(byte[] data, String modelName) {
+        if (data.length < HEADER_BYTES) return null;
+        ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.get() != VERSION) return null;
+        byte format = buffer.get();
+        if (format != 0 && format != 1) return null;
+        boolean int8 = format == 1;
+        if (buffer.getInt() != modelName.hashCode()) return null;
+        int dimension = buffer.getInt();
+        if (dimension <= 0 || buffer.remaining() != (int8 ? 4L + dimension : 4L * dimension)) return null;
+
+        float[] vector = new float[dimension];
+        if (int8) {
+            float scale = buffer.getFloat();
+            for (int i = 0; i < dimension; i++) {
+                vector[i] = buffer.get() * scale;
+            }
+        } else {
+            buffer.asFloatBuffer().get(vector);
+        }
+        return vector;
+    }
+}
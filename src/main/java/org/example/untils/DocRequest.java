@@ -14,5 +14,10 @@ public class DocRequest implements JsonSerializable {
     private String clientId;
     private String doc;
     private String body;
+
+    /**
+     * Час на синхронний аналіз у мілісекундах (необов'язково; для {@code /api/match/sync})
+     */
+    private Long deadlineMs;
 }
 
@@ -0,0 +1,23 @@
+package org.example.untils;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * TemplateManifest — опис шаблону без векторів: фрагменти кожного ключа та хеші їхніх embedding-ів
+ * у сховищі фрагментів. Зберігається в Redis під справжньою назвою файлу шаблону.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class TemplateManifest implements JsonSerializable {
+    private String model;
+    private Map<String, List<String>> fragments;
+    private Map<String, List<String>> hashes;
+}
@@ -7,7 +7,7 @@ import java.util.stream.Collectors;
  * Утилітарний клас для обчислення схожості текстів та обробки рядків.
  * <p>
  * Містить методи для:
- * - Обчислення cosine similarity між векторами
+ * - Обчислення cosine similarity між векторами (та скалярного добутку нормалізованих векторів)
  * - Витягування спільних слів (індикаторів)
  * - Токенізації та нормалізації українських слів
  */
@@ -39,6 +39,44 @@ public class TextSimilarityUtils {
         return dot / (Math.sqrt(na) * Math.sqrt(nb));
     }
 
+    /**
+     * Записує нормалізовану (за L2-нормою) копію вектора в масив призначення.
+     * Для нормалізованих векторів cosine similarity дорівнює скалярному добутку.
+     * Нульовий вектор залишається нульовим.
+     *
+     * @param source вектор
+     * @param target масив призначення
+     * @param offset позиція в масиві призначення
+     */
+    public static void normalizeInto(float[] source, float[] target, int offset) {
+        double norm = 0.0;
+        for (float v : source) {
+            norm += v * v;
+        }
+        float scale = norm > 0 ? (float) (1.0 / Math.sqrt(norm)) : 0f;
+        for (int i = 0; i < source.length; i++) {
+            target[offset + i] = source[i] * scale;
+        }
+    }
+
+    /**
+     * Скалярний добуток двох векторів, розташованих у суцільних масивах.
+     *
+     * @param a       перший масив
+     * @param aOffset початок першого вектора
+     * @param b       другий масив
+     * @param bOffset початок другого вектора
+     * @param length  розмірність векторів
+     * @return скалярний добуток
+     */
+    public static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float sum = 0f;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
     /**
      * Витягує індикатори — спільні слова, які одночасно присутні
      * як у документному рядку, так і у фрагменті шаблону.
@@ -0,0 +1,117 @@
+package test;
+
+import ai.djl.inference.Predictor;
+import org.example.loader.EmbeddingBatcher;
+import org.example.loader.ModelLoader;
+import org.example.loader.PredictorPool;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Замір пропускної здатності та затримки {@link EmbeddingBatcher} при різних
+ * розмірах пакета та часі очікування.
+ * <p>
+ * Імітує 4 потоки {@code async-doc-}, кожен з яких обчислює embedding-и документів по 50 рядків.
+ * Базова лінія — поштучний {@link Predictor#predict} з окремим предиктором на потік (як було раніше).
+ * <p>
+ * Запуск: {@code java -cp target/classes:<classpath> test.EmbeddingBatcherBenchmark}
+ */
+public class EmbeddingBatcherBenchmark {
+
+    private static final int CLIENT_THREADS = 4;
+    private static final int DOCUMENTS_PER_THREAD = 10;
+    private static final int LINES_PER_DOCUMENT = 50;
+
+    public static void main(String[] args) throws Exception {
+        ModelLoader modelLoader = new ModelLoader();
+        modelLoader.init();
+
+        List<List<String>> documents = generateDocuments();
+
+        System.out.printf("%-22s %12s %12s %12s %10s%n", "mode", "lines/s", "p50 doc ms", "p99 doc ms", "avg batch");
+        runBaseline(modelLoader, documents);
+
+        for (int batchSize : new int[]{8, 32, 64}) {
+            for (long waitMs : new long[]{0, 2, 5, 10}) {
+                runBatcher(modelLoader, documents, batchSize, waitMs);
+            }
+        }
+    }
+
+    private static void runBaseline(ModelLoader modelLoader, List<List<String>> documents) throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENT_THREADS);
+        ThreadLocal<Predictor<String, float[]>> predictors = ThreadLocal.withInitial(modelLoader::newPredictor);
+        long[] latencies = run(clients, documents, lines -> {
+            Predictor<String, float[]> predictor = predictors.get();
+            for (String line : lines) {
+                predictor.predict(line);
+            }
+        });
+        clients.shutdown();
+        print("predict (baseline)", latencies, 1.0);
+    }
+
+    private static void runBatcher(ModelLoader modelLoader, List<List<String>> documents,
+                                   int batchSize, long waitMs) throws Exception {
+        PredictorPool predictorPool = new PredictorPool(modelLoader, CLIENT_THREADS);
+        predictorPool.init();
+        EmbeddingBatcher batcher = new EmbeddingBatcher(predictorPool, batchSize, waitMs, 2, 60_000);
+        batcher.start();
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENT_THREADS);
+        long[] latencies = run(clients, documents, batcher::embedAllAndWait);
+        clients.shutdown();
+        batcher.stop();
+        predictorPool.close();
+        print("batch=" + batchSize + " wait=" + waitMs + "ms", latencies, batcher.getAverageBatchSize());
+    }
+
+    private interface DocumentTask {
+        void embed(List<String> lines) throws Exception;
+    }
+
+    /**
+     * @return затримки обробки кожного документа в наносекундах; останній елемент — загальний час
+     */
+    private static long[] run(ExecutorService clients, List<List<String>> documents, DocumentTask task) throws Exception {
+        List<Future<Long>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (List<String> document : documents) {
+            futures.add(clients.submit(() -> {
+                long t0 = System.nanoTime();
+                task.embed(document);
+                return System.nanoTime() - t0;
+            }));
+        }
+        long[] latencies = new long[futures.size() + 1];
+        for (int i = 0; i < futures.size(); i++) {
+            latencies[i] = futures.get(i).get();
+        }
+        latencies[futures.size()] = System.nanoTime() - start;
+        return latencies;
+    }
+
+    private static void print(String mode, long[] latencies, double avgBatch) {
+        int n = latencies.length - 1;
+        long total = latencies[n];
+        long[] sorted = Arrays.copyOf(latencies, n);
+        Arrays.sort(sorted);
+        double linesPerSecond = (double) n * LINES_PER_DOCUMENT / (total / 1e9);
+        System.out.printf("%-22s %12.1f %12.1f %12.1f %10.1f%n", mode, linesPerSecond,
+                sorted[n / 2] / 1e6, sorted[Math.min(n - 1, (int) Math.ceil(n * 0.99) - 1)] / 1e6, avgBatch);
+    }
+
+    private static List<List<String>> generateDocuments() {
+        List<List<String>> documents = new ArrayList<>();
+        for (int d = 0; d < CLIENT_THREADS * DOCUMENTS_PER_THREAD; d++) {
+            List<String> lines = new ArrayList<>();
+            for (int l = 0; l < LINES_PER_DOCUMENT; l++) {
+                lines.add("Наказ № " + d + " пункт " + l + ": забезпечити виконання вимог та доповісти до " + (l % 28 + 1) + " числа");
+            }
+            documents.add(lines);
+        }
+        return documents;
+    }
+}
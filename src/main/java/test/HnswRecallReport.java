@@ -0,0 +1,220 @@
+package test;
+
+import org.example.service.ann.HnswScoringBackend;
+import org.example.service.match.DocumentLines;
+import org.example.service.match.TemplateMatch;
+import org.example.service.match.TemplateMatrix;
+import org.example.service.match.TemplateSnapshot;
+import org.example.service.score.DocumentScoring;
+import org.example.service.score.JavaScoringBackend;
+import org.example.service.score.ScoringBackend;
+import org.example.untils.TextSimilarityUtils;
+
+import java.util.*;
+
+/**
+ * Звіт про точність (recall) {@link HnswScoringBackend} відносно точного перебору ({@link JavaScoringBackend}).
+ * <p>
+ * Дані синтетичні, але з кластерною структурою, схожою на реальні шаблони:
+ * фрагменти одного шаблону близькі між собою, частина фрагментів (підписи, шапки)
+ * спільна для багатьох шаблонів, рядки документа — зашумлені фрагменти одного шаблону.
+ * <p>
+ * Метрики:
+ * - pair recall — частка пар (рядок, шаблон) зі схожістю вище порогу 0.75 за точним перебором,
+ *   для яких HNSW знайшов той самий фрагмент; окремо для «характерних» рядків (вище порогу
+ *   не більше ніж у top-k шаблонах) і для шаблонних рядків, схожих на фрагменти багатьох шаблонів
+ * - total err — середня відносна похибка суми балів шаблону-переможця
+ * - winner — частка документів, де переможець збігся з точним перебором
+ * <p>
+ * Запуск: {@code java --add-modules jdk.incubator.vector -cp target/classes:<classpath> test.HnswRecallReport}
+ */
+public class HnswRecallReport {
+
+    private static final int DIMENSION = 384;
+    private static final int TEMPLATES = 500;
+    private static final int KEYS = 8;
+    private static final int FRAGMENTS_PER_KEY = 5;
+    private static final int BOILERPLATE = 5;
+    private static final int DOCUMENTS = 40;
+    private static final int LINES = 60;
+    private static final double THRESHOLD = 0.75;
+
+    public static void main(String[] args) {
+        Random random = new Random(11);
+        List<float[]> boilerplate = new ArrayList<>();
+        for (int i = 0; i < BOILERPLATE; i++) boilerplate.add(gaussian(random));
+
+        Map<String, TemplateMatrix> templates = new LinkedHashMap<>();
+        List<List<float[]>> rawFragments = new ArrayList<>();
+        for (int t = 0; t < TEMPLATES; t++) {
+            float[] centroid = gaussian(random);
+            List<float[]> fragments = new ArrayList<>();
+            for (int f = 0; f < KEYS * FRAGMENTS_PER_KEY; f++) {
+                // Кожен восьмий фрагмент — варіація спільного шаблонного тексту
+                float[] vector = f % 8 == 7
+                        ? mix(boilerplate.get(random.nextInt(BOILERPLATE)), 1.0, gaussian(random), 0.3)
+                        : mix(centroid, 0.6, gaussian(random), 0.8);
+                fragments.add(vector);
+            }
+            rawFragments.add(fragments);
+            templates.put("template-" + t, matrix("template-" + t, fragments));
+        }
+        TemplateSnapshot snapshot = new TemplateSnapshot(1, templates);
+
+        List<DocumentLines> documents = new ArrayList<>();
+        for (int d = 0; d < DOCUMENTS; d++) {
+            List<float[]> source = rawFragments.get(random.nextInt(TEMPLATES));
+            List<String> lines = new ArrayList<>();
+            List<float[]> embeddings = new ArrayList<>();
+            for (int l = 0; l < LINES; l++) {
+                float[] vector = l % 3 == 2
+                        ? gaussian(random)
+                        : mix(source.get(random.nextInt(source.size())), 1.0, gaussian(random), 0.5);
+                lines.add("line " + l);
+                embeddings.add(vector);
+            }
+            documents.add(DocumentLines.of(lines, embeddings));
+        }
+
+        System.out.printf("%d шаблонів × %d фрагментів (= %d), %d документів × %d рядків%n",
+                TEMPLATES, KEYS * FRAGMENTS_PER_KEY, snapshot.getTotalRows(), DOCUMENTS, LINES);
+
+        ScoringBackend exact = new JavaScoringBackend();
+        long exactStart = System.nanoTime();
+        List<Map<String, int[]>> exactRows = new ArrayList<>();
+        List<Map<String, float[]>> exactScores = new ArrayList<>();
+        List<String> exactWinners = new ArrayList<>();
+        List<Double> exactTotals = new ArrayList<>();
+        for (DocumentLines document : documents) {
+            Map<String, int[]> rows = new HashMap<>();
+            Map<String, float[]> scores = new HashMap<>();
+            String winner = run(exact, snapshot, document, rows, scores, exactTotals);
+            exactRows.add(rows);
+            exactScores.add(scores);
+            exactWinners.add(winner);
+        }
+        double exactMs = (System.nanoTime() - exactStart) / 1e6 / DOCUMENTS;
+        System.out.printf("%-6s %-6s %-6s %10s %10s %10s %12s %10s %10s%n",
+                "M", "ef", "top-k", "build s", "rec dist", "rec shared", "total err", "winner", "ms/doc");
+        System.out.printf("%-6s %-6s %-6s %10s %10s %10s %12s %10s %10.1f%n",
+                "exact", "-", "-", "-", "1.000", "1.000", "0.0000", "1.000", exactMs);
+
+        for (int m : new int[]{8, 16, 32}) {
+            // Індекс прикріплюється до знімка, тому будується один раз для кожного M,
+            // а ef-search і top-k — параметри запиту
+            TemplateSnapshot annSnapshot = new TemplateSnapshot(m, templates);
+            long buildStart = System.nanoTime();
+            new HnswScoringBackend(m, 200, 64, 64).prepare(annSnapshot);
+            double buildSeconds = (System.nanoTime() - buildStart) / 1e9;
+
+            for (int topK : new int[]{32, 64}) {
+                for (int ef : new int[]{32, 64, 128, 256}) {
+                    HnswScoringBackend hnsw = new HnswScoringBackend(m, 200, ef, topK);
+
+                    long distinctive = 0, distinctiveHits = 0, shared = 0, sharedHits = 0, winners = 0;
+                    double totalError = 0;
+                    long start = System.nanoTime();
+                    List<Double> totals = new ArrayList<>();
+                    for (int d = 0; d < DOCUMENTS; d++) {
+                        Map<String, int[]> rows = new HashMap<>();
+                        Map<String, float[]> scores = new HashMap<>();
+                        String winner = run(hnsw, annSnapshot, documents.get(d), rows, scores, totals);
+                        if (winner != null && winner.equals(exactWinners.get(d))) winners++;
+                        double exactTotal = exactTotals.get(d);
+                        totalError += exactTotal == 0 ? 0 : Math.abs(exactTotal - totals.get(d)) / exactTotal;
+
+                        // Скільки шаблонів мають збіг вище порогу з кожним рядком
+                        int[] aboveThreshold = new int[LINES];
+                        for (float[] expectedScores : exactScores.get(d).values()) {
+                            for (int l = 0; l < LINES; l++) {
+                                if (expectedScores[l] > THRESHOLD) aboveThreshold[l]++;
+                            }
+                        }
+
+                        for (var e : exactRows.get(d).entrySet()) {
+                            float[] expectedScores = exactScores.get(d).get(e.getKey());
+                            int[] actual = rows.get(e.getKey());
+                            for (int l = 0; l < LINES; l++) {
+                                if (expectedScores[l] <= THRESHOLD) continue;
+                                boolean hit = actual[l] == e.getValue()[l];
+                                if (aboveThreshold[l] <= topK) {
+                                    distinctive++;
+                                    if (hit) distinctiveHits++;
+                                } else {
+                                    shared++;
+                                    if (hit) sharedHits++;
+                                }
+                            }
+                        }
+                    }
+                    double ms = (System.nanoTime() - start) / 1e6 / DOCUMENTS;
+                    System.out.printf("%-6d %-6d %-6d %10.1f %10.3f %10.3f %12.4f %10.3f %10.1f%n",
+                            m, ef, topK, buildSeconds,
+                            distinctive == 0 ? 1.0 : distinctiveHits / (double) distinctive,
+                            shared == 0 ? 1.0 : sharedHits / (double) shared,
+                            totalError / DOCUMENTS, winners / (double) DOCUMENTS, ms);
+                }
+            }
+            annSnapshot.release();
+        }
+    }
+
+    /**
+     * Порівнює документ з усіма шаблонами, зберігає найкращі рядки/бали і повертає переможця.
+     */
+    private static String run(ScoringBackend backend, TemplateSnapshot snapshot, DocumentLines document,
+                              Map<String, int[]> rows, Map<String, float[]> scores, List<Double> totals) {
+        double highest = -1;
+        String winner = null;
+        try (DocumentScoring scoring = backend.begin(snapshot, document)) {
+            for (TemplateMatrix template : snapshot.getTemplates().values()) {
+                int[] bestRow = new int[document.size()];
+                float[] bestScore = new float[document.size()];
+                scoring.score(template, bestRow, bestScore);
+                rows.put(template.getName(), bestRow);
+                scores.put(template.getName(), bestScore);
+                double total = TemplateMatch.assemble(template, document.getLines(), bestRow, bestScore, THRESHOLD)
+                        .getTotalScore();
+                if (total > highest) {
+                    highest = total;
+                    winner = template.getName();
+                }
+            }
+        }
+        totals.add(highest);
+        return winner;
+    }
+
+    private static TemplateMatrix matrix(String name, List<float[]> fragments) {
+        float[] vectors = new float[fragments.size() * DIMENSION];
+        String[] keys = new String[KEYS];
+        int[] rowKey = new int[fragments.size()];
+        int[] rowFragment = new int[fragments.size()];
+        Map<String, List<String>> texts = new LinkedHashMap<>();
+        for (int k = 0; k < KEYS; k++) {
+            keys[k] = "key_" + k;
+            texts.put(keys[k], new ArrayList<>());
+        }
+        for (int r = 0; r < fragments.size(); r++) {
+            TextSimilarityUtils.normalizeInto(fragments.get(r), vectors, r * DIMENSION);
+            rowKey[r] = r / FRAGMENTS_PER_KEY;
+            rowFragment[r] = r % FRAGMENTS_PER_KEY;
+            texts.get(keys[rowKey[r]]).add("fragment " + r);
+        }
+        return new TemplateMatrix(name, DIMENSION, vectors, keys, rowKey, rowFragment, texts);
+    }
+
+    private static float[] gaussian(Random random) {
+        float[] v = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) v[i] = (float) random.nextGaussian();
+        float[] normalized = new float[DIMENSION];
+        TextSimilarityUtils.normalizeInto(v, normalized, 0);
+        return normalized;
+    }
+
+    private static float[] mix(float[] a, double wa, float[] b, double wb) {
+        float[] v = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) v[i] = (float) (a[i] * wa + b[i] * wb);
+        return v;
+    }
+}
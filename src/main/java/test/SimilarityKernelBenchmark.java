@@ -0,0 +1,125 @@
+package test;
+
+import org.example.service.match.QuantizedMatrix;
+import org.example.service.score.Int8Kernel;
+import org.example.service.score.SimilarityKernel;
+import org.example.service.score.SimilarityKernels;
+import org.example.untils.TextSimilarityUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Порівняння ядер {@link SimilarityKernel} з попередньою реалізацією
+ * (попарний {@link TextSimilarityUtils#cosineSimilarity} по списках векторів)
+ * для 384-вимірних векторів MiniLM.
+ * <p>
+ * Запуск: {@code java --add-modules jdk.incubator.vector -cp target/classes:<classpath> test.SimilarityKernelBenchmark}
+ */
+public class SimilarityKernelBenchmark {
+
+    private static final int DIMENSION = 384;
+    private static final int LINES = 200;
+    private static final int TEMPLATES = 50;
+    private static final int FRAGMENTS_PER_TEMPLATE = 40;
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        List<float[]> lineList = randomVectors(random, LINES);
+        List<List<float[]>> templateLists = new ArrayList<>();
+        for (int t = 0; t < TEMPLATES; t++) {
+            templateLists.add(randomVectors(random, FRAGMENTS_PER_TEMPLATE));
+        }
+
+        float[] lines = pack(lineList);
+        List<float[]> templates = templateLists.stream().map(SimilarityKernelBenchmark::pack).toList();
+
+        System.out.printf("%d рядків × %d шаблонів × %d фрагментів, розмірність %d%n",
+                LINES, TEMPLATES, FRAGMENTS_PER_TEMPLATE, DIMENSION);
+
+        double pairwise = measure(() -> {
+            double checksum = 0;
+            for (List<float[]> template : templateLists) {
+                for (float[] line : lineList) {
+                    double best = -1;
+                    for (float[] fragment : template) {
+                        double score = TextSimilarityUtils.cosineSimilarity(fragment, line);
+                        if (score > best) best = score;
+                    }
+                    checksum += best;
+                }
+            }
+            return checksum;
+        });
+        System.out.printf("%-14s %10.2f мс%n", "pairwise", pairwise);
+
+        for (SimilarityKernel kernel : List.of(SimilarityKernels.scalar(), SimilarityKernels.best())) {
+            int[] bestRow = new int[LINES];
+            float[] bestScore = new float[LINES];
+            double ms = measure(() -> {
+                double checksum = 0;
+                for (float[] template : templates) {
+                    kernel.bestMatches(lines, LINES, template, FRAGMENTS_PER_TEMPLATE, DIMENSION, bestRow, bestScore);
+                    for (float score : bestScore) checksum += score;
+                }
+                return checksum;
+            });
+            System.out.printf("%-14s %10.2f мс  (x%.1f)%n", kernel.name(), ms, pairwise / ms);
+        }
+
+        // Int8: лише перебір квантованих матриць (без точного перерахунку кандидатів)
+        QuantizedMatrix quantizedLines = QuantizedMatrix.quantize(lines, LINES, DIMENSION);
+        List<QuantizedMatrix> quantizedTemplates = templates.stream()
+                .map(t -> QuantizedMatrix.quantize(t, FRAGMENTS_PER_TEMPLATE, DIMENSION)).toList();
+        for (Int8Kernel kernel : List.of(SimilarityKernels.scalarInt8(), SimilarityKernels.bestInt8())) {
+            float[] scores = new float[LINES * FRAGMENTS_PER_TEMPLATE];
+            double ms = measure(() -> {
+                double checksum = 0;
+                for (QuantizedMatrix template : quantizedTemplates) {
+                    kernel.scores(quantizedLines.getCodes(), quantizedLines.getScales(), LINES,
+                            template.getCodes(), template.getScales(), FRAGMENTS_PER_TEMPLATE, DIMENSION, scores);
+                    checksum += scores[0];
+                }
+                return checksum;
+            });
+            System.out.printf("%-14s %10.2f мс  (x%.1f)%n", kernel.name(), ms, pairwise / ms);
+        }
+    }
+
+    private interface Workload {
+        double run();
+    }
+
+    /**
+     * @return середній час одного проходу в мілісекундах (після прогріву)
+     */
+    private static double measure(Workload workload) {
+        double sink = 0;
+        for (int i = 0; i < ROUNDS; i++) sink += workload.run();
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) sink += workload.run();
+        long elapsed = System.nanoTime() - start;
+        if (sink == 42) System.out.println();
+        return elapsed / 1e6 / ROUNDS;
+    }
+
+    private static List<float[]> randomVectors(Random random, int count) {
+        List<float[]> vectors = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            float[] v = new float[DIMENSION];
+            for (int d = 0; d < DIMENSION; d++) v[d] = (float) random.nextGaussian();
+            vectors.add(v);
+        }
+        return vectors;
+    }
+
+    private static float[] pack(List<float[]> vectors) {
+        float[] packed = new float[vectors.size() * DIMENSION];
+        for (int i = 0; i < vectors.size(); i++) {
+            TextSimilarityUtils.normalizeInto(vectors.get(i), packed, i * DIMENSION);
+        }
+        return packed;
+    }
+}
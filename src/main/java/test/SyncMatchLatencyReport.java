@@ -0,0 +1,111 @@
+package test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Замір затримки {@code /api/match/sync} для документів на 10, 50 і 200 рядків.
+ * <p>
+ * Рядки беруться з текстових файлів {@code data/documents} (або генеруються, якщо каталогу немає).
+ * Для кожного розміру виконуються два режими:
+ * - {@code warm} — той самий документ повторно (embedding-и рядків уже в кеші)
+ * - {@code cold} — до кожного рядка додається номер запиту, тож усі рядки нові для моделі
+ * <p>
+ * Запуск (сервіс має працювати): {@code java -cp target/classes:<classpath> test.SyncMatchLatencyReport [url] [deadlineMs]}
+ */
+public class SyncMatchLatencyReport {
+
+    private static final int[] DOCUMENT_LINES = {10, 50, 200};
+    private static final int WARMUP_REQUESTS = 20;
+    private static final int MEASURED_REQUESTS = 200;
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    public static void main(String[] args) throws Exception {
+        String url = args.length > 0 ? args[0] : "http://localhost:8080/api/match/sync";
+        Long deadlineMs = args.length > 1 ? Long.parseLong(args[1]) : null;
+        RestTemplate restTemplate = new RestTemplate();
+        List<String> corpus = loadCorpus();
+
+        System.out.printf("%-6s %-5s %10s %10s %10s %9s%n", "lines", "mode", "p50 ms", "p99 ms", "max ms", "partial");
+        for (int lineCount : DOCUMENT_LINES) {
+            for (boolean cold : new boolean[]{false, true}) {
+                run(restTemplate, url, deadlineMs, corpus, lineCount, cold);
+            }
+        }
+    }
+
+    private static void run(RestTemplate restTemplate, String url, Long deadlineMs,
+                            List<String> corpus, int lineCount, boolean cold) throws IOException {
+        long[] latencies = new long[MEASURED_REQUESTS];
+        int partial = 0;
+        for (int request = -WARMUP_REQUESTS; request < MEASURED_REQUESTS; request++) {
+            String body = document(corpus, lineCount, cold ? "#" + lineCount + "-" + request : null);
+            Map<String, Object> docRequest = new LinkedHashMap<>();
+            docRequest.put("doc", "latency-" + lineCount);
+            docRequest.put("body", body);
+            docRequest.put("deadlineMs", deadlineMs);
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            long start = System.nanoTime();
+            String response = restTemplate.postForObject(url,
+                    new HttpEntity<>(mapper.writeValueAsString(docRequest), headers), String.class);
+            long elapsed = System.nanoTime() - start;
+
+            if (request >= 0) {
+                latencies[request] = elapsed;
+                JsonNode json = mapper.readTree(response);
+                if (json.path("partial").asBoolean(false)) partial++;
+            }
+        }
+        Arrays.sort(latencies);
+        System.out.printf("%-6d %-5s %10.1f %10.1f %10.1f %9d%n", lineCount, cold ? "cold" : "warm",
+                percentile(latencies, 0.50), percentile(latencies, 0.99),
+                latencies[latencies.length - 1] / 1e6, partial);
+    }
+
+    private static String document(List<String> corpus, int lineCount, String suffix) {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < lineCount; i++) {
+            String line = corpus.get(i % corpus.size());
+            body.append(suffix == null ? line : line + " " + suffix).append('\n');
+        }
+        return body.toString();
+    }
+
+    private static List<String> loadCorpus() throws IOException {
+        List<String> lines = new ArrayList<>();
+        Path folder = Path.of("data/documents");
+        if (Files.isDirectory(folder)) {
+            try (var files = Files.list(folder)) {
+                for (Path file : files.filter(Files::isRegularFile).sorted().toList()) {
+                    for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                        if (!line.isBlank()) lines.add(line.trim());
+                    }
+                }
+            }
+        }
+        if (lines.isEmpty()) {
+            for (int i = 0; i < 200; i++) {
+                lines.add("Рядок документа номер " + i + " про виконання наказу та контроль за виконанням");
+            }
+        }
+        return lines;
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+    }
+}
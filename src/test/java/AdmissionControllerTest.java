@@ -0,0 +1,70 @@
+import org.example.analysis.AdmissionController;
+import org.example.analysis.JobScheduler;
+import org.example.service.TemplateCacheService;
+import org.example.untils.DocRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * <h2>AdmissionControllerTest</h2>
+ * <p>
+ *  Перевіряє допуск за вартістю: вартість — непорожні рядки × фрагменти знімка, сума оцінок документів
+ *  в аналізі не перевищує бюджету (але найдорожчий документ не блокується назавжди), а виміряний час
+ *  аналізу уточнює оцінку наступних документів.
+ * </p>
+ */
+public class AdmissionControllerTest {
+
+    @Test
+    public void keepsRunningWorkWithinBudget() {
+        // 1000 фрагментів × 100 нс = 0.1 мс на рядок; бюджет 10 мс
+        AdmissionController admission = new AdmissionController(templates(1000), 10, 100, 0.2);
+        JobScheduler scheduler = new JobScheduler(admission, 4, 1000, 100, Long.MAX_VALUE, 0);
+
+        scheduler.offer(request("scan", "x\n\n  \n".repeat(80)), false, null);   // 80 непорожніх рядків — 8 мс
+        scheduler.offer(request("memo", "x\n".repeat(10)), false, null);         // 1 мс
+        scheduler.offer(request("scan-2", "x\n".repeat(80)), false, null);       // 8 мс
+
+        JobScheduler.Job scan = scheduler.poll();
+        assertEquals(80, scan.getCost());
+        assertEquals(80_000, scan.getComparisons());
+        assertEquals("memo", scheduler.poll().getRequest().getDoc());
+        // Вільні місця є, але другий скан перевищив би бюджет
+        assertNull(scheduler.poll());
+
+        scheduler.finished(scan, 0);
+        assertEquals("scan-2", scheduler.poll().getRequest().getDoc());
+    }
+
+    @Test
+    public void admitsOversizedJobWhenIdleAndCalibratesFromMeasuredTime() {
+        AdmissionController admission = new AdmissionController(templates(100), 1, 100, 0.5);
+
+        long comparisons = admission.estimateComparisons(1000);
+        long reserved = admission.tryReserve(comparisons);
+        assertTrue(reserved > TimeUnit.MILLISECONDS.toNanos(1));
+        assertEquals(-1, admission.tryReserve(1));
+
+        // Аналіз тривав утричі довше за оцінку: 300 нс на порівняння, згладжено до 200
+        admission.release(reserved, comparisons, comparisons * 300);
+        assertEquals(200.0, (double) admission.getMetrics().get("nanosPerComparison"), 1e-9);
+        assertEquals(0L, admission.getMetrics().get("reservedMs"));
+    }
+
+    private static TemplateCacheService templates(int fragments) {
+        TemplateCacheService templates = mock(TemplateCacheService.class);
+        when(templates.getFragmentCount()).thenReturn(fragments);
+        return templates;
+    }
+
+    private static DocRequest request(String doc, String body) {
+        return new DocRequest("client-" + doc, doc, body, null);
+    }
+}
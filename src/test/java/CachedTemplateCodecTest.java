@@ -0,0 +1,76 @@
+import org.example.untils.CachedTemplateCodec;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * <h2>CachedTemplateCodecTest</h2>
+ * <p>
+ *  Перевіряє, що записи фрагментів відновлюють вектор (точно для float32, з похибкою квантування для int8),
+ *  а записи іншої моделі, старого формату без заголовка, обрізані чи з некоректною розмірністю
+ *  розкодовуються як відсутні (null).
+ * </p>
+ */
+public class CachedTemplateCodecTest {
+
+    private static final String MODEL = "paraphrase-multilingual-MiniLM-L12-v2";
+    private static final int DIMENSION = 384;
+
+    @Test
+    public void vectorRecordsRoundTrip() {
+        float[] vector = sampleVector();
+        byte[] float32 = CachedTemplateCodec.encodeVector(vector, CachedTemplateCodec.Encoding.FLOAT32, MODEL);
+        byte[] int8 = CachedTemplateCodec.encodeVector(vector, CachedTemplateCodec.Encoding.INT8, MODEL);
+        assertTrue(int8.length < float32.length / 3);
+
+        assertArrayEquals(vector, CachedTemplateCodec.decodeVector(float32, MODEL));
+        float[] restored = CachedTemplateCodec.decodeVector(int8, MODEL);
+        float maxAbs = 0;
+        for (float value : vector) maxAbs = Math.max(maxAbs, Math.abs(value));
+        for (int d = 0; d < DIMENSION; d++) {
+            assertEquals(vector[d], restored[d], maxAbs / 127f);
+        }
+    }
+
+    @Test
+    public void rejectsRecordOfAnotherModel() {
+        byte[] data = CachedTemplateCodec.encodeVector(sampleVector(), CachedTemplateCodec.Encoding.FLOAT32, MODEL);
+        assertNull(CachedTemplateCodec.decodeVector(data, "all-MiniLM-L6-v2"));
+    }
+
+    @Test
+    public void rejectsRecordWithoutHeader() {
+        // Попередній формат: лише байт формату і вектор
+        float[] vector = sampleVector();
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 4 * DIMENSION).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put((byte) 0).asFloatBuffer().put(vector);
+        assertNull(CachedTemplateCodec.decodeVector(buffer.array(), MODEL));
+    }
+
+    @Test
+    public void rejectsTruncatedAndCorruptRecords() {
+        for (CachedTemplateCodec.Encoding encoding : CachedTemplateCodec.Encoding.values()) {
+            byte[] data = CachedTemplateCodec.encodeVector(sampleVector(), encoding, MODEL);
+            for (int length : new int[]{0, 5, 10, data.length / 2, data.length - 1}) {
+                assertNull(CachedTemplateCodec.decodeVector(Arrays.copyOf(data, length), MODEL), encoding + " length " + length);
+            }
+
+            // Розмірність у заголовку не відповідає довжині вектора
+            byte[] corrupt = data.clone();
+            ByteBuffer.wrap(corrupt).order(ByteOrder.LITTLE_ENDIAN).putInt(6, DIMENSION / 2);
+            assertNull(CachedTemplateCodec.decodeVector(corrupt, MODEL), encoding.name());
+        }
+    }
+
+    private static float[] sampleVector() {
+        Random random = new Random(3);
+        float[] vector = new float[DIMENSION];
+        for (int d = 0; d < DIMENSION; d++) vector[d] = (float) random.nextGaussian() * 0.1f;
+        return vector;
+    }
+}
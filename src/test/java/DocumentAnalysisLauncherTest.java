@@ -0,0 +1,120 @@
+import org.example.analysis.AdmissionController;
+import org.example.analysis.DocumentAnalysisLauncher;
+import org.example.analysis.JobScheduler;
+import org.example.kafka.KafkaProducerService;
+import org.example.redis.RedisService;
+import org.example.service.MatcherServiceAsync;
+import org.example.untils.DocRequest;
+import org.example.untils.JsonSerializable;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * <h2>DocumentAnalysisLauncherTest</h2>
+ * <p>
+ *  Перевіряє запуск документів через планувальник: виміряний час аналізу уточнює оцінку вартості
+ *  ({@link AdmissionController#release}), лише якщо аналіз завершився; документ, аналіз якого обірвався
+ *  помилкою, звільняє бюджет без калібрування (час 0). Документи, прийняті, але ще не запущені, зберігаються
+ *  в Redis (у списках лише ідентифікатори, JSON — окремим ключем) і після перезапуску екземпляра
+ *  повертаються на початок черги в тому самому порядку.
+ * </p>
+ */
+public class DocumentAnalysisLauncherTest {
+
+    @Test
+    public void calibratesOnlyOnCompletedAnalysis() {
+        AdmissionController admission = admission();
+        MatcherServiceAsync matcher = mock(MatcherServiceAsync.class);
+        when(matcher.matchDocument(eq("client-1"), eq("ok"), anyList())).thenReturn(true);
+        when(matcher.matchDocument(eq("client-1"), eq("broken"), anyList())).thenReturn(false);
+        DocumentAnalysisLauncher launcher = launcher(inlineExecutor(), mock(RedisService.class), matcher,
+                new JobScheduler(admission, 1, 500, 16, Long.MAX_VALUE, 0));
+
+        launcher.addTaskAsync(new DocRequest("client-1", "broken", "НАКАЗ\nПро відпустку", null));
+        verify(admission).release(anyLong(), anyLong(), eq(0L));
+
+        launcher.addTaskAsync(new DocRequest("client-1", "ok", "НАКАЗ\nПро відпустку", null));
+        verify(admission).release(anyLong(), anyLong(), longThat(elapsed -> elapsed > 0));
+    }
+
+    @Test
+    public void restoresNotStartedDocumentsAfterRestart() {
+        Map<String, Deque<String>> redis = new HashMap<>();
+        Map<String, String> values = new HashMap<>();
+        RedisService redisService = TestFixtures.fakeRedis(new HashMap<>(), values, redis);
+        MatcherServiceAsync matcher = mock(MatcherServiceAsync.class);
+        when(matcher.matchDocument(anyString(), anyString(), anyList())).thenReturn(true);
+
+        // Пул приймає задачі, але екземпляр зупиняється раніше, ніж вони почнуть виконуватися
+        List<Runnable> accepted = new ArrayList<>();
+        ThreadPoolTaskExecutor executor = mock(ThreadPoolTaskExecutor.class);
+        doAnswer(inv -> accepted.add(inv.getArgument(0))).when(executor).execute(any(Runnable.class));
+        DocumentAnalysisLauncher first = launcher(executor, redisService, matcher,
+                new JobScheduler(admission(), 1, 500, 1, Long.MAX_VALUE, 0));
+
+        first.addTaskAsync(new DocRequest("client-1", "doc-1", "НАКАЗ", null));
+        first.addTaskAsync(new DocRequest("client-1", "doc-2", "НАКАЗ", null));
+        first.addTaskAsync(new DocRequest("client-2", "doc-3", "НАКАЗ", null));
+        first.addTaskAsync(new DocRequest("client-3", "doc-4", "НАКАЗ", null));
+        // doc-1 отримав місце, doc-2 чекає в пам'яті, решта не вмістилася і пішла в Redis чергу
+        assertEquals(1, accepted.size());
+        assertEquals(List.of("doc-1", "doc-2"), docs(values, redis.get("requestQueue:pending:matcher-0")));
+        assertEquals(List.of("doc-3", "doc-4"), docs(values, redis.get("requestQueue")));
+
+        // doc-1 запускається і прибирається з Redis; doc-2 отримує звільнене місце, але стартувати не встигає
+        accepted.get(0).run();
+        assertEquals(2, accepted.size());
+        assertEquals(List.of("doc-2"), docs(values, redis.get("requestQueue:pending:matcher-0")));
+        // JSON запущеного документа видалено, решта зберігається по одному разу
+        assertEquals(3, values.size());
+        assertTrue(redis.values().stream().flatMap(Collection::stream).allMatch(id -> id.length() <= 36));
+
+        // Перезапуск з тим самим ідентифікатором: незапущені документи повертаються на початок черги
+        DocumentAnalysisLauncher restarted = launcher(executor, redisService, matcher,
+                new JobScheduler(admission(), 1, 500, 1, Long.MAX_VALUE, 0));
+        restarted.startQueueConsumer();
+        assertEquals(List.of("doc-2", "doc-3", "doc-4"), docs(values, redis.get("requestQueue")));
+        assertTrue(redis.get("requestQueue:pending:matcher-0").isEmpty());
+    }
+
+    private static AdmissionController admission() {
+        AdmissionController admission = mock(AdmissionController.class);
+        when(admission.estimateComparisons(anyLong())).thenReturn(100L);
+        when(admission.tryReserve(anyLong())).thenReturn(1L);
+        return admission;
+    }
+
+    /**
+     * Задачі виконуються одразу в потоці виклику
+     */
+    private static ThreadPoolTaskExecutor inlineExecutor() {
+        ThreadPoolTaskExecutor executor = mock(ThreadPoolTaskExecutor.class);
+        doAnswer(inv -> {
+            inv.<Runnable>getArgument(0).run();
+            return null;
+        }).when(executor).execute(any(Runnable.class));
+        return executor;
+    }
+
+    private static List<String> docs(Map<String, String> values, Deque<String> line) {
+        return line.stream()
+                .map(id -> JsonSerializable.fromJson(values.get("requestQueue:doc:" + id), DocRequest.class).getDoc())
+                .toList();
+    }
+
+    private static DocumentAnalysisLauncher launcher(ThreadPoolTaskExecutor executor, RedisService redisService,
+                                                     MatcherServiceAsync matcher, JobScheduler scheduler) {
+        DocumentAnalysisLauncher launcher = new DocumentAnalysisLauncher(executor, redisService, matcher,
+                scheduler, 1, 262144, 10000, false, 1000, 1000, "matcher-0");
+        ReflectionTestUtils.setField(launcher, "kafkaProducerService", mock(KafkaProducerService.class));
+        return launcher;
+    }
+}
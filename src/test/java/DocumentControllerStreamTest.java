@@ -0,0 +1,90 @@
+import org.example.analysis.DocumentAnalysisLauncher;
+import org.example.controller.DocumentController;
+import org.example.service.match.DocumentLineReader;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * <h2>DocumentControllerStreamTest</h2>
+ * <p>
+ *  Перевіряє коди відповіді потокового завантаження <code>/api/match/stream</code>: некоректний NDJSON
+ *  повертає 400, помилка моделі — 500, а коректний документ читається повністю і повертає 200.
+ * </p>
+ */
+public class DocumentControllerStreamTest {
+
+    private DocumentAnalysisLauncher launcher;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void setUp() {
+        launcher = mock(DocumentAnalysisLauncher.class);
+        DocumentController controller = new DocumentController();
+        ReflectionTestUtils.setField(controller, "documentAnalysisLauncher", launcher);
+        ReflectionTestUtils.setField(controller, "maxLineChars", 1000);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @Test
+    public void acceptsWellFormedNdjson() throws Exception {
+        List<String> lines = new ArrayList<>();
+        when(launcher.matchStream(anyString(), anyString(), any())).thenAnswer(inv -> {
+            DocumentLineReader reader = inv.getArgument(2);
+            String line;
+            while ((line = reader.next()) != null) lines.add(line);
+            return true;
+        });
+
+        mockMvc.perform(stream(MediaType.APPLICATION_NDJSON, "\"НАКАЗ\"\n{\"text\": \"Про відпустку\"}\n"))
+                .andExpect(status().isOk());
+        assertEquals(List.of("НАКАЗ", "Про відпустку"), lines);
+    }
+
+    @Test
+    public void rejectsMalformedNdjsonWithBadRequest() throws Exception {
+        when(launcher.matchStream(anyString(), anyString(), any())).thenAnswer(inv -> {
+            DocumentLineReader reader = inv.getArgument(2);
+            while (reader.next() != null) {
+                // читаємо до помилки формату
+            }
+            return true;
+        });
+
+        mockMvc.perform(stream(MediaType.APPLICATION_NDJSON, "\"НАКАЗ\"\n{\"text\": \n"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void reportsModelFailureAsServerError() throws Exception {
+        when(launcher.matchStream(anyString(), anyString(), any()))
+                .thenThrow(new ExecutionException(new IllegalStateException("predictor failed")));
+
+        mockMvc.perform(stream(MediaType.TEXT_PLAIN, "НАКАЗ\nПро відпустку\n"))
+                .andExpect(status().isInternalServerError());
+    }
+
+    private static MockHttpServletRequestBuilder stream(MediaType type, String body) {
+        return post("/api/match/stream")
+                .param("clientId", "client1")
+                .param("doc", "doc-1")
+                .contentType(type)
+                .content(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,49 @@
+import org.example.service.match.DocumentLineReader;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * <h2>DocumentLineReaderTest</h2>
+ * <p>
+ *  Перевіряє потокове читання рядків документа: очищення й пропуск порожніх рядків,
+ *  обрізання надто довгих рядків і розбір NDJSON (рядки-значення та об'єкти з полем <code>text</code>).
+ * </p>
+ */
+public class DocumentLineReaderTest {
+
+    @Test
+    public void readsCleanedTextLinesAndTruncatesLongOnes() throws IOException {
+        String text = "НАКАЗ\r\n\r\n  Про   відрядження  \n" + "а".repeat(50) + "\nостанній рядок";
+        DocumentLineReader reader = new DocumentLineReader(new StringReader(text), DocumentLineReader.Format.TEXT, 30);
+
+        assertEquals(List.of("НАКАЗ", "Про відрядження", "а".repeat(30), "останній рядок"), readAll(reader));
+        assertEquals(1, reader.getTruncatedLines());
+        assertEquals(text.length(), reader.getCharsRead());
+    }
+
+    @Test
+    public void readsNdjsonStringsAndObjects() throws IOException {
+        String ndjson = "\"НАКАЗ\"\n{\"text\": \"Про  відпустку\"}\n\n{\"other\": 1}\n";
+        DocumentLineReader reader = new DocumentLineReader(new StringReader(ndjson), DocumentLineReader.Format.NDJSON, 1000);
+        assertEquals(List.of("НАКАЗ", "Про відпустку"), readAll(reader));
+
+        DocumentLineReader broken = new DocumentLineReader(new StringReader("{\"text\": \n"), DocumentLineReader.Format.NDJSON, 1000);
+        assertThrows(IOException.class, broken::next);
+    }
+
+    private static List<String> readAll(DocumentLineReader reader) throws IOException {
+        List<String> lines = new ArrayList<>();
+        String line;
+        while ((line = reader.next()) != null) {
+            lines.add(line);
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,88 @@
+import ai.djl.inference.Predictor;
+import org.example.loader.EmbeddingBatcher;
+import org.example.loader.ModelLoader;
+import org.example.loader.PredictorPool;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * <h2>EmbeddingBatcherTest</h2>
+ * <p>
+ *  Перевіряє пакетування з підставним предиктором: результати повертаються в порядку запиту,
+ *  запити після зупинки одразу завершуються з помилкою, а синхронне очікування обмежене в часі,
+ *  навіть якщо модель не відповідає.
+ * </p>
+ */
+public class EmbeddingBatcherTest {
+
+    @Test
+    public void returnsEmbeddingsInRequestOrder() throws Exception {
+        EmbeddingBatcher batcher = batcher(new CountDownLatch(0), 60_000);
+        try {
+            List<float[]> embeddings = batcher.embedAllAndWait(List.of("a", "bbb", "a", "cc"));
+            assertEquals(List.of(1f, 3f, 1f, 2f), embeddings.stream().map(vector -> vector[0]).toList());
+        } finally {
+            batcher.stop();
+        }
+    }
+
+    @Test
+    public void rejectsRequestsAfterStop() {
+        EmbeddingBatcher batcher = batcher(new CountDownLatch(0), 60_000);
+        batcher.stop();
+
+        CompletableFuture<float[]> future = batcher.embed("пізній запит");
+        assertTrue(future.isCompletedExceptionally());
+        assertThrows(ExecutionException.class, () -> batcher.embedAllAndWait(List.of("пізній запит")));
+    }
+
+    @Test
+    public void waitIsBoundedWhenModelHangs() {
+        CountDownLatch model = new CountDownLatch(1);
+        EmbeddingBatcher batcher = batcher(model, 100);
+        try {
+            long start = System.nanoTime();
+            ExecutionException e = assertThrows(ExecutionException.class, () -> batcher.embedAllAndWait(List.of("рядок")));
+            assertInstanceOf(TimeoutException.class, e.getCause());
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        } finally {
+            model.countDown();
+            batcher.stop();
+        }
+    }
+
+    /**
+     * @param model предиктор відповідає лише після відкриття засувки
+     */
+    @SuppressWarnings("unchecked")
+    private static EmbeddingBatcher batcher(CountDownLatch model, long waitTimeoutMs) {
+        Predictor<String, float[]> predictor = mock(Predictor.class);
+        try {
+            when(predictor.batchPredict(anyList())).thenAnswer(inv -> {
+                model.await();
+                return ((List<String>) inv.getArgument(0)).stream().map(text -> new float[]{text.length()}).toList();
+            });
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        ModelLoader modelLoader = mock(ModelLoader.class);
+        when(modelLoader.newPredictor()).thenReturn(predictor);
+        PredictorPool predictorPool = new PredictorPool(modelLoader, 2);
+        predictorPool.init();
+
+        EmbeddingBatcher batcher = new EmbeddingBatcher(predictorPool, 8, 1, 2, waitTimeoutMs);
+        batcher.start();
+        return batcher;
+    }
+}
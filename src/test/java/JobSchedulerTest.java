@@ -0,0 +1,91 @@
+import org.example.analysis.AdmissionController;
+import org.example.analysis.JobScheduler;
+import org.example.service.TemplateCacheService;
+import org.example.untils.DocRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * <h2>JobSchedulerTest</h2>
+ * <p>
+ *  Перевіряє справедливий розподіл місць: клієнти з чергою документів чергуються за вартістю,
+ *  інтерактивні запити випереджають пакетні ({@code insider}), пакетні не займають останнього місця,
+ *  а черга в пам'яті обмежена.
+ * </p>
+ */
+public class JobSchedulerTest {
+
+    @Test
+    public void sharesSlotByCostBetweenClients() {
+        JobScheduler scheduler = scheduler(1, 100, 100);
+        for (int i = 0; i < 6; i++) {
+            scheduler.offer(request("bulky", "big-" + i, 100), false, null);
+        }
+        scheduler.offer(request("small", "a", 50), false, null);
+        scheduler.offer(request("small", "b", 50), false, null);
+        scheduler.offer(request("small", "c", 50), false, null);
+
+        List<String> order = new ArrayList<>();
+        JobScheduler.Job job;
+        while ((job = scheduler.poll()) != null) {
+            order.add(job.getRequest().getDoc());
+            scheduler.finished(job, 0);
+        }
+        // Клієнт з дешевими документами отримує стільки ж вартості за коло, скільки й клієнт з дорогими
+        assertEquals(List.of("big-0", "a", "b", "big-1", "c", "big-2", "big-3", "big-4", "big-5"), order);
+    }
+
+    @Test
+    public void interactiveJobsGoFirstAndBulkLeavesOneSlot() {
+        JobScheduler scheduler = scheduler(2, 100, 100);
+        scheduler.offer(request("insider", "bulk-1", 1), false, null);
+        scheduler.offer(request("insider", "bulk-2", 1), false, null);
+        scheduler.offer(request("client-1", "interactive", 1), false, null);
+
+        JobScheduler.Job first = scheduler.poll();
+        assertEquals("interactive", first.getRequest().getDoc());
+        JobScheduler.Job second = scheduler.poll();
+        assertEquals("bulk-1", second.getRequest().getDoc());
+        scheduler.finished(first, 0);
+
+        // Одне місце вільне, але пакетна обробка вже займає свій ліміт (усі місця, крім одного)
+        assertNull(scheduler.poll());
+        scheduler.finished(second, 0);
+        assertEquals("bulk-2", scheduler.poll().getRequest().getDoc());
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> bulk = (Map<String, Object>) scheduler.getMetrics().get("bulk");
+        assertEquals(2L, bulk.get("dispatched"));
+        assertEquals(0, bulk.get("queueDepth"));
+    }
+
+    @Test
+    public void boundsPendingJobsUnlessForced() {
+        JobScheduler scheduler = scheduler(1, 100, 2);
+        assertNotNull(scheduler.offer(request("client-1", "a", 1), false, null));
+        assertNotNull(scheduler.offer(request("client-1", "b", 1), false, null));
+        assertNull(scheduler.offer(request("client-2", "c", 1), false, null));
+        assertNotNull(scheduler.offer(request("client-2", "d", 1), true, null));
+        assertEquals(3, scheduler.getMetrics().get("pending"));
+    }
+
+    private static JobScheduler scheduler(int slots, long quantum, int maxPending) {
+        TemplateCacheService templates = mock(TemplateCacheService.class);
+        when(templates.getFragmentCount()).thenReturn(10);
+        // Бюджет обчислень не обмежений: перевіряється лише черговість
+        return new JobScheduler(new AdmissionController(templates, 0, 200, 0.2), slots, quantum, maxPending, Long.MAX_VALUE, 0);
+    }
+
+    private static DocRequest request(String clientId, String doc, int lines) {
+        return new DocRequest(clientId, doc, "рядок\n".repeat(lines - 1) + "рядок", null);
+    }
+}
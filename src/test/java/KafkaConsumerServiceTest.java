@@ -0,0 +1,105 @@
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.example.analysis.DocumentAnalysisLauncher;
+import org.example.kafka.KafkaConsumerService;
+import org.example.kafka.KafkaProducerService;
+import org.example.untils.Response;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * <h2>KafkaConsumerServiceTest</h2>
+ * <p>
+ *  Перевіряє пакетний слухач топіку <code>analysis</code>: запис, який не вдається прийняти через збій
+ *  інфраструктури, читається повторно з подвоєнням паузи і ніколи не потрапляє в <code>analysis.DLT</code>;
+ *  некоректний запис пересилається туди одразу, а клієнт отримує відповідь з помилкою в <code>after-analysis</code>.
+ * </p>
+ */
+public class KafkaConsumerServiceTest {
+
+    private static final String REQUEST = "{\"clientId\":\"client-1\",\"doc\":\"doc-1\",\"body\":\"НАКАЗ\"}";
+
+    @Test
+    public void retriesInfrastructureFailureWithBackoffWithoutDeadLetter() {
+        DocumentAnalysisLauncher launcher = mock(DocumentAnalysisLauncher.class);
+        when(launcher.addTaskAsync(any())).thenReturn(new Response("Redis is down", 500));
+        KafkaProducerService producer = mock(KafkaProducerService.class);
+        KafkaConsumerService consumer = consumer(launcher, producer);
+
+        List<ConsumerRecord<String, String>> batch = List.of(new ConsumerRecord<>("analysis", 2, 41, "client-1", REQUEST));
+        Acknowledgment ack = mock(Acknowledgment.class);
+        for (int attempt = 0; attempt < 6; attempt++) {
+            consumer.listenBatch(batch, ack);
+        }
+        // 100, 200, 400, 800 мс, далі не більше max-nack-sleep-ms
+        ArgumentCaptor<Duration> sleeps = ArgumentCaptor.forClass(Duration.class);
+        verify(ack, times(6)).nack(eq(0), sleeps.capture());
+        assertEquals(List.of(100L, 200L, 400L, 800L, 1000L, 1000L),
+                sleeps.getAllValues().stream().map(Duration::toMillis).toList());
+        verify(ack, never()).acknowledge();
+        verifyNoInteractions(producer);
+    }
+
+    @Test
+    public void restartsBackoffForNextRecord() {
+        DocumentAnalysisLauncher launcher = mock(DocumentAnalysisLauncher.class);
+        when(launcher.addTaskAsync(any())).thenReturn(new Response("busy", 500), null, new Response("busy", 500));
+        KafkaProducerService producer = mock(KafkaProducerService.class);
+        KafkaConsumerService consumer = consumer(launcher, producer);
+        Acknowledgment ack = mock(Acknowledgment.class);
+
+        consumer.listenBatch(List.of(new ConsumerRecord<>("analysis", 0, 10, "client-1", REQUEST)), ack);
+        // Запис прийнято з другої спроби; наступний запис починає відлік заново
+        consumer.listenBatch(List.of(new ConsumerRecord<>("analysis", 0, 10, "client-1", REQUEST),
+                new ConsumerRecord<>("analysis", 0, 11, "client-1", REQUEST)), ack);
+        verify(ack).nack(0, Duration.ofMillis(100));
+        verify(ack).nack(1, Duration.ofMillis(100));
+        verifyNoInteractions(producer);
+    }
+
+    @Test
+    public void sendsMalformedRecordToDeadLetterTopic() {
+        DocumentAnalysisLauncher launcher = mock(DocumentAnalysisLauncher.class);
+        KafkaProducerService producer = mock(KafkaProducerService.class);
+        Acknowledgment ack = mock(Acknowledgment.class);
+
+        consumer(launcher, producer).listenBatch(List.of(new ConsumerRecord<>("analysis", 0, 5, "client-1", "{broken")), ack);
+        verify(producer).sendMessage(KafkaConsumerService.DEAD_LETTER_TOPIC, "client-1", "{broken");
+        verify(producer).sendMessage(eq("after-analysis"), eq("client-1"), contains("/queue/result"));
+        verify(ack).acknowledge();
+        verifyNoInteractions(launcher);
+    }
+
+    @Test
+    public void sendsRecordWithoutBodyToDeadLetterTopic() {
+        DocumentAnalysisLauncher launcher = mock(DocumentAnalysisLauncher.class);
+        KafkaProducerService producer = mock(KafkaProducerService.class);
+        Acknowledgment ack = mock(Acknowledgment.class);
+        String request = "{\"doc\":\"doc-1\"}";
+
+        consumer(launcher, producer).listenBatch(List.of(new ConsumerRecord<>("analysis", 0, 6, "client-1", request)), ack);
+        verify(producer).sendMessage(KafkaConsumerService.DEAD_LETTER_TOPIC, "client-1", request);
+        verify(producer).sendMessage(eq("after-analysis"), eq("client-1"), contains("doc-1"));
+        verify(ack).acknowledge();
+        verifyNoInteractions(launcher);
+    }
+
+    private static KafkaConsumerService consumer(DocumentAnalysisLauncher launcher, KafkaProducerService producer) {
+        KafkaConsumerService consumer = new KafkaConsumerService();
+        ReflectionTestUtils.setField(consumer, "documentAnalysisLauncher", launcher);
+        ReflectionTestUtils.setField(consumer, "kafkaProducerService", producer);
+        ReflectionTestUtils.setField(consumer, "nackSleepMs", 100L);
+        ReflectionTestUtils.setField(consumer, "maxNackSleepMs", 1000L);
+        return consumer;
+    }
+}
@@ -0,0 +1,107 @@
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.example.kafka.KafkaProducerService;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.mock.MockProducerFactory;
+import org.springframework.kafka.support.SendResult;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * <h2>KafkaProducerServiceTest</h2>
+ * <p>
+ *  Перевіряє асинхронне надсилання через outbox: виклик не чекає на брокер, ключ запису — ідентифікатор
+ *  клієнта, а при заповненому outbox повідомлення відкидається одразу, без блокування викликача.
+ * </p>
+ */
+public class KafkaProducerServiceTest {
+
+    @Test
+    public void sendReturnsBeforeBrokerAcknowledges() throws Exception {
+        MockProducer<String, String> producer = new SharedProducer(false, null);
+        KafkaProducerService service = new KafkaProducerService(new MockProducerFactory<>(() -> producer), 100, 10, 65536, "none");
+
+        CompletableFuture<SendResult<String, String>> future = service.sendMessage("after-analysis", "client-1", "{}");
+        assertFalse(future.isDone());
+
+        await(() -> producer.history().size() == 1);
+        assertEquals("client-1", producer.history().get(0).key());
+        producer.completeNext();
+
+        assertEquals("after-analysis", future.get(1, TimeUnit.SECONDS).getRecordMetadata().topic());
+        assertEquals(1L, service.getMetrics().get("sent"));
+        service.shutdown();
+    }
+
+    @Test
+    public void fullOutboxRejectsWithoutBlocking() throws Exception {
+        CountDownLatch broker = new CountDownLatch(1);
+        MockProducer<String, String> producer = new SharedProducer(true, broker);
+        KafkaProducerService service = new KafkaProducerService(new MockProducerFactory<>(() -> producer), 1, 10, 65536, "none");
+
+        CompletableFuture<SendResult<String, String>> first = service.sendMessage("after-analysis", "a", "1");
+        await(() -> (int) service.getMetrics().get("inFlight") == 1);
+        CompletableFuture<SendResult<String, String>> queued = service.sendMessage("after-analysis", "a", "2");
+        CompletableFuture<SendResult<String, String>> rejected = service.sendMessage("after-analysis", "a", "3");
+
+        assertTrue(rejected.isCompletedExceptionally());
+        assertThrows(ExecutionException.class, rejected::get);
+        assertEquals(1L, service.getMetrics().get("dropped"));
+
+        broker.countDown();
+        first.get(1, TimeUnit.SECONDS);
+        queued.get(1, TimeUnit.SECONDS);
+        service.shutdown();
+    }
+
+    /**
+     * Продюсер, спільний для всіх надсилань (як у DefaultKafkaProducerFactory: закриття шаблоном ігнорується).
+     * Якщо задано {@code broker}, надсилання блокується до його відкриття — як при недоступних метаданих топіка.
+     */
+    private static class SharedProducer extends MockProducer<String, String> {
+        private final CountDownLatch broker;
+
+        SharedProducer(boolean autoComplete, CountDownLatch broker) {
+            super(autoComplete, new StringSerializer(), new StringSerializer());
+            this.broker = broker;
+        }
+
+        @Override
+        public Future<RecordMetadata> send(ProducerRecord<String, String> record, Callback callback) {
+            if (broker != null) {
+                try {
+                    broker.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return super.send(record, callback);
+        }
+
+        @Override
+        public void close(Duration timeout) {
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not reached");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+import org.example.service.match.LexicalIndex;
+import org.example.service.match.TemplateMatrix;
+import org.example.service.match.TemplateSnapshot;
+import org.example.untils.CachedTemplate;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * <h2>LexicalIndexTest</h2>
+ * <p>
+ *  Перевіряє, що BM25-ранжування ставить першим шаблон зі спільною лексикою
+ *  і що покриття лексики документа рахується лише по обраних шаблонах.
+ * </p>
+ */
+public class LexicalIndexTest {
+
+    @Test
+    public void ranksTemplateWithSharedVocabularyFirst() {
+        Map<String, TemplateMatrix> templates = new LinkedHashMap<>();
+        templates.put("vidriadzhennia.json", template("Наказ про відрядження", "Відрядити працівника до міста Києва"));
+        templates.put("vidpustka.json", template("Наказ про відпустку", "Надати щорічну відпустку працівнику"));
+        templates.put("premiia.json", template("Наказ про преміювання", "Виплатити премію за квартал"));
+        TemplateSnapshot snapshot = new TemplateSnapshot(1, templates);
+
+        LexicalIndex index = LexicalIndex.of(snapshot);
+        Set<String> stems = LexicalIndex.stems(List.of("Надати відпустку працівнику Петренку", "з 1 липня"));
+        List<LexicalIndex.Candidate> ranked = index.rank(stems);
+
+        assertEquals("vidpustka.json", ranked.get(0).template());
+        assertEquals(0.0, ranked.get(2).score());
+        assertEquals(1.0, index.coverage(stems, Set.of("vidpustka.json")));
+        assertTrue(index.coverage(stems, Set.of("premiia.json")) < 0.5);
+    }
+
+    private static TemplateMatrix template(String title, String order) {
+        Map<String, List<String>> fragments = new LinkedHashMap<>();
+        fragments.put("title", List.of(title));
+        fragments.put("orders_1", List.of(order));
+        return TemplateMatrix.compile(title, new CachedTemplate(fragments, Map.of()));
+    }
+}
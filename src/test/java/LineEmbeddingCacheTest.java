@@ -0,0 +1,107 @@
+import org.example.loader.EmbeddingBatcher;
+import org.example.loader.LineEmbeddingCache;
+import org.example.loader.ModelLoader;
+import org.example.redis.RedisService;
+import org.example.service.FragmentEmbeddingStore;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.*;
+
+/**
+ * <h2>LineEmbeddingCacheTest</h2>
+ * <p>
+ *  Перевіряє другий рівень кешу рядків у Redis: рядки документів зберігаються під власним префіксом
+ *  {@code LineEmbedding:} з часом життя (а не як постійні записи {@code Fragment:}), і інший екземпляр
+ *  сервісу знаходить їх без виклику моделі. Строк очікування діє і з увімкненим Redis, а запізнілі
+ *  embedding-и все одно зберігаються.
+ * </p>
+ */
+public class LineEmbeddingCacheTest {
+
+    private static final Duration TTL = Duration.ofSeconds(600);
+
+    @Test
+    public void storesLinesUnderOwnPrefixWithExpiry() throws Exception {
+        Map<String, byte[]> redis = new HashMap<>();
+        RedisService redisService = TestFixtures.fakeRedis(redis, new HashMap<>(), new HashMap<>());
+        EmbeddingBatcher batcher = fakeBatcher();
+
+        List<String> lines = List.of("Наказую:", "Контроль за виконанням наказу залишаю за собою");
+        List<float[]> first = cache(batcher, redisService).embedAll(lines);
+        assertEquals(2, first.size());
+        assertEquals(2, redis.size());
+        assertTrue(redis.keySet().stream().allMatch(key -> key.startsWith("LineEmbedding:")));
+        verify(redisService).saveBytes(anyMap(), eq(TTL));
+        verify(redisService, never()).saveBytes(anyMap());
+
+        // Інший екземпляр (порожній перший рівень) бере рядки з Redis
+        clearInvocations(batcher);
+        List<float[]> second = cache(batcher, redisService).embedAll(lines);
+        verifyNoInteractions(batcher);
+        for (int i = 0; i < lines.size(); i++) {
+            assertArrayEquals(first.get(i), second.get(i));
+        }
+    }
+
+    @Test
+    public void fallsBackToModelWhenRedisIsDown() throws Exception {
+        RedisService redisService = mock(RedisService.class);
+        when(redisService.getBytes(anyList())).thenThrow(new IllegalStateException("connection refused"));
+        doThrow(new IllegalStateException("connection refused")).when(redisService).saveBytes(anyMap(), any(Duration.class));
+
+        LineEmbeddingCache cache = cache(fakeBatcher(), redisService);
+        assertEquals(1, cache.embedAll(List.of("Наказую:")).size());
+        assertEquals(2L, cache.getMetrics().get("redisFailures"));
+    }
+
+    @Test
+    public void appliesDeadlineToRedisTierAndKeepsLateResults() throws Exception {
+        Map<String, byte[]> redis = new HashMap<>();
+        RedisService redisService = TestFixtures.fakeRedis(redis, new HashMap<>(), new HashMap<>());
+        CompletableFuture<List<float[]>> slow = new CompletableFuture<>();
+        EmbeddingBatcher batcher = mock(EmbeddingBatcher.class);
+        when(batcher.embedAll(anyList())).thenReturn(slow);
+
+        LineEmbeddingCache cache = cache(batcher, redisService);
+        List<String> lines = List.of("Наказую:");
+        long start = System.nanoTime();
+        assertThrows(TimeoutException.class, () -> cache.embedAll(lines, TimeUnit.MILLISECONDS.toNanos(50)));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertTrue(redis.isEmpty());
+
+        // Модель відповіла після строку — результат потрапляє і в кеш, і в Redis
+        slow.complete(vectors(lines));
+        assertEquals(1, redis.size());
+        assertEquals(1, cache.embedAll(lines, 0).size());
+    }
+
+    private static LineEmbeddingCache cache(EmbeddingBatcher batcher, RedisService redisService) {
+        ModelLoader modelLoader = mock(ModelLoader.class);
+        when(modelLoader.getModelName()).thenReturn("test-model");
+        FragmentEmbeddingStore fragmentStore = new FragmentEmbeddingStore(redisService, batcher, modelLoader, "float32");
+        return new LineEmbeddingCache(batcher, fragmentStore, redisService, 1 << 20, true, TTL.toSeconds());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static EmbeddingBatcher fakeBatcher() {
+        EmbeddingBatcher batcher = mock(EmbeddingBatcher.class);
+        when(batcher.embedAll(anyList())).thenAnswer(inv -> CompletableFuture.completedFuture(vectors(inv.getArgument(0))));
+        return batcher;
+    }
+
+    private static List<float[]> vectors(List<String> texts) {
+        return texts.stream().map(text -> new float[]{text.length(), text.hashCode() % 7, 1f}).toList();
+    }
+}
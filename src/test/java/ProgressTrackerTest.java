@@ -0,0 +1,75 @@
+import org.example.kafka.KafkaProducerService;
+import org.example.service.ProgressTracker;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * <h2>ProgressTrackerTest</h2>
+ * <p>
+ *  Перевіряє прогрес аналізу окремо для кожного документа: проміжні відсотки згортаються в межах
+ *  інтервалу, 100% надсилається одразу, задачі різних клієнтів не впливають одна на одну,
+ *  а закрита задача зникає зі списку активних.
+ * </p>
+ */
+public class ProgressTrackerTest {
+
+    @Test
+    public void coalescesUpdatesAndFlushesCompletionImmediately() {
+        KafkaProducerService producer = mock(KafkaProducerService.class);
+        ProgressTracker tracker = new ProgressTracker(producer, 3_600_000);
+
+        try (ProgressTracker.Job job = tracker.start("client-1", "doc-1")) {
+            job.total(10);
+            for (int processed = 1; processed <= 9; processed++) {
+                job.update(processed);
+            }
+            job.complete();
+        }
+
+        ArgumentCaptor<String> messages = ArgumentCaptor.forClass(String.class);
+        verify(producer, times(2)).sendMessage(eq("after-analysis"), eq("client-1"), messages.capture());
+        assertTrue(messages.getAllValues().get(0).contains("10%"));
+        assertTrue(messages.getAllValues().get(1).contains("100%"));
+        assertEquals(0, tracker.getActiveJobs().size());
+    }
+
+    @Test
+    public void keepsSeparateStatePerJob() {
+        KafkaProducerService producer = mock(KafkaProducerService.class);
+        ProgressTracker tracker = new ProgressTracker(producer, 0);
+
+        ProgressTracker.Job first = tracker.start("client-1", "doc-1");
+        ProgressTracker.Job second = tracker.start("insider", "doc-2");
+        first.total(4);
+        second.total(2);
+        first.update(1);
+        second.update(1);
+        first.update(1);
+
+        List<Map<String, Object>> jobs = tracker.getActiveJobs();
+        assertEquals(2, jobs.size());
+        assertEquals("doc-1", jobs.get(0).get("doc"));
+        assertEquals(25, jobs.get(0).get("percent"));
+        assertEquals(50, jobs.get(1).get("percent"));
+
+        // Той самий відсоток не надсилається повторно, insider повідомлень не отримує
+        verify(producer, times(1)).sendMessage(eq("after-analysis"), eq("client-1"), anyString());
+        verify(producer, never()).sendMessage(eq("after-analysis"), eq("insider"), anyString());
+
+        second.close();
+        assertEquals(List.of("doc-1"), tracker.getActiveJobs().stream().map(job -> job.get("doc")).toList());
+        first.close();
+    }
+}
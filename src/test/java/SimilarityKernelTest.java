@@ -0,0 +1,164 @@
+import org.example.service.match.DocumentLines;
+import org.example.service.match.QuantizedMatrix;
+import org.example.service.match.TemplateMatrix;
+import org.example.service.match.TemplateSnapshot;
+import org.example.service.match.TemplateSnapshotFile;
+import org.example.service.score.DocumentScoring;
+import org.example.service.score.Int8Kernel;
+import org.example.service.score.Int8ScoringBackend;
+import org.example.service.score.JavaScoringBackend;
+import org.example.service.score.SimilarityKernel;
+import org.example.service.score.SimilarityKernels;
+import org.example.untils.CachedTemplate;
+import org.example.untils.TextSimilarityUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * <h2>SimilarityKernelTest</h2>
+ * <p>
+ *  Перевіряє, що ядра порівняння ({@link SimilarityKernels#scalar()} та {@link SimilarityKernels#best()})
+ *  знаходять той самий найкращий фрагмент, що й попарний {@link TextSimilarityUtils#cosineSimilarity}.
+ *  Кількість рядків і розмірність навмисно не кратні ширині вектора та розміру блоку.
+ *  Бекенд int8 тримає в купі лише int8-коди шаблону, а кандидатів перераховує точно по float-векторах
+ *  відображеного файлу знімка — з тим самим результатом, що й бекенд java.
+ * </p>
+ */
+public class SimilarityKernelTest {
+
+    private static final int DIMENSION = 387;
+    private static final int LINES = 23;
+    private static final int FRAGMENTS = 131;
+
+    @Test
+    public void kernelsMatchPairwiseCosineSimilarity() {
+        Random random = new Random(7);
+        float[][] lines = randomVectors(random, LINES);
+        float[][] fragments = randomVectors(random, FRAGMENTS);
+
+        float[] packedLines = pack(lines);
+        float[] packedFragments = pack(fragments);
+
+        for (SimilarityKernel kernel : new SimilarityKernel[]{SimilarityKernels.scalar(), SimilarityKernels.best()}) {
+            int[] bestRow = new int[LINES];
+            float[] bestScore = new float[LINES];
+            kernel.bestMatches(packedLines, LINES, packedFragments, FRAGMENTS, DIMENSION, bestRow, bestScore);
+
+            for (int line = 0; line < LINES; line++) {
+                int expectedRow = -1;
+                double expectedScore = -1;
+                for (int fragment = 0; fragment < FRAGMENTS; fragment++) {
+                    double score = TextSimilarityUtils.cosineSimilarity(fragments[fragment], lines[line]);
+                    if (score > expectedScore) {
+                        expectedScore = score;
+                        expectedRow = fragment;
+                    }
+                }
+                assertEquals(expectedRow, bestRow[line], kernel.name() + ": рядок " + line);
+                assertEquals(expectedScore, bestScore[line], 1e-4, kernel.name() + ": рядок " + line);
+            }
+        }
+    }
+
+    @Test
+    public void int8KernelsApproximateDotProduct() {
+        Random random = new Random(11);
+        float[] lines = pack(randomVectors(random, LINES));
+        float[] fragments = pack(randomVectors(random, FRAGMENTS));
+        QuantizedMatrix quantizedLines = QuantizedMatrix.quantize(lines, LINES, DIMENSION);
+        QuantizedMatrix quantizedFragments = QuantizedMatrix.quantize(fragments, FRAGMENTS, DIMENSION);
+
+        for (Int8Kernel kernel : new Int8Kernel[]{SimilarityKernels.scalarInt8(), SimilarityKernels.bestInt8()}) {
+            float[] scores = new float[LINES * FRAGMENTS];
+            kernel.scores(quantizedLines.getCodes(), quantizedLines.getScales(), LINES,
+                    quantizedFragments.getCodes(), quantizedFragments.getScales(), FRAGMENTS, DIMENSION, scores);
+            for (int line = 0; line < LINES; line++) {
+                for (int fragment = 0; fragment < FRAGMENTS; fragment++) {
+                    float exact = TextSimilarityUtils.dot(lines, line * DIMENSION, fragments, fragment * DIMENSION, DIMENSION);
+                    assertEquals(exact, scores[line * FRAGMENTS + fragment], 0.01,
+                            kernel.name() + ": рядок " + line + ", фрагмент " + fragment);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void int8BackendRescoresExactlyFromMappedSnapshotFile(@TempDir Path dir) throws IOException {
+        Random random = new Random(13);
+        float[][] lines = randomVectors(random, LINES);
+        float[][] fragments = randomVectors(random, FRAGMENTS);
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < FRAGMENTS; i++) texts.add("фрагмент " + i);
+        TemplateMatrix template = TemplateMatrix.compile("template",
+                new CachedTemplate(Map.of("body", texts), Map.of("body", List.of(fragments))));
+
+        // Шаблон з файлу знімка: у купі лише int8-коди, float-вектори — у відображеному файлі
+        Path file = dir.resolve("snapshot.bin");
+        TemplateSnapshotFile.write(file, "model", "hash", Map.of("template", template));
+        TemplateMatrix mapped = TemplateSnapshotFile.read(file, true).templates().get("template");
+        assertTrue(mapped.isQuantized());
+        assertNull(mapped.getVectors());
+        assertTrue(mapped.getFloatRows().isDirect());
+
+        Int8ScoringBackend backend = new Int8ScoringBackend(8);
+        assertTrue(backend.mapsTemplateVectors());
+        assertSame(mapped, backend.store(mapped));
+        TemplateMatrix onHeap = backend.store(template);
+        assertNull(onHeap.getVectors());
+
+        List<String> lineTexts = new ArrayList<>();
+        for (int i = 0; i < LINES; i++) lineTexts.add("рядок " + i);
+        DocumentLines documentLines = DocumentLines.of(lineTexts, List.of(lines));
+        int[] expectedRow = new int[LINES];
+        float[] expectedScore = new float[LINES];
+        try (DocumentScoring scoring = new JavaScoringBackend().begin(new TemplateSnapshot(1, Map.of("template", template)), documentLines)) {
+            scoring.score(template, expectedRow, expectedScore);
+        }
+
+        // Перерахунок точний: той самий фрагмент і той самий бал, що й у бекенді java
+        for (TemplateMatrix stored : List.of(mapped, onHeap)) {
+            int[] bestRow = new int[LINES];
+            float[] bestScore = new float[LINES];
+            try (DocumentScoring scoring = backend.begin(new TemplateSnapshot(1, Map.of("template", stored)), documentLines)) {
+                scoring.score(stored, bestRow, bestScore);
+            }
+            assertArrayEquals(expectedRow, bestRow);
+            assertArrayEquals(expectedScore, bestScore);
+        }
+    }
+
+    @Test
+    public void emptyTemplateLeavesNoMatch() {
+        int[] bestRow = new int[2];
+        float[] bestScore = new float[2];
+        SimilarityKernels.best().bestMatches(new float[2 * DIMENSION], 2, new float[0], 0, DIMENSION, bestRow, bestScore);
+        assertEquals(-1, bestRow[0]);
+        assertEquals(-1, bestRow[1]);
+    }
+
+    private static float[][] randomVectors(Random random, int count) {
+        float[][] vectors = new float[count][DIMENSION];
+        for (float[] vector : vectors) {
+            for (int d = 0; d < DIMENSION; d++) vector[d] = (float) random.nextGaussian();
+        }
+        return vectors;
+    }
+
+    private static float[] pack(float[][] vectors) {
+        float[] packed = new float[vectors.length * DIMENSION];
+        for (int i = 0; i < vectors.length; i++) {
+            TextSimilarityUtils.normalizeInto(vectors[i], packed, i * DIMENSION);
+        }
+        return packed;
+    }
+}
@@ -0,0 +1,145 @@
+import org.example.service.TemplatePruning;
+import org.example.service.match.DocumentLines;
+import org.example.service.match.TemplateMatch;
+import org.example.service.match.TemplateMatrix;
+import org.example.service.match.TemplateSnapshot;
+import org.example.service.score.DocumentScoring;
+import org.example.service.score.JavaScoringBackend;
+import org.example.untils.CachedTemplate;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * <h2>TemplatePruningTest</h2>
+ * <p>
+ *  Перевіряє, що відсікання шаблонів (branch-and-bound) обирає того самого переможця з тим самим балом
+ *  і ту саму історію лідерів у порядку знімка, що й повний перебір, і що після першого документа
+ *  переможець перебирається першим, а частина порівнянь «шаблон × рядок» пропускається.
+ *  Блоки рядків з однаковим початком і різною довжиною порівнюються окремо.
+ * </p>
+ */
+public class TemplatePruningTest {
+
+    private static final int DIMENSION = 64;
+    private static final int LINES = 40;
+    private static final double THRESHOLD = 0.75;
+
+    @Test
+    public void prunedScanPicksSameWinnerAsFullScan() {
+        Random random = new Random(3);
+        List<String> lines = new ArrayList<>();
+        List<float[]> lineVectors = new ArrayList<>();
+        for (int i = 0; i < LINES; i++) {
+            lines.add("рядок " + i);
+            lineVectors.add(TestFixtures.randomVector(random, DIMENSION));
+        }
+
+        // Шаблони з кількома схожими на документ ключами дають нетривіальну історію лідерів
+        Map<String, TemplateMatrix> templates = new LinkedHashMap<>();
+        for (int t = 0; t < 20; t++) {
+            List<float[]> keys = new ArrayList<>();
+            for (int k = 0; k < t % 7; k++) keys.add(TestFixtures.noisyCopy(random, lineVectors.get(k), 0.2));
+            for (int k = 0; k < 5 + 2 * t; k++) keys.add(TestFixtures.randomVector(random, DIMENSION));
+            templates.put("random-" + t, template("random-" + t, keys));
+            if (t == 9) {
+                // Переможець стоїть посередині знімка: його ключі — зашумлені копії 30 рядків документа
+                List<float[]> winnerKeys = new ArrayList<>();
+                for (int i = 0; i < 30; i++) winnerKeys.add(TestFixtures.noisyCopy(random, lineVectors.get(i), 0.2));
+                templates.put("winner", template("winner", winnerKeys));
+            }
+        }
+
+        TemplateSnapshot snapshot = new TemplateSnapshot(1, templates);
+        DocumentLines documentLines = DocumentLines.of(lines, lineVectors);
+
+        Result full = scan(new TemplatePruning(false, 16), snapshot, documentLines);
+        TemplatePruning pruning = new TemplatePruning(true, 16);
+        Result first = scan(pruning, snapshot, documentLines);
+        Result second = scan(pruning, snapshot, documentLines);
+
+        assertEquals("winner", full.template);
+        assertTrue(full.history.size() > 2);
+        for (Result pruned : List.of(first, second)) {
+            assertEquals(full.template, pruned.template);
+            assertEquals(full.score, pruned.score, 0.0);
+            // Історія лідерів не залежить ні від відсікання, ні від порядку перебору
+            assertEquals(full.history, pruned.history);
+        }
+        assertTrue((long) pruning.getMetrics().get("skippedComparisons") > 0);
+        // У другому документі переможець перебирається першим, і всі шаблони після нього у знімку відкидаються
+        assertTrue(second.pruned >= 10, "pruned " + second.pruned);
+    }
+
+    @Test
+    public void blocksOfDifferentLengthAreScoredSeparately() {
+        Random random = new Random(5);
+        List<String> lines = new ArrayList<>();
+        List<float[]> lineVectors = new ArrayList<>();
+        for (int i = 0; i < LINES; i++) {
+            lines.add("рядок " + i);
+            lineVectors.add(TestFixtures.randomVector(random, DIMENSION));
+        }
+        List<float[]> keys = new ArrayList<>();
+        for (int i = 0; i < LINES; i++) keys.add(TestFixtures.noisyCopy(random, lineVectors.get(i), 0.2));
+        TemplateMatrix template = template("template", keys);
+        DocumentLines documentLines = DocumentLines.of(lines, lineVectors);
+
+        int[] fullRows = new int[LINES];
+        float[] fullScores = new float[LINES];
+        int[] blockRows = new int[LINES];
+        float[] blockScores = new float[LINES];
+        try (DocumentScoring scoring = new JavaScoringBackend().begin(new TemplateSnapshot(1, Map.of("template", template)), documentLines)) {
+            scoring.score(template, fullRows, fullScores);
+            // Той самий початок, різна довжина: короткий блок не повинен підмінити довгий
+            scoring.score(template, 8, 12, blockRows, blockScores);
+            scoring.score(template, 8, 24, blockRows, blockScores);
+        }
+        for (int line = 8; line < 24; line++) {
+            assertEquals(fullRows[line], blockRows[line], "рядок " + line);
+            assertEquals(fullScores[line], blockScores[line], 1e-6, "рядок " + line);
+        }
+    }
+
+    private record Result(String template, double score, int pruned, List<String> history) {
+    }
+
+    private static Result scan(TemplatePruning pruning, TemplateSnapshot snapshot, DocumentLines documentLines) {
+        List<TemplateMatrix> templates = new ArrayList<>(snapshot.getTemplates().values());
+        TemplatePruning.Leader leader = new TemplatePruning.Leader();
+        int[] bestRows = new int[documentLines.size()];
+        float[] bestScores = new float[documentLines.size()];
+        String best = null;
+        double bestScore = -1;
+        int pruned = 0;
+        try (DocumentScoring scoring = new JavaScoringBackend().begin(snapshot, documentLines)) {
+            for (int position : pruning.scanOrder(templates)) {
+                TemplateMatrix template = templates.get(position);
+                TemplateMatch match = pruning.match(scoring, template, position, documentLines.getLines(),
+                        bestRows, bestScores, THRESHOLD, leader);
+                if (match == null) {
+                    pruned++;
+                } else if (leader.offer(match.getTotalScore(), position)) {
+                    best = template.getName();
+                    bestScore = match.getTotalScore();
+                }
+            }
+        }
+        pruning.recordWinner(best);
+        List<String> history = leader.history().stream().map(position -> templates.get(position).getName()).toList();
+        return new Result(best, bestScore, pruned, history);
+    }
+
+    private static TemplateMatrix template(String name, List<float[]> keyVectors) {
+        Map<String, List<String>> fragments = new LinkedHashMap<>();
+        Map<String, List<float[]>> embeddings = new LinkedHashMap<>();
+        for (int k = 0; k < keyVectors.size(); k++) {
+            fragments.put("key_" + k, List.of(name + " фрагмент " + k));
+            embeddings.put("key_" + k, List.of(keyVectors.get(k)));
+        }
+        return TemplateMatrix.compile(name, new CachedTemplate(fragments, embeddings));
+    }
+}
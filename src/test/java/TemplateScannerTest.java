@@ -0,0 +1,87 @@
+import org.example.service.TemplatePruning;
+import org.example.service.TemplateScanner;
+import org.example.service.match.DocumentLines;
+import org.example.service.match.TemplateMatrix;
+import org.example.service.match.TemplateSnapshot;
+import org.example.service.score.DocumentScoring;
+import org.example.service.score.JavaScoringBackend;
+import org.example.untils.CachedTemplate;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * <h2>TemplateScannerTest</h2>
+ * <p>
+ *  Перевіряє, що паралельний перебір плитками дає ті самі призначення ключів, тих самих лідерів
+ *  і того самого переможця, що й послідовний. Шаблони мають спільні ключі з кількома близькими
+ *  рядками, тож результат залежить від порядку призначення «перший рядок займає ключ».
+ * </p>
+ */
+public class TemplateScannerTest {
+
+    private static final int DIMENSION = 48;
+    private static final int LINES = 150;
+    private static final double THRESHOLD = 0.75;
+
+    @Test
+    public void parallelScanMatchesSequentialScan() {
+        Random random = new Random(5);
+        List<String> lines = new ArrayList<>();
+        List<float[]> lineVectors = new ArrayList<>();
+        for (int i = 0; i < LINES; i++) {
+            lines.add("рядок " + i);
+            lineVectors.add(TestFixtures.randomVector(random, DIMENSION));
+        }
+
+        Map<String, TemplateMatrix> templates = new LinkedHashMap<>();
+        for (int t = 0; t < 30; t++) {
+            Map<String, List<String>> fragments = new LinkedHashMap<>();
+            Map<String, List<float[]>> embeddings = new LinkedHashMap<>();
+            for (int k = 0; k < 10 + random.nextInt(40); k++) {
+                // Кожен ключ близький до випадкового рядка; сусідні ключі часто претендують на той самий рядок
+                float[] source = lineVectors.get(random.nextInt(LINES));
+                fragments.put("key_" + k, List.of("шаблон " + t + " ключ " + k));
+                embeddings.put("key_" + k, List.of(TestFixtures.noisyCopy(random, source, 0.1 + random.nextDouble() * 0.4)));
+            }
+            templates.put("template-" + t, TemplateMatrix.compile("template-" + t, new CachedTemplate(fragments, embeddings)));
+        }
+        TemplateSnapshot snapshot = new TemplateSnapshot(1, templates);
+        DocumentLines documentLines = DocumentLines.of(lines, lineVectors);
+
+        TemplatePruning pruning = new TemplatePruning(true, 16);
+        TemplateScanner sequential = new TemplateScanner(pruning, false, 2, 4, 32, 0);
+        TemplateScanner parallel = new TemplateScanner(pruning, true, 4, 4, 7, 0);
+        try {
+            List<String> expected = scan(sequential, snapshot, documentLines);
+            assertTrue(expected.size() > 1, "очікується кілька змін лідера");
+            for (int run = 0; run < 5; run++) {
+                assertEquals(expected, scan(parallel, snapshot, documentLines));
+            }
+            assertEquals(5L, parallel.getMetrics().get("parallelDocuments"));
+        } finally {
+            sequential.shutdown();
+            parallel.shutdown();
+        }
+    }
+
+    /**
+     * @return історія лідерів: назва, бал і призначення ключів кожного
+     */
+    private static List<String> scan(TemplateScanner scanner, TemplateSnapshot snapshot, DocumentLines documentLines) {
+        List<TemplateMatrix> templates = new ArrayList<>(snapshot.getTemplates().values());
+        TemplatePruning.Leader leader = new TemplatePruning.Leader();
+        List<String> leaders = new ArrayList<>();
+        try (DocumentScoring scoring = new JavaScoringBackend().begin(snapshot, documentLines)) {
+            scanner.scan(scoring, templates, documentLines.getLines(), THRESHOLD, leader, (position, template, match) -> {
+                if (match != null && leader.offer(match.getTotalScore(), position)) {
+                    leaders.add(template.getName() + " " + match.getTotalScore() + " " + match.getResult());
+                }
+            });
+        }
+        return leaders;
+    }
+}
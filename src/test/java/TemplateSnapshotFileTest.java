@@ -0,0 +1,80 @@
+import org.example.service.match.TemplateMatrix;
+import org.example.service.match.TemplateSnapshotFile;
+import org.example.untils.CachedTemplate;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * <h2>TemplateSnapshotFileTest</h2>
+ * <p>
+ *  Перевіряє, що файл знімка відновлює скомпільовані матриці шаблонів без змін
+ *  і що файл іншого формату відхиляється.
+ * </p>
+ */
+public class TemplateSnapshotFileTest {
+
+    private static final int DIMENSION = 384;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void roundTripRestoresMatrices() throws IOException {
+        Map<String, TemplateMatrix> templates = new LinkedHashMap<>();
+        templates.put("Templates-0", compile("Templates-0", 1));
+        templates.put("Templates-1", compile("Templates-1", 2));
+
+        Path file = dir.resolve("model-0123456789abcdef.bin");
+        TemplateSnapshotFile.write(file, "model", "hash", templates);
+        TemplateSnapshotFile.Contents contents = TemplateSnapshotFile.read(file);
+
+        assertEquals("model", contents.modelName());
+        assertEquals("hash", contents.contentHash());
+        assertEquals(templates.keySet(), contents.templates().keySet());
+        for (var e : templates.entrySet()) {
+            TemplateMatrix expected = e.getValue();
+            TemplateMatrix actual = contents.templates().get(e.getKey());
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getDimension(), actual.getDimension());
+            assertArrayEquals(expected.getVectors(), actual.getVectors());
+            assertArrayEquals(expected.getKeys(), actual.getKeys());
+            assertArrayEquals(expected.getRowKey(), actual.getRowKey());
+            assertArrayEquals(expected.getRowFragment(), actual.getRowFragment());
+            assertEquals(expected.getFragments(), actual.getFragments());
+        }
+    }
+
+    @Test
+    public void rejectsForeignFile() throws IOException {
+        Path file = dir.resolve("broken.bin");
+        Files.writeString(file, "{\"fragments\":{}}");
+        assertThrows(IOException.class, () -> TemplateSnapshotFile.read(file));
+    }
+
+    private static TemplateMatrix compile(String name, long seed) {
+        Random random = new Random(seed);
+        Map<String, List<String>> fragments = new LinkedHashMap<>();
+        Map<String, List<float[]>> embeddings = new LinkedHashMap<>();
+        fragments.put("title", List.of("Наказ про відрядження"));
+        fragments.put("orders_1", List.of("Відрядити працівника", "Оплатити витрати на проїзд"));
+        fragments.put("empty", List.of());
+        for (var e : fragments.entrySet()) {
+            embeddings.put(e.getKey(), e.getValue().stream().map(f -> {
+                float[] vector = new float[DIMENSION];
+                for (int d = 0; d < DIMENSION; d++) vector[d] = (float) random.nextGaussian();
+                return vector;
+            }).toList());
+        }
+        return TemplateMatrix.compile(name, new CachedTemplate(fragments, embeddings));
+    }
+}
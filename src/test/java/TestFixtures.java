@@ -0,0 +1,80 @@
+import org.example.redis.RedisService;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * <h2>TestFixtures</h2>
+ * <p>
+ *  Спільні допоміжні методи тестів: випадкові embedding-вектори і {@link RedisService} у пам'яті.
+ * </p>
+ */
+final class TestFixtures {
+
+    private TestFixtures() {
+    }
+
+    /**
+     * @return вектор з нормально розподіленими компонентами
+     */
+    static float[] randomVector(Random random, int dimension) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) vector[i] = (float) random.nextGaussian();
+        return vector;
+    }
+
+    /**
+     * @return копія вектора з доданим шумом (стандартне відхилення {@code noise})
+     */
+    static float[] noisyCopy(Random random, float[] source, double noise) {
+        float[] vector = source.clone();
+        for (int i = 0; i < vector.length; i++) vector[i] += (float) (random.nextGaussian() * noise);
+        return vector;
+    }
+
+    /**
+     * Redis у пам'яті: двійкові значення (MGET, SET з TTL), рядкові значення (SET, GET, DEL)
+     * і списки (RPUSH, LREM, LMOVE). Час життя не враховується.
+     */
+    @SuppressWarnings("unchecked")
+    static RedisService fakeRedis(Map<String, byte[]> bytes, Map<String, String> values, Map<String, Deque<String>> lines) {
+        RedisService redisService = mock(RedisService.class);
+        when(redisService.getBytes(anyList())).thenAnswer(inv -> {
+            List<byte[]> found = new ArrayList<>();
+            for (String key : (List<String>) inv.getArgument(0)) found.add(bytes.get(key));
+            return found;
+        });
+        doAnswer(inv -> {
+            bytes.putAll(inv.getArgument(0));
+            return null;
+        }).when(redisService).saveBytes(anyMap(), any(Duration.class));
+
+        doAnswer(inv -> values.put(inv.getArgument(0), inv.getArgument(1))).when(redisService).saveData(anyString(), anyString());
+        when(redisService.getData(anyString())).thenAnswer(inv -> values.get(inv.<String>getArgument(0)));
+        when(redisService.deleteData(anyString())).thenAnswer(inv -> values.remove(inv.<String>getArgument(0)) != null);
+
+        doAnswer(inv -> {
+            lines.computeIfAbsent(inv.getArgument(0), key -> new ArrayDeque<>()).addLast(inv.getArgument(1));
+            return null;
+        }).when(redisService).addToLine(anyString(), anyString());
+        when(redisService.removeFromLine(anyString(), anyString())).thenAnswer(inv ->
+                lines.getOrDefault(inv.<String>getArgument(0), new ArrayDeque<>()).removeFirstOccurrence(inv.getArgument(1)));
+        when(redisService.moveToLineFront(anyString(), anyString())).thenAnswer(inv -> {
+            String value = lines.getOrDefault(inv.<String>getArgument(0), new ArrayDeque<>()).pollLast();
+            if (value != null) lines.computeIfAbsent(inv.getArgument(1), key -> new ArrayDeque<>()).addFirst(value);
+            return value;
+        });
+        return redisService;
+    }
+}